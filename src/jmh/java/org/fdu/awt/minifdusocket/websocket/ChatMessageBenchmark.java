@@ -0,0 +1,39 @@
+package org.fdu.awt.minifdusocket.websocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天消息的解析，调用 {@link ChatWebSocket#parse}，与 handleMessage 相同
+ * （投递与写入聊天记录依赖容器及数据库，不在此测量）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatMessageBenchmark {
+    private static final String SHORT_MESSAGE = "{\"type\":\"chat\",\"remoteId\":10086,\"message\":\"你好，今晚一起上线吗？\"}";
+    private static final String LONG_MESSAGE = "{\"type\":\"chat\",\"remoteId\":10086,\"message\":\""
+            + "这是一条比较长的聊天消息，用来观察消息长度对解析耗时和分配的影响。".repeat(20) + "\"}";
+
+    @Benchmark
+    public ChatWebSocket.Inbound shortMessage() {
+        return ChatWebSocket.parse(SHORT_MESSAGE);
+    }
+
+    @Benchmark
+    public ChatWebSocket.Inbound longMessage() {
+        return ChatWebSocket.parse(LONG_MESSAGE);
+    }
+}
@@ -0,0 +1,74 @@
+package org.fdu.awt.minifdusocket.websocket;
+
+import com.alibaba.fastjson2.JSONObject;
+import org.fdu.awt.minifdusocket.websocket.support.JsonEnvelope;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * video-processing 信令的转发消息组装：
+ * <ul>
+ *     <li>envelope：{@link VideoChatWebSocket} 的快速路径，只扫描路由头，forwardData 原样拷贝</li>
+ *     <li>fullParse：路由头无法识别时的退回路径，完整解析后重新序列化</li>
+ * </ul>
+ * candidate 为 ICE 候选（约 200 字节），offer 为 SDP（约 4 KB）。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VideoRelayBenchmark {
+    private static final Long FROM_ID = 10001L;
+    private static final Long TO_ID = 10086L;
+
+    @Param({"candidate", "offer"})
+    public String payload;
+
+    private String message;
+
+    @Setup
+    public void setup() {
+        String forwardData;
+        if (payload.equals("candidate")) {
+            forwardData = "{\"type\":\"candidate\",\"candidate\":{\"candidate\":\"candidate:842163049 1 udp 1677729535 "
+                    + "203.0.113.7 56143 typ srflx raddr 192.168.1.23 rport 56143 generation 0 ufrag sE3x network-cost 999\","
+                    + "\"sdpMid\":\"0\",\"sdpMLineIndex\":0}}";
+        } else {
+            StringBuilder sdp = new StringBuilder("v=0\\r\\no=- 4611731400430051336 2 IN IP4 127.0.0.1\\r\\ns=-\\r\\nt=0 0\\r\\n");
+            while (sdp.length() < 4096) {
+                sdp.append("a=rtpmap:96 VP8/90000\\r\\na=rtcp-fb:96 goog-remb\\r\\na=rtcp-fb:96 transport-cc\\r\\n");
+            }
+            forwardData = "{\"type\":\"offer\",\"sdp\":\"" + sdp + "\"}";
+        }
+        message = "{\"type\":\"video-processing\",\"fromId\":" + FROM_ID + ",\"toId\":" + TO_ID
+                + ",\"forwardData\":" + forwardData + "}";
+    }
+
+    @Benchmark
+    public String envelope() {
+        JsonEnvelope envelope = JsonEnvelope.scan(message);
+        return VideoChatWebSocket.relayPayload(FROM_ID, envelope.getToId(), envelope);
+    }
+
+    @Benchmark
+    public String fullParse() {
+        JSONObject data = JSONObject.parseObject(message);
+        Long toId = data.getLong("toId");
+        return VideoChatWebSocket.signal("video-processing", FROM_ID, toId)
+                .fluentPut("forwardData", data.getJSONObject("forwardData"))
+                .toJSONString();
+    }
+}
@@ -0,0 +1,164 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import com.alibaba.fastjson2.JSONObject;
+import org.fdu.awt.minifdusocket.websocket.support.JsonByteWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个房间一次 tick 的快照组装（不含发送），与 {@link GameRoom#tick()} 的各分支对应：
+ * <ul>
+ *     <li>sharedRemoteData：不做 AOI 过滤时所有旧协议客户端共用一条 remoteData</li>
+ *     <li>aoiRemoteData：按 AOI 过滤后为每个客户端组装一条 remoteData</li>
+ *     <li>aoiDelta：按 AOI 过滤后为每个客户端组装增量（{@link PlayerView}），30 以外的玩家每 3 个 tick 下发一次，客户端每个 tick 都确认</li>
+ *     <li>aoiBinary：同样的过滤与降频，为每个客户端编码二进制快照（{@link BinaryView}）</li>
+ * </ul>
+ * 每次调用都让所有玩家移动一次并 capture（{@link PlayerStateStore}），玩家均匀分布在 1000 x 1000 的地图上。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotFanOutBenchmark {
+    private static final double MAP_SIZE = 1000;
+    private static final double AOI_RADIUS = 100;
+
+    @Param({"10", "100", "1000"})
+    public int players;
+
+    private final PlayerStateStore store = new PlayerStateStore();
+    private final List<UserData> all = new ArrayList<>();
+    private final List<PlayerView> views = new ArrayList<>();
+    private final List<BinaryView> binaryViews = new ArrayList<>();
+    private final SymbolDictionary symbols = new SymbolDictionary(256, 16);
+    private final JsonByteWriter infoWriter = new JsonByteWriter(1024);
+    private ByteBuffer frame = ByteBuffer.allocate(1024);
+    private final List<UserData> visible = new ArrayList<>();
+    private final GameSnapshotWriter writer = new GameSnapshotWriter();
+    private final SpatialGrid<UserData> grid = new SpatialGrid<>(AOI_RADIUS);
+    private final UpdateRate rate = new UpdateRate(30, 3);
+    private long seq;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < players; i++) {
+            UserData userData = store.add((long) i);
+            JSONObject json = new JSONObject();
+            json.put("username", "player-" + i);
+            json.put("model", "boy");
+            json.put("colour", "#3fa7d6");
+            json.put("x", random.nextDouble() * MAP_SIZE);
+            json.put("y", 0.0);
+            json.put("z", random.nextDouble() * MAP_SIZE);
+            json.put("h", 0.0);
+            json.put("pb", 0.0);
+            json.put("action", "idle");
+            userData.updateUserData(json, 0);
+            all.add(userData);
+            views.add(new PlayerView(50, 25));
+            binaryViews.add(new BinaryView());
+        }
+        symbols.register("boy");
+        symbols.register("idle");
+        symbols.register("walk");
+        store.capture(0);
+    }
+
+    private void beginTick() {
+        long current = ++seq;
+        writer.beginTick(current, System.currentTimeMillis());
+        for (UserData userData : all) {
+            userData.updatePose(userData.getX() + 0.125, 0.0, userData.getZ(), 1.5, 0.0, "walk", true, current);
+        }
+        store.capture(current);
+    }
+
+    private void indexPlayers() {
+        grid.clear();
+        for (UserData userData : all) {
+            grid.insert(userData.getX(), userData.getZ(), userData);
+        }
+    }
+
+    @Benchmark
+    public int sharedRemoteData() {
+        beginTick();
+        return writer.remoteData(all).size();
+    }
+
+    @Benchmark
+    public long aoiRemoteData() {
+        beginTick();
+        indexPlayers();
+        long bytes = 0;
+        for (UserData self : all) {
+            visible.clear();
+            grid.query(self.getX(), self.getZ(), AOI_RADIUS, visible::add);
+            bytes += writer.remoteData(visible).size();
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long aoiDelta() {
+        beginTick();
+        indexPlayers();
+        long bytes = 0;
+        for (int i = 0; i < all.size(); i++) {
+            UserData self = all.get(i);
+            PlayerView view = views.get(i);
+            visible.clear();
+            grid.query(self.getX(), self.getZ(), AOI_RADIUS, visible::add);
+            rate.begin(self, seq);
+            if (view.writeMessage(visible, writer, rate)) {
+                bytes += writer.message().size();
+            }
+            view.ack(seq);
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long aoiBinary() {
+        beginTick();
+        indexPlayers();
+        long bytes = 0;
+        for (int i = 0; i < all.size(); i++) {
+            UserData self = all.get(i);
+            BinaryView view = binaryViews.get(i);
+            visible.clear();
+            grid.query(self.getX(), self.getZ(), AOI_RADIUS, visible::add);
+            rate.begin(self, seq);
+            view.prepare(seq, visible, rate);
+            if (view.writeInfo(symbols, infoWriter)) {
+                bytes += infoWriter.size();
+            }
+            if (frame.capacity() < view.snapshotCapacity()) {
+                frame = ByteBuffer.allocate(view.snapshotCapacity());
+            }
+            frame.clear();
+            if (view.writeSnapshot(seq, writer.time(), symbols, frame)) {
+                bytes += frame.position();
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,82 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import com.alibaba.fastjson2.JSONObject;
+import org.fdu.awt.minifdusocket.websocket.support.JsonByteWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个玩家数据的上报解析与序列化：
+ * <ul>
+ *     <li>parseAndUpdate：local_update 消息的完整处理（解析 + {@link UserData#updateUserData}）</li>
+ *     <li>applyPose：二进制协议中同样内容的 POSE 帧（{@link GameBinaryCodec#applyPose}）</li>
+ *     <li>toJsonObject：旧的 JSONObject 序列化方式，作为对照</li>
+ *     <li>writeJson：tick 中实际使用的字节序列化</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDataBenchmark {
+    private static final String LOCAL_UPDATE = "{\"type\":\"local_update\",\"data\":{\"username\":\"player-1\","
+            + "\"model\":\"boy\",\"colour\":\"#3fa7d6\",\"x\":12.625,\"y\":0.0,\"z\":-48.3125,"
+            + "\"h\":1.5707963,\"pb\":0.0,\"action\":\"walk\"}}";
+
+    private UserData userData;
+    private JsonByteWriter out;
+    private SymbolDictionary symbols;
+    private ByteBuffer pose;
+    private long version;
+
+    @Setup
+    public void setup() {
+        PlayerStateStore store = new PlayerStateStore();
+        userData = store.add(1L);
+        userData.updateUserData(JSONObject.parseObject(LOCAL_UPDATE).getJSONObject("data"), 0);
+        store.capture(0);
+        out = new JsonByteWriter(1024);
+        symbols = new SymbolDictionary(256, 16);
+        int walk = symbols.register("walk");
+        pose = ByteBuffer.allocate(GameBinaryCodec.POSE_LENGTH);
+        pose.put(GameBinaryCodec.OP_POSE).putShort((short) walk)
+                .putFloat(12.625f).putFloat(0f).putFloat(-48.3125f).putFloat(1.5707963f).putFloat(0f).flip();
+    }
+
+    @Benchmark
+    public UserData parseAndUpdate() {
+        JSONObject jsonObject = JSONObject.parseObject(LOCAL_UPDATE);
+        userData.updateUserData(jsonObject.getJSONObject("data"), ++version);
+        return userData;
+    }
+
+    @Benchmark
+    public boolean applyPose() {
+        return GameBinaryCodec.applyPose(pose, userData, symbols, ++version);
+    }
+
+    @Benchmark
+    public String toJsonObject() {
+        return userData.toJsonObject().toJSONString();
+    }
+
+    @Benchmark
+    public int writeJson() {
+        out.reset();
+        userData.writeJson(UserData.ALL_MASK, out);
+        return out.size();
+    }
+}
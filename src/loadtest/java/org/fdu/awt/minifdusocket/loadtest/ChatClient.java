@@ -0,0 +1,53 @@
+package org.fdu.awt.minifdusocket.loadtest;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟聊天客户端：每隔一段随机时间（平均 burstIntervalMillis）向随机一个聊天用户连续发送 burstSize 条消息 <br/>
+ * 消息内容以发送时间开头（同一进程内的 {@link System#nanoTime()}），接收方据此计算端到端延迟；发给自己的回显不计入。
+ */
+public class ChatClient extends LoadClient {
+    private static final String TIME_PREFIX = "\"message\":\"t=";
+    private static final String FILLER = " 压测消息 load test message";
+
+    private final LoadOptions options;
+    private final long firstUserId;
+
+    public ChatClient(long userId, LoadStats stats, LoadOptions options, long firstUserId) {
+        super(userId, stats);
+        this.options = options;
+        this.firstUserId = firstUserId;
+    }
+
+    public void start(ScheduledExecutorService scheduler) {
+        long interval = options.getChatBurstIntervalMillis();
+        scheduler.schedule(() -> burst(scheduler), ThreadLocalRandom.current().nextLong(interval), TimeUnit.MILLISECONDS);
+    }
+
+    private void burst(ScheduledExecutorService scheduler) {
+        if (!isOpen()) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long remoteId = options.getChat() > 1 ? firstUserId + random.nextInt(options.getChat()) : userId;
+        for (int i = 0; i < options.getChatBurstSize(); i++) {
+            send("{\"type\":\"chat\",\"remoteId\":" + remoteId + ",\"message\":\"t=" + System.nanoTime() + FILLER + "\"}");
+        }
+        // 指数分布的间隔，近似泊松到达
+        long next = (long) (-Math.log(1 - random.nextDouble()) * options.getChatBurstIntervalMillis());
+        scheduler.schedule(() -> burst(scheduler), Math.max(next, 1), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected void onText(String text, long receivedNanos) {
+        if (text.contains("\"ifSelf\":\"true\"")) {
+            return;
+        }
+        long sentNanos = LoadClients.parseLong(text, text.indexOf(TIME_PREFIX), TIME_PREFIX.length());
+        if (sentNanos > 0) {
+            stats.getLatency().recordNanos(receivedNanos - sentNanos);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.fdu.awt.minifdusocket.loadtest;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟游戏客户端：以 gameRate 的频率上报位置（在 mapSize x mapSize 的地图上随机移动） <br/>
+ * 每次上报的 y 为递增的序号，客户端在收到的快照中找到自己的数据后，按 y 找到对应的发送时间，
+ * 得到从上报到快照中可见的延迟（包含等待下一个 tick 的时间）。 <br/>
+ * delta 协议下每收到一条快照都回复 ack。
+ */
+public class GameClient extends LoadClient {
+    private static final int RING = 1024;
+    private static final String SEQ_PREFIX = "\"seq\":";
+    private static final String Y_PREFIX = "\"y\":";
+
+    private final LoadOptions options;
+    private final String selfPrefix;
+    private final long[] sentNanos = new long[RING];
+    private double x;
+    private double z;
+    private double heading;
+    private long probe;
+    /**
+     * 只在接收线程中使用
+     */
+    private long lastObserved;
+    private ScheduledFuture<?> updates;
+
+    public GameClient(long userId, LoadStats stats, LoadOptions options) {
+        super(userId, stats);
+        this.options = options;
+        this.selfPrefix = "{\"userId\":" + userId + ",";
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        this.x = random.nextDouble() * options.getMapSize();
+        this.z = random.nextDouble() * options.getMapSize();
+        this.heading = random.nextDouble() * 2 * Math.PI;
+    }
+
+    public void start(ScheduledExecutorService scheduler) {
+        send("{\"type\":\"local_update\",\"data\":{\"username\":\"load-" + userId + "\",\"model\":\"boy\","
+                + "\"colour\":\"#3fa7d6\",\"x\":" + x + ",\"y\":0,\"z\":" + z + ",\"h\":" + heading
+                + ",\"pb\":0,\"action\":\"walk\"}}");
+        long period = TimeUnit.SECONDS.toMicros(1) / options.getGameRate();
+        updates = scheduler.scheduleAtFixedRate(this::update,
+                ThreadLocalRandom.current().nextLong(period), period, TimeUnit.MICROSECONDS);
+    }
+
+    private synchronized void update() {
+        if (!isOpen()) {
+            updates.cancel(false);
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        heading += (random.nextDouble() - 0.5) * 0.2;
+        double size = options.getMapSize();
+        x = Math.floorMod((long) ((x + Math.cos(heading) * 0.2) * 1000), (long) (size * 1000)) / 1000.0;
+        z = Math.floorMod((long) ((z + Math.sin(heading) * 0.2) * 1000), (long) (size * 1000)) / 1000.0;
+        long seq = ++probe;
+        sentNanos[(int) (seq % RING)] = System.nanoTime();
+        send("{\"type\":\"local_update\",\"data\":{\"x\":" + x + ",\"y\":" + seq + ",\"z\":" + z
+                + ",\"h\":" + heading + "}}");
+    }
+
+    @Override
+    protected void onText(String text, long receivedNanos) {
+        if (options.isGameDelta()) {
+            long seq = LoadClients.parseLong(text, text.indexOf(SEQ_PREFIX), SEQ_PREFIX.length());
+            if (seq > 0) {
+                send("{\"type\":\"ack\",\"seq\":" + seq + "}");
+            }
+        }
+        int self = text.indexOf(selfPrefix);
+        if (self < 0) {
+            return;
+        }
+        int end = text.indexOf('}', self);
+        int y = text.indexOf(Y_PREFIX, self);
+        if (y < 0 || y > end) {
+            return;
+        }
+        long seq = LoadClients.parseLong(text, y, Y_PREFIX.length());
+        long sent;
+        synchronized (this) {
+            if (seq <= lastObserved || seq > probe || probe - seq >= RING) {
+                return;
+            }
+            sent = sentNanos[(int) (seq % RING)];
+        }
+        lastObserved = seq;
+        stats.getLatency().recordNanos(receivedNanos - sent);
+    }
+}
@@ -0,0 +1,130 @@
+package org.fdu.awt.minifdusocket.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个模拟客户端的连接 <br/>
+ * {@link WebSocket} 不允许在上一次发送完成前再次发送，这里把发送串成一条链；
+ * 服务端处理不过来导致积压超过 {@link #MAX_PENDING_SENDS} 条时丢弃新的消息并计数，不让压测端自身成为瓶颈。
+ */
+public abstract class LoadClient implements WebSocket.Listener {
+    private static final int MAX_PENDING_SENDS = 64;
+
+    protected final long userId;
+    protected final LoadStats stats;
+    private final StringBuilder partial = new StringBuilder();
+    private volatile WebSocket webSocket;
+    private CompletableFuture<?> sendChain = CompletableFuture.completedFuture(null);
+    private int pendingSends;
+
+    protected LoadClient(long userId, LoadStats stats) {
+        this.userId = userId;
+        this.stats = stats;
+    }
+
+    public CompletableFuture<WebSocket> connect(HttpClient httpClient, URI uri) {
+        return httpClient.newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .buildAsync(uri, this).whenComplete((ws, error) -> {
+            if (error != null) {
+                stats.connectFailed();
+            } else {
+                webSocket = ws;
+                stats.connected();
+            }
+        });
+    }
+
+    public boolean isOpen() {
+        WebSocket current = webSocket;
+        return current != null && !current.isOutputClosed() && !current.isInputClosed();
+    }
+
+    /**
+     * 按调用顺序发送一条文本消息，可在任意线程调用
+     */
+    protected synchronized void send(String text) {
+        WebSocket current = webSocket;
+        if (current == null || current.isOutputClosed()) {
+            return;
+        }
+        if (pendingSends >= MAX_PENDING_SENDS) {
+            stats.sendDropped();
+            return;
+        }
+        pendingSends++;
+        sendChain = sendChain
+                .thenCompose(ignored -> current.sendText(text, true))
+                .handle((ws, error) -> {
+                    synchronized (this) {
+                        pendingSends--;
+                    }
+                    if (error != null) {
+                        stats.sendFailed();
+                    } else {
+                        stats.sent(text.length());
+                    }
+                    return null;
+                });
+    }
+
+    public void close() {
+        WebSocket current = webSocket;
+        if (current != null) {
+            sendChain.orTimeout(1, TimeUnit.SECONDS)
+                    .handle((ignored, error) -> current.sendClose(WebSocket.NORMAL_CLOSURE, "done"));
+        }
+    }
+
+    /**
+     * 收到一条完整的文本消息
+     *
+     * @param receivedNanos 收到时的 {@link System#nanoTime()}
+     */
+    protected abstract void onText(String text, long receivedNanos);
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        long now = System.nanoTime();
+        if (last && partial.isEmpty()) {
+            String text = data.toString();
+            stats.received(text.length());
+            onText(text, now);
+        } else {
+            partial.append(data);
+            if (last) {
+                String text = partial.toString();
+                partial.setLength(0);
+                stats.received(text.length());
+                onText(text, now);
+            }
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+        stats.received(data.remaining());
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        stats.disconnected();
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        stats.disconnected();
+    }
+}
@@ -0,0 +1,28 @@
+package org.fdu.awt.minifdusocket.loadtest;
+
+/**
+ * 模拟客户端共用的工具方法
+ */
+final class LoadClients {
+
+    private LoadClients() {
+    }
+
+    /**
+     * 读取 text 中 from + skip 处开始的非负整数
+     *
+     * @param from 前缀的位置，小于 0 时直接返回 -1
+     * @return 没有数字时返回 -1
+     */
+    static long parseLong(String text, int from, int skip) {
+        if (from < 0) {
+            return -1;
+        }
+        int start = from + skip;
+        int end = start;
+        while (end < text.length() && text.charAt(end) >= '0' && text.charAt(end) <= '9') {
+            end++;
+        }
+        return end == start ? -1 : Long.parseLong(text, start, end, 10);
+    }
+}
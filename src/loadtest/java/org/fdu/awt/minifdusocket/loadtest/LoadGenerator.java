@@ -0,0 +1,149 @@
+package org.fdu.awt.minifdusocket.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 压测工具入口：模拟大量聊天、游戏、视频通话客户端连接到被测服务，定时及结束时输出
+ * 连接数、吞吐量、端到端延迟分位数以及服务端 CPU、堆内存 <br/>
+ * 被测服务可使用 loadtest 配置（内存数据库）在本地启动：
+ * <pre>
+ * mvn -P loadtest spring-boot:run -Dspring-boot.run.profiles=loadtest
+ * mvn -P loadtest test-compile exec:java -Dexec.args="--chat=1000 --game=1000 --video=200 --duration-seconds=120"
+ * </pre>
+ * 客户端与延迟计算都在同一进程内，发送时间直接使用 {@link System#nanoTime()}。
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        new LoadGenerator(options).run();
+        // HttpClient 的线程不是守护线程
+        System.exit(0);
+    }
+
+    private final LoadOptions options;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ScheduledExecutorService scheduler;
+    private final ServerMonitor monitor;
+    private final LoadStats chatStats = new LoadStats("chat");
+    private final LoadStats gameStats = new LoadStats("game");
+    private final LoadStats videoStats = new LoadStats("video");
+    private final List<LoadClient> clients = new ArrayList<>();
+
+    public LoadGenerator(LoadOptions options) {
+        this.options = options;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(options.getThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "load-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.monitor = new ServerMonitor(httpClient, options.getActuator());
+    }
+
+    public void run() throws InterruptedException {
+        System.out.printf("连接 %s：chat %d，game %d（%d 个房间，%d Hz，%s），video %d，持续 %d 秒%n",
+                options.getUrl(), options.getChat(), options.getGame(), options.getRooms(), options.getGameRate(),
+                options.isGameDelta() ? "delta" : "json", options.getVideo(), options.getDurationSeconds());
+        monitor.sample();
+        long begin = System.nanoTime();
+        scheduler.scheduleAtFixedRate(() -> report(begin), options.getReportIntervalSeconds(),
+                options.getReportIntervalSeconds(), TimeUnit.SECONDS);
+
+        connectAll();
+        TimeUnit.SECONDS.sleep(options.getDurationSeconds());
+
+        clients.forEach(LoadClient::close);
+        monitor.sample();
+        finalReport(System.nanoTime() - begin);
+    }
+
+    /**
+     * 在 rampUpSeconds 内均匀建立所有连接
+     */
+    private void connectAll() throws InterruptedException {
+        long base = options.getUserIdBase();
+        long chatBase = base;
+        long gameBase = chatBase + options.getChat();
+        long videoBase = gameBase + options.getGame();
+
+        List<Runnable> connects = new ArrayList<>();
+        for (int i = 0; i < options.getChat(); i++) {
+            ChatClient client = new ChatClient(chatBase + i, chatStats, options, chatBase);
+            connects.add(() -> open(client, "/chat/" + client.userId, () -> client.start(scheduler)));
+        }
+        String query = options.isGameDelta() ? "?protocol=delta" : "";
+        for (int i = 0; i < options.getGame(); i++) {
+            GameClient client = new GameClient(gameBase + i, gameStats, options);
+            String room = "load-" + (i % Math.max(options.getRooms(), 1));
+            connects.add(() -> open(client, "/game/" + room + "/" + client.userId + query, () -> client.start(scheduler)));
+        }
+        for (int i = 0; i + 1 < options.getVideo(); i += 2) {
+            // 被叫方先连接
+            VideoClient callee = new VideoClient(videoBase + i + 1, videoStats, options, videoBase + i, false);
+            VideoClient caller = new VideoClient(videoBase + i, videoStats, options, videoBase + i + 1, true);
+            connects.add(() -> open(callee, "/video-chat/" + callee.userId, () -> callee.start(scheduler)));
+            connects.add(() -> open(caller, "/video-chat/" + caller.userId, () -> caller.start(scheduler)));
+        }
+
+        long intervalNanos = connects.isEmpty() ? 0 : TimeUnit.SECONDS.toNanos(options.getRampUpSeconds()) / connects.size();
+        long start = System.nanoTime();
+        for (int i = 0; i < connects.size(); i++) {
+            long wait = start + i * intervalNanos - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            connects.get(i).run();
+        }
+    }
+
+    private void open(LoadClient client, String path, Runnable onOpen) {
+        synchronized (clients) {
+            clients.add(client);
+        }
+        client.connect(httpClient, URI.create(options.getUrl() + path)).thenRun(onOpen);
+    }
+
+    private void report(long begin) {
+        monitor.sample();
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin);
+        StringBuilder line = new StringBuilder().append('[').append(seconds).append("s]");
+        for (LoadStats stats : List.of(chatStats, gameStats, videoStats)) {
+            LatencyHistogram latency = stats.getLatency();
+            line.append(String.format(" %s %d conn, sent %d, recv %d, p50 %s p99 %s |", stats.getName(),
+                    stats.getConnected() - stats.getDisconnected(), stats.getSentMessages(), stats.getReceivedMessages(),
+                    millis(latency.percentileMicros(0.5)), millis(latency.percentileMicros(0.99))));
+        }
+        System.out.println(line.append(' ').append(monitor.current()));
+    }
+
+    private void finalReport(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.println();
+        System.out.printf("%-6s %8s %8s %8s %10s %10s %12s %8s %8s %8s %8s %8s %8s%n",
+                "type", "conn", "failed", "dropped", "sent/s", "recv/s", "recv KB/s",
+                "samples", "p50", "p90", "p99", "p99.9", "max");
+        for (LoadStats stats : List.of(chatStats, gameStats, videoStats)) {
+            LatencyHistogram latency = stats.getLatency();
+            System.out.printf("%-6s %8d %8d %8d %10.0f %10.0f %12.0f %8d %8s %8s %8s %8s %8s%n",
+                    stats.getName(), stats.getConnected(), stats.getConnectFailed() + stats.getSendFailed(),
+                    stats.getSendDropped(), stats.getSentMessages() / seconds, stats.getReceivedMessages() / seconds,
+                    stats.getReceivedChars() / seconds / 1024, latency.count(),
+                    millis(latency.percentileMicros(0.5)), millis(latency.percentileMicros(0.9)),
+                    millis(latency.percentileMicros(0.99)), millis(latency.percentileMicros(0.999)),
+                    millis(latency.maxMicros()));
+        }
+        System.out.println(monitor.summary());
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.1fms", micros / 1000.0);
+    }
+}
@@ -0,0 +1,106 @@
+package org.fdu.awt.minifdusocket.loadtest;
+
+import lombok.Data;
+
+/**
+ * 压测参数，命令行格式为 {@code --name=value}，name 与字段名相同（如 {@code --game-rate=25}）
+ */
+@Data
+public class LoadOptions {
+    /**
+     * 被测服务的 WebSocket 地址及 actuator 地址
+     */
+    private String url = "ws://localhost:8798";
+    private String actuator = "http://localhost:8798/actuator";
+    /**
+     * 各类客户端的数量，视频客户端两两一组
+     */
+    private int chat = 200;
+    private int game = 200;
+    private int video = 100;
+    /**
+     * 用户ID的起始值，各类客户端的ID依次排列
+     */
+    private long userIdBase = 1_000_000;
+    private int durationSeconds = 60;
+    /**
+     * 在这段时间内均匀建立连接
+     */
+    private int rampUpSeconds = 10;
+
+    /**
+     * 游戏客户端分布在这么多个房间中，每秒上报位置的次数，地图边长，是否使用增量协议（?protocol=delta）
+     */
+    private int rooms = 1;
+    private int gameRate = 25;
+    private double mapSize = 1000;
+    private boolean gameDelta = false;
+
+    /**
+     * 聊天客户端平均每隔这么久连续发送 chatBurstSize 条消息
+     */
+    private long chatBurstIntervalMillis = 5000;
+    private int chatBurstSize = 5;
+
+    /**
+     * 通话中每秒发送的 video-processing 数，每次通话的时长
+     */
+    private int videoRate = 10;
+    private int videoCallSeconds = 10;
+
+    /**
+     * 发送消息等使用的线程数
+     */
+    private int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    private int reportIntervalSeconds = 5;
+
+    public static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("参数格式应为 --name=value: " + arg);
+            }
+            options.set(toCamelCase(arg.substring(2, eq)), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "url" -> url = value;
+            case "actuator" -> actuator = value;
+            case "chat" -> chat = Integer.parseInt(value);
+            case "game" -> game = Integer.parseInt(value);
+            case "video" -> video = Integer.parseInt(value);
+            case "userIdBase" -> userIdBase = Long.parseLong(value);
+            case "durationSeconds" -> durationSeconds = Integer.parseInt(value);
+            case "rampUpSeconds" -> rampUpSeconds = Integer.parseInt(value);
+            case "rooms" -> rooms = Integer.parseInt(value);
+            case "gameRate" -> gameRate = Integer.parseInt(value);
+            case "mapSize" -> mapSize = Double.parseDouble(value);
+            case "gameDelta" -> gameDelta = Boolean.parseBoolean(value);
+            case "chatBurstIntervalMillis" -> chatBurstIntervalMillis = Long.parseLong(value);
+            case "chatBurstSize" -> chatBurstSize = Integer.parseInt(value);
+            case "videoRate" -> videoRate = Integer.parseInt(value);
+            case "videoCallSeconds" -> videoCallSeconds = Integer.parseInt(value);
+            case "threads" -> threads = Integer.parseInt(value);
+            case "reportIntervalSeconds" -> reportIntervalSeconds = Integer.parseInt(value);
+            default -> throw new IllegalArgumentException("未知参数: " + name);
+        }
+    }
+
+    private static String toCamelCase(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        boolean upper = false;
+        for (char c : name.toCharArray()) {
+            if (c == '-') {
+                upper = true;
+            } else {
+                builder.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return builder.toString();
+    }
+}
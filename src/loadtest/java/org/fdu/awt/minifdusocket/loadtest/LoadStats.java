@@ -0,0 +1,101 @@
+package org.fdu.awt.minifdusocket.loadtest;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一类模拟客户端（聊天、游戏、视频）的统计
+ */
+public class LoadStats {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder connected = new LongAdder();
+    private final LongAdder connectFailed = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+    private final LongAdder sentMessages = new LongAdder();
+    private final LongAdder sentChars = new LongAdder();
+    private final LongAdder sendDropped = new LongAdder();
+    private final LongAdder sendFailed = new LongAdder();
+    private final LongAdder receivedMessages = new LongAdder();
+    private final LongAdder receivedChars = new LongAdder();
+
+    public LoadStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    void connected() {
+        connected.increment();
+    }
+
+    void connectFailed() {
+        connectFailed.increment();
+    }
+
+    void disconnected() {
+        disconnected.increment();
+    }
+
+    void sent(int chars) {
+        sentMessages.increment();
+        sentChars.add(chars);
+    }
+
+    void sendDropped() {
+        sendDropped.increment();
+    }
+
+    void sendFailed() {
+        sendFailed.increment();
+    }
+
+    void received(int chars) {
+        receivedMessages.increment();
+        receivedChars.add(chars);
+    }
+
+    public long getConnected() {
+        return connected.sum();
+    }
+
+    public long getConnectFailed() {
+        return connectFailed.sum();
+    }
+
+    public long getDisconnected() {
+        return disconnected.sum();
+    }
+
+    public long getSentMessages() {
+        return sentMessages.sum();
+    }
+
+    public long getSentChars() {
+        return sentChars.sum();
+    }
+
+    /**
+     * 压测端发送积压过多而未发出的消息数
+     */
+    public long getSendDropped() {
+        return sendDropped.sum();
+    }
+
+    public long getSendFailed() {
+        return sendFailed.sum();
+    }
+
+    public long getReceivedMessages() {
+        return receivedMessages.sum();
+    }
+
+    public long getReceivedChars() {
+        return receivedChars.sum();
+    }
+}
@@ -0,0 +1,85 @@
+package org.fdu.awt.minifdusocket.loadtest;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * 通过 /actuator/metrics 采集被测服务的 CPU 及堆内存 <br/>
+ * 服务未开放 actuator 时各项为 NaN，不影响压测。
+ */
+public class ServerMonitor {
+    private final HttpClient httpClient;
+    private final String actuator;
+    private double cpuSum;
+    private int cpuSamples;
+    private double maxCpu = Double.NaN;
+    private double maxHeap = Double.NaN;
+    private double lastCpu = Double.NaN;
+    private double lastHeap = Double.NaN;
+    private double lastQueued = Double.NaN;
+
+    public ServerMonitor(HttpClient httpClient, String actuator) {
+        this.httpClient = httpClient;
+        this.actuator = actuator;
+    }
+
+    public synchronized void sample() {
+        lastCpu = metric("process.cpu.usage", null);
+        lastHeap = metric("jvm.memory.used", "area:heap");
+        lastQueued = metric("websocket.outbound.queued", null);
+        if (!Double.isNaN(lastCpu)) {
+            cpuSum += lastCpu;
+            cpuSamples++;
+            maxCpu = Double.isNaN(maxCpu) ? lastCpu : Math.max(maxCpu, lastCpu);
+        }
+        if (!Double.isNaN(lastHeap)) {
+            maxHeap = Double.isNaN(maxHeap) ? lastHeap : Math.max(maxHeap, lastHeap);
+        }
+    }
+
+    private double metric(String name, String tag) {
+        String uri = actuator + "/metrics/" + name + (tag == null ? "" : "?tag=" + tag);
+        try {
+            HttpResponse<String> response = httpClient.send(
+                    HttpRequest.newBuilder(URI.create(uri)).timeout(Duration.ofSeconds(2)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return Double.NaN;
+            }
+            JSONArray measurements = JSONObject.parseObject(response.body()).getJSONArray("measurements");
+            for (int i = 0; i < measurements.size(); i++) {
+                JSONObject measurement = measurements.getJSONObject(i);
+                if ("VALUE".equals(measurement.getString("statistic"))) {
+                    return measurement.getDoubleValue("value");
+                }
+            }
+            return Double.NaN;
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    public synchronized String current() {
+        return String.format("server cpu %s, heap %s, outbound queued %s",
+                percent(lastCpu), megabytes(lastHeap), Double.isNaN(lastQueued) ? "-" : String.valueOf((long) lastQueued));
+    }
+
+    public synchronized String summary() {
+        return String.format("server cpu avg %s / max %s, heap max %s",
+                percent(cpuSamples == 0 ? Double.NaN : cpuSum / cpuSamples), percent(maxCpu), megabytes(maxHeap));
+    }
+
+    private static String percent(double value) {
+        return Double.isNaN(value) ? "-" : String.format("%.1f%%", value * 100);
+    }
+
+    private static String megabytes(double bytes) {
+        return Double.isNaN(bytes) ? "-" : String.format("%.0f MB", bytes / (1024 * 1024));
+    }
+}
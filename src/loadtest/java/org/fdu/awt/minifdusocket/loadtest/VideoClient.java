@@ -0,0 +1,119 @@
+package org.fdu.awt.minifdusocket.loadtest;
+
+import org.fdu.awt.minifdusocket.websocket.support.JsonEnvelope;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟视频通话客户端，两两一组：
+ * <ul>
+ *     <li>发起方发送 video-invite，接收方收到后回复 video-accept</li>
+ *     <li>接通后双方以 videoRate 的频率互发 video-processing（模拟 ICE 候选），forwardData 中带发送时间，接收方据此计算延迟</li>
+ *     <li>videoCallSeconds 秒后发起方发送 video-end，稍后重新发起；被拒绝（如对方尚未连接）时稍后重试</li>
+ * </ul>
+ */
+public class VideoClient extends LoadClient {
+    private static final long REDIAL_MILLIS = 1000;
+    private static final String TIME_PREFIX = "\"t\":";
+    private static final String CANDIDATE = "candidate:842163049 1 udp 1677729535 203.0.113.7 56143 typ srflx "
+            + "raddr 192.168.1.23 rport 56143 generation 0 ufrag sE3x network-cost 999";
+
+    private final LoadOptions options;
+    private final long peerId;
+    private final boolean initiator;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> relay;
+    private ScheduledFuture<?> hangUp;
+
+    public VideoClient(long userId, LoadStats stats, LoadOptions options, long peerId, boolean initiator) {
+        super(userId, stats);
+        this.options = options;
+        this.peerId = peerId;
+        this.initiator = initiator;
+    }
+
+    public synchronized void start(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+        if (initiator) {
+            scheduler.schedule(this::invite, REDIAL_MILLIS + ThreadLocalRandom.current().nextLong(REDIAL_MILLIS),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void invite() {
+        if (isOpen()) {
+            send(signal("video-invite"));
+        }
+    }
+
+    private String signal(String type) {
+        return "{\"type\":\"" + type + "\",\"fromId\":" + userId + ",\"toId\":" + peerId + "}";
+    }
+
+    @Override
+    protected synchronized void onText(String text, long receivedNanos) {
+        JsonEnvelope envelope = JsonEnvelope.scan(text);
+        if (envelope == null || envelope.getType() == null) {
+            return;
+        }
+        switch (envelope.getType()) {
+            case "video-invite":
+                send(signal("video-accept"));
+                startRelay();
+                break;
+            case "video-accept":
+                startRelay();
+                hangUp = scheduler.schedule(this::hangUp, options.getVideoCallSeconds(), TimeUnit.SECONDS);
+                break;
+            case "video-processing":
+                long sentNanos = LoadClients.parseLong(text, text.indexOf(TIME_PREFIX), TIME_PREFIX.length());
+                if (sentNanos > 0) {
+                    stats.getLatency().recordNanos(receivedNanos - sentNanos);
+                }
+                break;
+            case "video-reject":
+            case "video-end":
+                stopRelay();
+                if (initiator) {
+                    scheduler.schedule(this::invite, REDIAL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private synchronized void hangUp() {
+        stopRelay();
+        send(signal("video-end"));
+        scheduler.schedule(this::invite, REDIAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void startRelay() {
+        stopRelay();
+        long period = TimeUnit.SECONDS.toMicros(1) / options.getVideoRate();
+        relay = scheduler.scheduleAtFixedRate(() -> {
+            if (!isOpen()) {
+                stopRelay();
+                return;
+            }
+            send("{\"type\":\"video-processing\",\"fromId\":" + userId + ",\"toId\":" + peerId
+                    + ",\"forwardData\":{\"type\":\"candidate\",\"t\":" + System.nanoTime()
+                    + ",\"candidate\":{\"candidate\":\"" + CANDIDATE + "\",\"sdpMid\":\"0\",\"sdpMLineIndex\":0}}}");
+        }, period, period, TimeUnit.MICROSECONDS);
+    }
+
+    private synchronized void stopRelay() {
+        if (relay != null) {
+            relay.cancel(false);
+            relay = null;
+        }
+        if (hangUp != null) {
+            hangUp.cancel(false);
+            hangUp = null;
+        }
+    }
+}
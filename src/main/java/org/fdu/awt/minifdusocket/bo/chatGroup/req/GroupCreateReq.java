@@ -0,0 +1,25 @@
+package org.fdu.awt.minifdusocket.bo.chatGroup.req;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class GroupCreateReq {
+
+    @NotBlank(message = "群名称必填")
+    @Size(max = 64, message = "群名称最多64个字符")
+    private String name;
+
+    @NotNull(message = "创建者id必填")
+    private Long ownerId;
+
+    //初始成员，不需要包含创建者
+    private List<Long> memberIds = new ArrayList<>();
+}
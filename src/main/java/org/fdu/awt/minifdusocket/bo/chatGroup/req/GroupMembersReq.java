@@ -0,0 +1,19 @@
+package org.fdu.awt.minifdusocket.bo.chatGroup.req;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class GroupMembersReq {
+
+    @NotNull(message = "群id必填")
+    private Long groupId;
+
+    @NotEmpty(message = "用户id列表不能为空")
+    private List<Long> userIds;
+}
@@ -0,0 +1,20 @@
+package org.fdu.awt.minifdusocket.bo.chatGroup.resp;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupShowResp {
+    private Long groupId;
+    private String name;
+    private Long ownerId;
+    private Timestamp createTime;
+    private int memberCount;
+}
@@ -1,9 +1,11 @@
 package org.fdu.awt.minifdusocket.bo.historyMessage.req;
 
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.fdu.awt.minifdusocket.entity.HistoryMessage;
 
 @Data
 @Builder
@@ -17,6 +19,7 @@ public class MessageSendReq {
     private Long remoteId;
 
     @NotNull(message = "聊天信息内容必填")
+    @Size(max = HistoryMessage.MAX_CONTENT_LENGTH, message = "聊天信息内容过长")
     private String content;
 
 
@@ -0,0 +1,22 @@
+package org.fdu.awt.minifdusocket.bo.historyMessage.resp;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePageResp {
+    //本页消息，无论翻页方向都按时间正序排列
+    private List<MessageShowResp> messages;
+    //继续向同一方向翻页时使用的游标（本页最早/最晚一条消息的时间戳和id），本页为空时为null
+    private Long nextCursorTime;
+    private Long nextCursorId;
+    //同一方向上是否还有更多消息
+    private boolean hasMore;
+}
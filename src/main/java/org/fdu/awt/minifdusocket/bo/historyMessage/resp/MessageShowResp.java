@@ -17,4 +17,6 @@ public class MessageShowResp {
     private Timestamp timestamp ;
     private boolean ifSelf;
     private String type;
+    //发送者，群聊中用于区分其他成员
+    private Long senderId;
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package org.fdu.awt.minifdusocket.cluster;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 转发给其他节点上用户的消息
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterMessage {
+    /**
+     * 消息所属的通道，如 chat、video-chat，决定由哪个端点投递
+     */
+    private String channel;
+    /**
+     * 接收者
+     */
+    private Long toId;
+    /**
+     * 消息类型，接收节点不需要解析 payload 即可按类型处理
+     */
+    private String type;
+    /**
+     * 发给客户端的原始文本
+     */
+    private String payload;
+}
@@ -0,0 +1,13 @@
+package org.fdu.awt.minifdusocket.cluster;
+
+/**
+ * 在本节点投递消息（由各端点注册）
+ */
+@FunctionalInterface
+public interface ClusterMessageHandler {
+
+    /**
+     * @return 是否已在本节点处理（投递给接收者，或接收者已断开时由端点自行转存）
+     */
+    boolean deliver(ClusterMessage message);
+}
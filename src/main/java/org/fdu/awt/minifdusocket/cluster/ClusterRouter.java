@@ -0,0 +1,246 @@
+package org.fdu.awt.minifdusocket.cluster;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.config.ClusterProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 跨节点消息路由 <br/>
+ * 端点在连接建立/断开时登记用户所在节点（{@link PresenceRegistry}）；
+ * 接收者不在本节点时，通过 {@link #forward} 把消息转发到接收者所在节点，由该节点上注册的 {@link ClusterMessageHandler} 投递。 <br/>
+ * 发往同一节点的消息在一个发送线程中合并成批（最多 maxMessages 条或等待 maxDelayMillis），批次之间保持顺序。
+ */
+@Slf4j
+@Component
+public class ClusterRouter {
+    private final String nodeId;
+    private final ClusterProperties properties;
+    private final PresenceRegistry presenceRegistry;
+    private final MessageBus messageBus;
+    /**
+     * key: channel
+     */
+    private final Map<String, ClusterMessageHandler> handlers = new ConcurrentHashMap<>();
+    /**
+     * key: 目标节点
+     */
+    private final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+    /**
+     * 发送批次及心跳，单线程保证同一节点的批次有序
+     */
+    private final ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ClusterRouter(ClusterProperties properties, PresenceRegistry presenceRegistry, MessageBus messageBus) {
+        this.nodeId = properties.getNodeId();
+        this.properties = properties;
+        this.presenceRegistry = presenceRegistry;
+        this.messageBus = messageBus;
+    }
+
+    @PostConstruct
+    public void start() {
+        messageBus.subscribe(nodeId, this::onBatch);
+        presenceRegistry.heartbeat(nodeId);
+        long interval = properties.getHeartbeatMillis();
+        sender.scheduleAtFixedRate(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("【ClusterRouter】节点 {} 启动，模式 {}", nodeId, properties.getMode());
+    }
+
+    @PreDestroy
+    public void stop() {
+        messageBus.unsubscribe(nodeId);
+        outboxes.values().forEach(outbox -> sender.execute(outbox::flush));
+        sender.shutdown();
+        try {
+            sender.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 注册本节点上某个通道的投递方法，已注册时忽略
+     */
+    public void setHandlerIfAbsent(String channel, ClusterMessageHandler handler) {
+        handlers.putIfAbsent(channel, handler);
+    }
+
+    /**
+     * 用户连接到本节点
+     */
+    public void register(String channel, Long userId) {
+        try {
+            presenceRegistry.register(channel, userId, nodeId);
+        } catch (Exception e) {
+            log.error("【ClusterRouter】登记用户 {} 出错", userId, e);
+        }
+    }
+
+    /**
+     * 用户与本节点断开连接
+     */
+    public void unregister(String channel, Long userId) {
+        try {
+            presenceRegistry.unregister(channel, userId, nodeId);
+        } catch (Exception e) {
+            log.error("【ClusterRouter】注销用户 {} 出错", userId, e);
+        }
+    }
+
+    /**
+     * 用户是否连接在其他节点上
+     */
+    public boolean isOnlineElsewhere(String channel, Long userId) {
+        return locateRemote(channel, userId) != null;
+    }
+
+    /**
+     * 转发给连接在其他节点上的用户
+     *
+     * @return 用户不在任何其他节点上时返回 false
+     */
+    public boolean forward(String channel, Long toId, String type, String payload) {
+        String target = locateRemote(channel, toId);
+        if (target == null) {
+            return false;
+        }
+        outboxes.computeIfAbsent(target, Outbox::new).add(new ClusterMessage(channel, toId, type, payload));
+        return true;
+    }
+
+    /**
+     * 转发给连接在其他节点上的一批用户，每个节点只发送一条消息，由接收节点自行投递给其上的用户
+     *
+     * @param userIds 接收者，包括本节点上的用户也无妨（会被忽略）
+     * @param message 发往每个节点的消息，toId 由调用方约定（如群 id）
+     * @return 转发到的节点数
+     */
+    public int forwardToNodes(String presenceChannel, Collection<Long> userIds, ClusterMessage message) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        try {
+            for (String target : presenceRegistry.locateNodes(presenceChannel, userIds)) {
+                if (!target.equals(nodeId)) {
+                    outboxes.computeIfAbsent(target, Outbox::new).add(message);
+                    count++;
+                }
+            }
+        } catch (Exception e) {
+            log.error("【ClusterRouter】查找 {} 个用户所在节点出错", userIds.size(), e);
+        }
+        return count;
+    }
+
+    private String locateRemote(String channel, Long userId) {
+        try {
+            String target = presenceRegistry.locate(channel, userId);
+            return target == null || target.equals(nodeId) ? null : target;
+        } catch (Exception e) {
+            log.error("【ClusterRouter】查找用户 {} 所在节点出错", userId, e);
+            return null;
+        }
+    }
+
+    private void onBatch(List<ClusterMessage> batch) {
+        for (ClusterMessage message : batch) {
+            ClusterMessageHandler handler = handlers.get(message.getChannel());
+            try {
+                if (handler == null || !handler.deliver(message)) {
+                    log.warn("【ClusterRouter】用户 {} 已不在本节点，丢弃 {} 消息", message.getToId(), message.getChannel());
+                }
+            } catch (Exception e) {
+                log.error("【ClusterRouter】投递 {} 消息给用户 {} 出错", message.getChannel(), message.getToId(), e);
+            }
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            presenceRegistry.heartbeat(nodeId);
+        } catch (Exception e) {
+            log.error("【ClusterRouter】节点心跳出错", e);
+        }
+    }
+
+    /**
+     * 发往一个节点的待发送消息
+     */
+    private final class Outbox {
+        private final String target;
+        private List<ClusterMessage> pending = new ArrayList<>();
+        /**
+         * 已安排延时发送 / 已安排立即发送
+         */
+        private boolean scheduled;
+        private boolean flushQueued;
+
+        private Outbox(String target) {
+            this.target = target;
+        }
+
+        private void add(ClusterMessage message) {
+            ClusterProperties.Batch config = properties.getBatch();
+            synchronized (this) {
+                pending.add(message);
+                if (pending.size() >= config.getMaxMessages()) {
+                    if (!flushQueued) {
+                        flushQueued = true;
+                        sender.execute(this::flush);
+                    }
+                } else if (!scheduled) {
+                    scheduled = true;
+                    sender.schedule(this::flush, config.getMaxDelayMillis(), TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        /**
+         * 只在发送线程中执行
+         */
+        private void flush() {
+            List<ClusterMessage> batch;
+            synchronized (this) {
+                scheduled = false;
+                flushQueued = false;
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            // 发送线程繁忙时可能积压超过一批
+            int maxMessages = properties.getBatch().getMaxMessages();
+            for (int from = 0; from < batch.size(); from += maxMessages) {
+                List<ClusterMessage> chunk = batch.subList(from, Math.min(batch.size(), from + maxMessages));
+                try {
+                    messageBus.publish(target, chunk);
+                } catch (Exception e) {
+                    log.error("【ClusterRouter】转发 {} 条消息到节点 {} 出错", chunk.size(), target, e);
+                }
+            }
+        }
+    }
+}
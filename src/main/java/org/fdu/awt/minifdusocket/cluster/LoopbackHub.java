@@ -0,0 +1,55 @@
+package org.fdu.awt.minifdusocket.cluster;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 进程内的"集群"：单节点部署时使用，测试中也可以用多个 {@link ClusterRouter} 共享一个 hub 模拟多节点
+ */
+public class LoopbackHub implements PresenceRegistry, MessageBus {
+    /**
+     * key: channel + ':' + userId, value: nodeId
+     */
+    private final Map<String, String> presence = new ConcurrentHashMap<>();
+    private final Map<String, Consumer<List<ClusterMessage>>> nodes = new ConcurrentHashMap<>();
+
+    private static String key(String channel, Long userId) {
+        return channel + ':' + userId;
+    }
+
+    @Override
+    public void register(String channel, Long userId, String nodeId) {
+        presence.put(key(channel, userId), nodeId);
+    }
+
+    @Override
+    public void unregister(String channel, Long userId, String nodeId) {
+        presence.remove(key(channel, userId), nodeId);
+    }
+
+    @Override
+    public String locate(String channel, Long userId) {
+        String nodeId = presence.get(key(channel, userId));
+        return nodeId != null && nodes.containsKey(nodeId) ? nodeId : null;
+    }
+
+    @Override
+    public void publish(String nodeId, List<ClusterMessage> batch) {
+        Consumer<List<ClusterMessage>> consumer = nodes.get(nodeId);
+        if (consumer != null) {
+            consumer.accept(batch);
+        }
+    }
+
+    @Override
+    public void subscribe(String nodeId, Consumer<List<ClusterMessage>> consumer) {
+        nodes.put(nodeId, consumer);
+    }
+
+    @Override
+    public void unsubscribe(String nodeId) {
+        nodes.remove(nodeId);
+    }
+}
@@ -0,0 +1,19 @@
+package org.fdu.awt.minifdusocket.cluster;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 节点之间的消息通道，消息按目标节点成批发送
+ */
+public interface MessageBus {
+
+    void publish(String nodeId, List<ClusterMessage> batch);
+
+    /**
+     * 接收发往 nodeId 的消息，同一节点的批次按发送顺序到达
+     */
+    void subscribe(String nodeId, Consumer<List<ClusterMessage>> consumer);
+
+    void unsubscribe(String nodeId);
+}
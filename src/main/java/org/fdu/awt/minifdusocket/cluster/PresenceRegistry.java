@@ -0,0 +1,45 @@
+package org.fdu.awt.minifdusocket.cluster;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 记录每个用户连接在哪个节点上
+ */
+public interface PresenceRegistry {
+
+    void register(String channel, Long userId, String nodeId);
+
+    /**
+     * 只有记录的节点仍为 nodeId 时才删除（用户可能已经重新连接到其他节点）
+     */
+    void unregister(String channel, Long userId, String nodeId);
+
+    /**
+     * @return 用户所在节点，不在线或所在节点已下线时返回 null
+     */
+    String locate(String channel, Long userId);
+
+    /**
+     * 查找一批用户所在的节点（群消息按节点转发）
+     *
+     * @return 这些用户所在的节点（去重），不在线的用户忽略
+     */
+    default Set<String> locateNodes(String channel, Collection<Long> userIds) {
+        Set<String> nodeIds = new HashSet<>();
+        for (Long userId : userIds) {
+            String nodeId = locate(channel, userId);
+            if (nodeId != null) {
+                nodeIds.add(nodeId);
+            }
+        }
+        return nodeIds;
+    }
+
+    /**
+     * 节点心跳，由 {@link ClusterRouter} 定时调用
+     */
+    default void heartbeat(String nodeId) {
+    }
+}
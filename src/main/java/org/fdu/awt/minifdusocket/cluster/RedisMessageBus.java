@@ -0,0 +1,60 @@
+package org.fdu.awt.minifdusocket.cluster;
+
+import com.alibaba.fastjson2.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 基于 Redis Pub/Sub 的节点间消息通道 <br/>
+ * 每个节点订阅 mini-fdu:inbox:{nodeId}，一条 Redis 消息为一批 {@link ClusterMessage} 的 json 数组。
+ * 监听容器使用单线程执行器，保证同一节点收到的批次有序。
+ */
+@Slf4j
+public class RedisMessageBus implements MessageBus {
+    private static final String INBOX_PREFIX = "mini-fdu:inbox:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final Map<String, MessageListener> listeners = new ConcurrentHashMap<>();
+
+    public RedisMessageBus(StringRedisTemplate redisTemplate, RedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @Override
+    public void publish(String nodeId, List<ClusterMessage> batch) {
+        redisTemplate.convertAndSend(INBOX_PREFIX + nodeId, JSON.toJSONString(batch));
+    }
+
+    @Override
+    public void subscribe(String nodeId, Consumer<List<ClusterMessage>> consumer) {
+        MessageListener listener = (message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            try {
+                consumer.accept(JSON.parseArray(body, ClusterMessage.class));
+            } catch (Exception e) {
+                log.error("【RedisMessageBus】处理节点消息出错: {}", body, e);
+            }
+        };
+        listeners.put(nodeId, listener);
+        listenerContainer.addMessageListener(listener, new ChannelTopic(INBOX_PREFIX + nodeId));
+    }
+
+    @Override
+    public void unsubscribe(String nodeId) {
+        MessageListener listener = listeners.remove(nodeId);
+        if (listener != null) {
+            listenerContainer.removeMessageListener(listener);
+        }
+    }
+}
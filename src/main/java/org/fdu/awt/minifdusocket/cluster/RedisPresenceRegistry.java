@@ -0,0 +1,105 @@
+package org.fdu.awt.minifdusocket.cluster;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Redis 的在线用户表 <br/>
+ * <ul>
+ *     <li>mini-fdu:presence:{channel}:{userId} -> nodeId</li>
+ *     <li>mini-fdu:node:{nodeId}：节点心跳，过期即视为节点下线，其上的用户视为不在线</li>
+ * </ul>
+ */
+public class RedisPresenceRegistry implements PresenceRegistry {
+    private static final String PRESENCE_PREFIX = "mini-fdu:presence:";
+    private static final String NODE_PREFIX = "mini-fdu:node:";
+    /**
+     * 节点存活状态的本地缓存时间，避免每次查找都访问 Redis 两次
+     */
+    private static final long ALIVE_CACHE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final DefaultRedisScript<Long> COMPARE_AND_DELETE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration nodeTtl;
+    /**
+     * key: nodeId, value: 本地缓存的存活状态过期时间（nanoTime），只缓存存活的节点
+     */
+    private final Map<String, Long> aliveNodes = new ConcurrentHashMap<>();
+
+    public RedisPresenceRegistry(StringRedisTemplate redisTemplate, long heartbeatMillis) {
+        this.redisTemplate = redisTemplate;
+        this.nodeTtl = Duration.ofMillis(heartbeatMillis * 3);
+    }
+
+    private static String presenceKey(String channel, Long userId) {
+        return PRESENCE_PREFIX + channel + ':' + userId;
+    }
+
+    @Override
+    public void register(String channel, Long userId, String nodeId) {
+        redisTemplate.opsForValue().set(presenceKey(channel, userId), nodeId);
+    }
+
+    @Override
+    public void unregister(String channel, Long userId, String nodeId) {
+        redisTemplate.execute(COMPARE_AND_DELETE, List.of(presenceKey(channel, userId)), nodeId);
+    }
+
+    @Override
+    public String locate(String channel, Long userId) {
+        String nodeId = redisTemplate.opsForValue().get(presenceKey(channel, userId));
+        return nodeId != null && isAlive(nodeId) ? nodeId : null;
+    }
+
+    /**
+     * 一次 MGET 查出所有用户，避免每个成员一次往返
+     */
+    @Override
+    public Set<String> locateNodes(String channel, Collection<Long> userIds) {
+        List<String> keys = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            keys.add(presenceKey(channel, userId));
+        }
+        List<String> values = redisTemplate.opsForValue().multiGet(keys);
+        Set<String> nodeIds = new HashSet<>();
+        if (values != null) {
+            for (String nodeId : values) {
+                if (nodeId != null && !nodeIds.contains(nodeId) && isAlive(nodeId)) {
+                    nodeIds.add(nodeId);
+                }
+            }
+        }
+        return nodeIds;
+    }
+
+    private boolean isAlive(String nodeId) {
+        Long expiresAt = aliveNodes.get(nodeId);
+        long now = System.nanoTime();
+        if (expiresAt != null && now - expiresAt < 0) {
+            return true;
+        }
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(NODE_PREFIX + nodeId))) {
+            aliveNodes.put(nodeId, now + ALIVE_CACHE_NANOS);
+            return true;
+        }
+        aliveNodes.remove(nodeId);
+        return false;
+    }
+
+    @Override
+    public void heartbeat(String nodeId) {
+        redisTemplate.opsForValue().set(NODE_PREFIX + nodeId, String.valueOf(System.currentTimeMillis()), nodeTtl);
+    }
+}
@@ -0,0 +1,44 @@
+package org.fdu.awt.minifdusocket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 聊天相关配置 <br/>
+ * 对应配置文件中 {@code chat.*} 前缀的配置项
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat")
+public class ChatProperties {
+
+    private final Group group = new Group();
+    private final Offline offline = new Offline();
+
+    /**
+     * 群聊配置
+     */
+    @Data
+    public static class Group {
+        /**
+         * 每个群的成员数上限
+         */
+        private int maxMembers = 1000;
+        /**
+         * 成员列表在本节点缓存的时间（毫秒）；本节点修改成员时在提交后立即失效，其他节点上的修改最多延迟这么久生效
+         */
+        private long membershipCacheMillis = 60_000;
+    }
+
+    /**
+     * 离线消息配置
+     */
+    @Data
+    public static class Offline {
+        /**
+         * 每帧推送的离线消息数，客户端确认一帧后再推送下一帧
+         */
+        private int batchSize = 100;
+    }
+}
@@ -0,0 +1,66 @@
+package org.fdu.awt.minifdusocket.config;
+
+import org.fdu.awt.minifdusocket.cluster.LoopbackHub;
+import org.fdu.awt.minifdusocket.cluster.RedisMessageBus;
+import org.fdu.awt.minifdusocket.cluster.RedisPresenceRegistry;
+import org.springframework.boot.actuate.data.redis.RedisHealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.concurrent.Executors;
+
+/**
+ * 根据 {@code cluster.mode} 选择在线用户表及节点间消息通道的实现
+ */
+@Configuration
+public class ClusterConfig {
+
+    /**
+     * 单节点：进程内实现
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "cluster", name = "mode", havingValue = ClusterProperties.MODE_LOCAL, matchIfMissing = true)
+    public LoopbackHub loopbackHub() {
+        return new LoopbackHub();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "cluster", name = "mode", havingValue = ClusterProperties.MODE_REDIS)
+    public RedisPresenceRegistry redisPresenceRegistry(StringRedisTemplate redisTemplate, ClusterProperties properties) {
+        return new RedisPresenceRegistry(redisTemplate, properties.getHeartbeatMillis());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "cluster", name = "mode", havingValue = ClusterProperties.MODE_REDIS)
+    public RedisMessageListenerContainer clusterListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // 单线程处理，保证同一节点的批次按顺序投递
+        container.setTaskExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-inbox");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        return container;
+    }
+
+    /**
+     * Redis 健康检查只在 redis 模式下注册（management.health.redis.enabled=false 关闭了 Spring Boot 自动注册的检查），
+     * 否则单节点部署没有 Redis，/actuator/health 总是 DOWN
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "cluster", name = "mode", havingValue = ClusterProperties.MODE_REDIS)
+    public RedisHealthIndicator redisHealthIndicator(RedisConnectionFactory connectionFactory) {
+        return new RedisHealthIndicator(connectionFactory);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "cluster", name = "mode", havingValue = ClusterProperties.MODE_REDIS)
+    public RedisMessageBus redisMessageBus(StringRedisTemplate redisTemplate, RedisMessageListenerContainer clusterListenerContainer) {
+        return new RedisMessageBus(redisTemplate, clusterListenerContainer);
+    }
+}
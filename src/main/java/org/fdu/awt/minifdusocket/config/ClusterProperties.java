@@ -0,0 +1,55 @@
+package org.fdu.awt.minifdusocket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * 多节点部署相关配置 <br/>
+ * 对应配置文件中 {@code cluster.*} 前缀的配置项
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cluster")
+public class ClusterProperties {
+    public static final String MODE_LOCAL = "local";
+    public static final String MODE_REDIS = "redis";
+
+    /**
+     * local：单节点（进程内路由）；redis：通过 Redis 记录用户所在节点并转发消息
+     */
+    private String mode = MODE_LOCAL;
+    /**
+     * 节点 id，为空时启动时随机生成
+     */
+    private String nodeId;
+    /**
+     * 节点心跳间隔（毫秒），超过 3 个间隔没有心跳的节点视为下线
+     */
+    private long heartbeatMillis = 5_000;
+    private final Batch batch = new Batch();
+
+    public String getNodeId() {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = UUID.randomUUID().toString().substring(0, 8);
+        }
+        return nodeId;
+    }
+
+    /**
+     * 发往同一节点的消息合并发送
+     */
+    @Data
+    public static class Batch {
+        /**
+         * 每批最多消息数，达到后立即发送
+         */
+        private int maxMessages = 64;
+        /**
+         * 第一条消息最多等待时间（毫秒）
+         */
+        private long maxDelayMillis = 5;
+    }
+}
@@ -0,0 +1,120 @@
+package org.fdu.awt.minifdusocket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 游戏同步相关配置 <br/>
+ * 对应配置文件中 {@code game.*} 前缀的配置项
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "game")
+public class GameProperties {
+
+    private final Tick tick = new Tick();
+    private final Aoi aoi = new Aoi();
+    private final Delta delta = new Delta();
+    private final Ingest ingest = new Ingest();
+    private final Rate rate = new Rate();
+
+    /**
+     * 定时广播配置
+     */
+    @Data
+    public static class Tick {
+        /**
+         * 每秒 tick 次数，默认 25（即每 40ms 广播一次）
+         */
+        private int rate = 25;
+        /**
+         * tick 线程数，各房间的 tick 分散在这些线程上执行；0 表示使用 CPU 核数
+         */
+        private int threads = 0;
+    }
+
+    /**
+     * 兴趣区域（Area of Interest）配置 <br/>
+     * 每个玩家只接收以自己为中心、半径 radius 范围内（x/z 平面）的其他玩家数据
+     */
+    @Data
+    public static class Aoi {
+        /**
+         * 是否启用兴趣区域过滤，关闭时每个玩家接收全部玩家数据
+         */
+        private boolean enabled = true;
+        /**
+         * 可见半径
+         */
+        private double radius = 100;
+        /**
+         * 网格单元边长，一般与半径相同即可（查询时最多访问 3x3 个单元）
+         */
+        private double cellSize = 100;
+    }
+
+    /**
+     * 增量同步配置（客户端连接时带 {@code ?protocol=delta} 参数启用）
+     */
+    @Data
+    public static class Delta {
+        /**
+         * 关键帧间隔（tick 数），到期后下发一次完整数据用于重新同步
+         */
+        private int keyframeInterval = 50;
+        /**
+         * 客户端确认的快照最多落后多少个 tick，超过后强制下发关键帧
+         */
+        private int maxAckLag = 25;
+    }
+
+    /**
+     * 客户端上报限制 <br/>
+     * 每个会话一个令牌桶，超出速率或长度的消息直接丢弃；local_update 只保留最新的一条，在下一个 tick 中解析
+     */
+    @Data
+    public static class Ingest {
+        /**
+         * 每秒最多接受的消息数（含 ack，增量协议的客户端每个 tick 上报一次并确认一次）
+         */
+        private double maxMessagesPerSecond = 100;
+        /**
+         * 允许的突发消息数
+         */
+        private int burst = 50;
+        /**
+         * 文本消息的最大长度（字符）
+         */
+        private int maxMessageChars = 4096;
+        /**
+         * 每个房间 model/action 字符串的 id 映射最多容纳的字符串数（二进制协议），已满后新的字符串被忽略
+         */
+        private int maxSymbolsPerRoom = 256;
+        /**
+         * 每个玩家最多向映射中新增的字符串数，超出后该玩家新的 model/action 被忽略
+         */
+        private int maxSymbolsPerPlayer = 16;
+    }
+
+    /**
+     * 按客户端调整的下发频率 <br/>
+     * 远处玩家的变化降低频率下发；发送队列积压的客户端降低快照频率，恢复后逐步回到每个 tick 一次。
+     * 快照中带有服务端时间戳 t（毫秒），客户端据此插值
+     */
+    @Data
+    public static class Rate {
+        /**
+         * 该距离（x/z 平面）以内的玩家每个 tick 都下发变化
+         */
+        private double nearRadius = 30;
+        /**
+         * 更远的玩家每隔多少个 tick 下发一次变化（增量协议与二进制协议），1 表示不降频
+         */
+        private int farInterval = 3;
+        /**
+         * 发送队列积压时快照间隔（tick 数）的上限，间隔每次积压时加倍、无积压时减半
+         */
+        private int maxCongestedInterval = 8;
+    }
+}
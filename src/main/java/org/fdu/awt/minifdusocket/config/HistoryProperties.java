@@ -0,0 +1,61 @@
+package org.fdu.awt.minifdusocket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 聊天记录相关配置 <br/>
+ * 对应配置文件中 {@code history.*} 前缀的配置项
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "history")
+public class HistoryProperties {
+
+    private final WriteBehind writeBehind = new WriteBehind();
+    private final Cache cache = new Cache();
+
+    /**
+     * 异步批量写入配置
+     */
+    @Data
+    public static class WriteBehind {
+        /**
+         * 每批最多写入的记录数
+         */
+        private int batchSize = 500;
+        /**
+         * 不足一批时最长等待时间（毫秒）
+         */
+        private long flushIntervalMillis = 100;
+        /**
+         * 内存队列容量，队列满时直接写入本地溢出文件
+         */
+        private int queueCapacity = 20_000;
+        /**
+         * 数据库写入失败后的重试间隔（毫秒），期间新的记录写入溢出文件
+         */
+        private long retryIntervalMillis = 5_000;
+        /**
+         * 本地溢出文件，数据库恢复后重新写入
+         */
+        private String spillFile = "data/history-spill.jsonl";
+    }
+
+    /**
+     * 最近会话缓存配置
+     */
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        /**
+         * 每个会话缓存最近的消息条数
+         */
+        private int maxMessagesPerConversation = 200;
+        /**
+         * 缓存占用内存上限（按消息内容估算），超过后淘汰最久未使用的会话
+         */
+        private long maxBytes = 64 * 1024 * 1024;
+    }
+}
@@ -0,0 +1,110 @@
+package org.fdu.awt.minifdusocket.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WebSocket 通用配置 <br/>
+ * 对应配置文件中 {@code websocket.*} 前缀的配置项
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "websocket")
+public class WebSocketProperties {
+
+    private final Outbound outbound = new Outbound();
+    private final Dispatch dispatch = new Dispatch();
+    private final Video video = new Video();
+    private final TrafficLog trafficLog = new TrafficLog();
+
+    /**
+     * 每个会话的发送队列配置
+     */
+    @Data
+    public static class Outbound {
+        /**
+         * 队列中最多积压的消息数（可合并的快照不计入）
+         */
+        private int maxMessages = 1024;
+        /**
+         * 队列中最多积压的字节数（文本按 UTF-8 编码后的长度计算）
+         */
+        private long maxBytes = 4 * 1024 * 1024;
+        /**
+         * 队首消息、待发送的快照、发送中的消息的最长等待时间（毫秒），超过后认为客户端过慢并断开连接
+         */
+        private long maxLagMillis = 10_000;
+        /**
+         * 关闭连接（慢客户端、被同一用户的新连接替换）的线程数，关闭时需要等待进行中的发送，可能阻塞
+         */
+        private int closeThreads = 4;
+    }
+
+    /**
+     * 消息处理的执行方式
+     */
+    @Data
+    public static class Dispatch {
+        public static final String MODE_CONTAINER = "container";
+        public static final String MODE_PLATFORM = "platform";
+        public static final String MODE_VIRTUAL = "virtual";
+
+        /**
+         * container：在容器 I/O 线程中处理；platform：有界线程池；virtual：虚拟线程（需要 Java 21，否则退回 platform）
+         */
+        private String mode = MODE_CONTAINER;
+        /**
+         * platform 模式的线程数，0 表示 CPU 核数的 4 倍
+         */
+        private int threads = 0;
+        /**
+         * platform 模式的队列容量，队列满时由容器线程直接执行（反压）
+         */
+        private int queueCapacity = 10_000;
+    }
+
+    /**
+     * 视频通话配置
+     */
+    @Data
+    public static class Video {
+        /**
+         * 邀请最长等待时间（毫秒），超时未接听按对方不在线记录
+         */
+        private long inviteTimeoutMillis = 30_000;
+        /**
+         * 转发信令（video-processing）的合并窗口（毫秒），0 表示不合并；只对连接时带 {@code ?batch=true} 的客户端生效
+         */
+        private long coalesceMillis = 5;
+        /**
+         * 一批最多合并的信令数，达到后立即发送
+         */
+        private int coalesceMaxMessages = 32;
+    }
+
+    /**
+     * 收发消息的流量日志（logger: {@code websocket.traffic}）
+     */
+    @Data
+    public static class TrafficLog {
+        /**
+         * 各通道（chat、video-chat）的采样率，0~1，未配置的通道使用 defaultSampleRate
+         */
+        private Map<String, Double> sampleRate = new HashMap<>();
+        private double defaultSampleRate = 1.0;
+        /**
+         * 消息内容最多记录的字符数
+         */
+        private int maxPayloadChars = 256;
+        /**
+         * 记录时隐藏这些字段的字符串值（聊天内容、SDP、ICE 候选地址等）
+         */
+        private List<String> redactFields = new ArrayList<>(List.of("message", "sdp", "candidate"));
+    }
+}
@@ -0,0 +1,92 @@
+package org.fdu.awt.minifdusocket.controller;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.bo.chatGroup.req.GroupCreateReq;
+import org.fdu.awt.minifdusocket.bo.chatGroup.req.GroupMembersReq;
+import org.fdu.awt.minifdusocket.bo.chatGroup.resp.GroupShowResp;
+import org.fdu.awt.minifdusocket.bo.historyMessage.resp.MessagePageResp;
+import org.fdu.awt.minifdusocket.result.Result;
+import org.fdu.awt.minifdusocket.result.ResultFactory;
+import org.fdu.awt.minifdusocket.service.impl.ChatGroupService;
+import org.fdu.awt.minifdusocket.service.impl.HistoryMessageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@Validated
+@RestController
+@RequestMapping("/group-service")
+public class ChatGroupController {
+
+    private final ChatGroupService chatGroupService;
+    private final HistoryMessageService historyMessageService;
+
+    @Autowired
+    public ChatGroupController(ChatGroupService chatGroupService, HistoryMessageService historyMessageService) {
+        this.chatGroupService = chatGroupService;
+        this.historyMessageService = historyMessageService;
+    }
+
+    @PostMapping("create-group")
+    public Result createGroup(@RequestBody @Valid GroupCreateReq req) {
+        try {
+            GroupShowResp group = chatGroupService.createGroup(req.getName(), req.getOwnerId(), req.getMemberIds());
+            return ResultFactory.buildSuccessResult(group);
+        } catch (IllegalArgumentException e) {
+            return ResultFactory.buildFailResult(e.getMessage());
+        }
+    }
+
+    @PostMapping("add-members")
+    public Result addMembers(@RequestBody @Valid GroupMembersReq req) {
+        try {
+            chatGroupService.addMembers(req.getGroupId(), req.getUserIds());
+            return ResultFactory.buildSuccessResult();
+        } catch (IllegalArgumentException e) {
+            return ResultFactory.buildFailResult(e.getMessage());
+        }
+    }
+
+    @PostMapping("remove-members")
+    public Result removeMembers(@RequestBody @Valid GroupMembersReq req) {
+        chatGroupService.removeMembers(req.getGroupId(), req.getUserIds());
+        return ResultFactory.buildSuccessResult();
+    }
+
+    @GetMapping("get-groups")
+    public Result getGroups(@RequestParam("userId") Long userId) {
+        return ResultFactory.buildSuccessResult(chatGroupService.getGroups(userId));
+    }
+
+    @GetMapping("get-members")
+    public Result getMembers(@RequestParam("groupId") Long groupId) {
+        return ResultFactory.buildSuccessResult(chatGroupService.getMembers(groupId));
+    }
+
+    @GetMapping("get-history-message-page")
+    public Result getHistoryMessagePage(@RequestParam("groupId") Long groupId,
+                                        @RequestParam("localId") Long localId,
+                                        @RequestParam(value = "cursorTime", required = false) Long cursorTime,
+                                        @RequestParam(value = "cursorId", required = false) Long cursorId,
+                                        @RequestParam(value = "size", defaultValue = "20") @Min(1) @Max(100) int size,
+                                        @RequestParam(value = "direction", defaultValue = HistoryMessageService.DIRECTION_BEFORE) String direction) {
+        if (!chatGroupService.isMember(groupId, localId)) {
+            return ResultFactory.buildInsufficientPermissionsResult("不是该群成员");
+        }
+        try {
+            MessagePageResp page = historyMessageService.getGroupHistoryMessagePage(groupId, localId, cursorTime, cursorId, size, direction);
+            return ResultFactory.buildSuccessResult(page);
+        } catch (IllegalArgumentException e) {
+            return ResultFactory.buildFailResult(e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package org.fdu.awt.minifdusocket.controller;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.bo.historyMessage.resp.MessagePageResp;
 import org.fdu.awt.minifdusocket.bo.historyMessage.resp.MessageShowResp;
 import org.fdu.awt.minifdusocket.result.Result;
 import org.fdu.awt.minifdusocket.result.ResultFactory;
@@ -33,5 +36,20 @@ public class HistoryMessageController {
         List<MessageShowResp> historyMessageRespList = historyMessageService.getHistoryMessages(localId, remoteId);
         return ResultFactory.buildSuccessResult(historyMessageRespList);
     }
+
+    @GetMapping("get-history-message-page")
+    public Result getHistoryMessagePage(@RequestParam("localId") Long localId,
+                                        @RequestParam("remoteId") Long remoteId,
+                                        @RequestParam(value = "cursorTime", required = false) Long cursorTime,
+                                        @RequestParam(value = "cursorId", required = false) Long cursorId,
+                                        @RequestParam(value = "size", defaultValue = "20") @Min(1) @Max(100) int size,
+                                        @RequestParam(value = "direction", defaultValue = HistoryMessageService.DIRECTION_BEFORE) String direction) {
+        try {
+            MessagePageResp page = historyMessageService.getHistoryMessagePage(localId, remoteId, cursorTime, cursorId, size, direction);
+            return ResultFactory.buildSuccessResult(page);
+        } catch (IllegalArgumentException e) {
+            return ResultFactory.buildFailResult(e.getMessage());
+        }
+    }
 }
 
@@ -0,0 +1,7 @@
+package org.fdu.awt.minifdusocket.dao;
+
+import org.fdu.awt.minifdusocket.entity.ChatGroup;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ChatGroupDAO extends JpaRepository<ChatGroup, Long> {
+}
@@ -0,0 +1,31 @@
+package org.fdu.awt.minifdusocket.dao;
+
+import org.fdu.awt.minifdusocket.entity.ChatGroupMember;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ChatGroupMemberDAO extends JpaRepository<ChatGroupMember, Long> {
+
+    /**
+     * 群内所有成员的 id，使用唯一索引 uk_group_user
+     */
+    @Query("SELECT m.userId FROM ChatGroupMember m WHERE m.groupId = :groupId")
+    List<Long> findUserIdsByGroupId(@Param("groupId") Long groupId);
+
+    /**
+     * 用户加入的所有群的 id，使用索引 idx_user
+     */
+    @Query("SELECT m.groupId FROM ChatGroupMember m WHERE m.userId = :userId")
+    List<Long> findGroupIdsByUserId(@Param("userId") Long userId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ChatGroupMember m WHERE m.groupId = :groupId AND m.userId IN :userIds")
+    int deleteByGroupIdAndUserIdIn(@Param("groupId") Long groupId, @Param("userIds") Collection<Long> userIds);
+}
@@ -0,0 +1,19 @@
+package org.fdu.awt.minifdusocket.dao;
+
+import org.fdu.awt.minifdusocket.entity.HistoryMessage;
+
+import java.util.List;
+
+/**
+ * 聊天记录批量写入 <br/>
+ * history_message 使用自增主键（IDENTITY），Hibernate 无法对其批量插入，因此直接使用 JDBC batch
+ */
+public interface HistoryMessageBatchDAO {
+
+    /**
+     * 在一个事务中批量插入
+     *
+     * @return 按顺序生成的 id；驱动没有返回生成的主键时返回空列表
+     */
+    List<Long> insertBatch(List<HistoryMessage> messages);
+}
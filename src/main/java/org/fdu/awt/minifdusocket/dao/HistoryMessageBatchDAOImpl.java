@@ -0,0 +1,65 @@
+package org.fdu.awt.minifdusocket.dao;
+
+import org.fdu.awt.minifdusocket.entity.HistoryMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link HistoryMessageBatchDAO} 的实现，由 Spring Data 组合进 {@link HistoryMessageDAO}
+ */
+public class HistoryMessageBatchDAOImpl implements HistoryMessageBatchDAO {
+    private static final String INSERT_SQL =
+            "INSERT INTO history_message (local_id, remote_id, content, time_stamp, type, conversation_key) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public HistoryMessageBatchDAOImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public List<Long> insertBatch(List<HistoryMessage> messages) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        HistoryMessage message = messages.get(i);
+                        ps.setLong(1, message.getLocalId());
+                        ps.setLong(2, message.getRemoteId());
+                        ps.setString(3, message.getContent());
+                        ps.setTimestamp(4, message.getTimeStamp());
+                        ps.setString(5, message.getType());
+                        ps.setString(6, message.getConversationKey());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return messages.size();
+                    }
+                }, keyHolder);
+        // 不同驱动返回的列名不同（MySQL 为 GENERATED_KEY，H2 为 ID），每行只有主键一列
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != messages.size()) {
+            return List.of();
+        }
+        List<Long> ids = new ArrayList<>(keys.size());
+        for (Map<String, Object> key : keys) {
+            ids.add(((Number) key.values().iterator().next()).longValue());
+        }
+        return ids;
+    }
+}
@@ -1,12 +1,52 @@
 package org.fdu.awt.minifdusocket.dao;
 
 import org.fdu.awt.minifdusocket.entity.HistoryMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.sql.Timestamp;
 import java.util.List;
 
-public interface HistoryMessageDAO extends JpaRepository<HistoryMessage, Long> {
+public interface HistoryMessageDAO extends JpaRepository<HistoryMessage, Long>, HistoryMessageBatchDAO {
 
     List<HistoryMessage> findByLocalIdAndRemoteId(Long localId, Long remoteId);
 
+    /**
+     * 一个会话（双方）的全部消息，按时间正序，使用索引 idx_conversation_time
+     */
+    List<HistoryMessage> findByConversationKeyOrderByTimeStampAscIdAsc(String conversationKey);
+
+    /**
+     * 最新的一页，按时间倒序
+     */
+    List<HistoryMessage> findByConversationKeyOrderByTimeStampDescIdDesc(String conversationKey, Pageable pageable);
+
+    /**
+     * 最早的一页，按时间正序
+     */
+    List<HistoryMessage> findByConversationKeyOrderByTimeStampAscIdAsc(String conversationKey, Pageable pageable);
+
+    /**
+     * 游标 (timeStamp, id) 之前的一页，按时间倒序
+     */
+    @Query("SELECT m FROM HistoryMessage m WHERE m.conversationKey = :key "
+            + "AND (m.timeStamp < :cursorTime OR (m.timeStamp = :cursorTime AND m.id < :cursorId)) "
+            + "ORDER BY m.timeStamp DESC, m.id DESC")
+    List<HistoryMessage> findPageBefore(@Param("key") String conversationKey,
+                                        @Param("cursorTime") Timestamp cursorTime,
+                                        @Param("cursorId") Long cursorId,
+                                        Pageable pageable);
+
+    /**
+     * 游标 (timeStamp, id) 之后的一页，按时间正序
+     */
+    @Query("SELECT m FROM HistoryMessage m WHERE m.conversationKey = :key "
+            + "AND (m.timeStamp > :cursorTime OR (m.timeStamp = :cursorTime AND m.id > :cursorId)) "
+            + "ORDER BY m.timeStamp ASC, m.id ASC")
+    List<HistoryMessage> findPageAfter(@Param("key") String conversationKey,
+                                       @Param("cursorTime") Timestamp cursorTime,
+                                       @Param("cursorId") Long cursorId,
+                                       Pageable pageable);
 }
@@ -0,0 +1,28 @@
+package org.fdu.awt.minifdusocket.dao;
+
+import org.fdu.awt.minifdusocket.entity.OfflineMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OfflineMessageDAO extends JpaRepository<OfflineMessage, Long> {
+
+    /**
+     * 用户最早的待投递消息，使用索引 idx_user_id
+     */
+    List<OfflineMessage> findByUserIdOrderByIdAsc(Long userId, Pageable pageable);
+
+    /**
+     * 删除已确认的消息，只删除属于该用户的
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OfflineMessage m WHERE m.userId = :userId AND m.id IN :ids")
+    int deleteByUserIdAndIdIn(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
+}
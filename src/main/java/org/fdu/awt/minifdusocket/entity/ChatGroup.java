@@ -0,0 +1,33 @@
+package org.fdu.awt.minifdusocket.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+/**
+ * 群聊，成员见 {@link ChatGroupMember}，消息记录在 {@link HistoryMessage} 中（会话键见 {@link HistoryMessage#groupConversationKey}）
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "chat_group")
+public class ChatGroup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, name = "name", length = 64)
+    private String name;
+
+    @Column(nullable = false, name = "owner_id")
+    private Long ownerId;
+
+    @Column(nullable = false, name = "create_time")
+    private Timestamp createTime;
+}
@@ -14,8 +14,16 @@ import java.sql.Timestamp;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "history_message")
+@Table(name = "history_message", indexes = {
+        @Index(name = "idx_conversation_time", columnList = "conversation_key, time_stamp, id")
+})
 public class HistoryMessage {
+    /**
+     * 消息内容的最大长度（字符），与表中 content 列的长度一致，超过时在接收消息时拒绝
+     */
+    public static final int MAX_CONTENT_LENGTH = 2000;
+    private static final String GROUP_KEY_PREFIX = "group_";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -26,7 +34,7 @@ public class HistoryMessage {
     @Column(nullable = false, name = "remote_id")
     private Long remoteId;
 
-    @Column(nullable = false, name = "content")
+    @Column(nullable = false, name = "content", length = MAX_CONTENT_LENGTH)
     private String content;
 
     @Column(nullable = false, name = "time_stamp")
@@ -35,6 +43,42 @@ public class HistoryMessage {
     @Column(nullable = false, name = "type")
     private String type;
 
+    /**
+     * 会话键：单聊为两个用户 id 按从小到大排列，双方的消息共用同一个键，见 {@link #conversationKey(Long, Long)}；
+     * 群聊为 {@link #groupConversationKey(Long)}，此时 remoteId 为群 id，每条群消息只有一条记录
+     */
+    @Column(nullable = false, name = "conversation_key", length = 64)
+    private String conversationKey;
+
+    /**
+     * 与发送方向无关的会话键，例如 1 和 2 之间的会话为 "1_2"
+     */
+    public static String conversationKey(Long localId, Long remoteId) {
+        return localId <= remoteId ? localId + "_" + remoteId : remoteId + "_" + localId;
+    }
+
+    /**
+     * 群聊的会话键，例如群 7 为 "group_7"
+     */
+    public static String groupConversationKey(Long groupId) {
+        return GROUP_KEY_PREFIX + groupId;
+    }
+
+    /**
+     * 会话键，未指定时（单聊）由双方 id 计算
+     */
+    public String getConversationKey() {
+        if (conversationKey == null && localId != null && remoteId != null) {
+            conversationKey = conversationKey(localId, remoteId);
+        }
+        return conversationKey;
+    }
+
+    @PrePersist
+    private void fillConversationKey() {
+        getConversationKey();
+    }
+
     public static HistoryMessage fromMessageSendReq(MessageSendReq messageSendReq) {
         return HistoryMessage.builder()
                 .localId(messageSendReq.getLocalId())
@@ -0,0 +1,49 @@
+package org.fdu.awt.minifdusocket.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+/**
+ * 接收者不在线时的待投递消息 <br/>
+ * 聊天记录照常写入 history_message，这里只是按接收者索引的收件箱，用户上线时一次查出并推送，客户端确认后删除
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "offline_message", indexes = @Index(name = "idx_user_id", columnList = "user_id, id"))
+public class OfflineMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 接收者
+     */
+    @Column(nullable = false, name = "user_id")
+    private Long userId;
+
+    /**
+     * 发送者
+     */
+    @Column(nullable = false, name = "from_id")
+    private Long fromId;
+
+    /**
+     * 与聊天记录的长度限制相同
+     */
+    @Column(nullable = false, length = HistoryMessage.MAX_CONTENT_LENGTH)
+    private String content;
+
+    @Column(nullable = false, name = "time_stamp")
+    private Timestamp timeStamp;
+
+    @Column(nullable = false)
+    private String type;
+}
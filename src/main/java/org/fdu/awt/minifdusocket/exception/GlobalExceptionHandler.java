@@ -1,6 +1,7 @@
 package org.fdu.awt.minifdusocket.exception;
 
 
+import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.fdu.awt.minifdusocket.result.Result;
 import org.fdu.awt.minifdusocket.result.ResultFactory;
@@ -35,4 +36,16 @@ public class GlobalExceptionHandler {
         Result result = ResultFactory.buildFailResult(errorMessage);
         return ResponseEntity.accepted().body(result);
     }
+
+    @ExceptionHandler(ConstraintViolationException.class)
+    @ResponseBody
+    public ResponseEntity<Result> handleConstraintViolationExceptions(ConstraintViolationException ex) {
+        String errorMessage = ex.getConstraintViolations()
+                .stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .collect(Collectors.joining("; "));
+        log.warn("Validation error: {}", errorMessage);
+        Result result = ResultFactory.buildFailResult(errorMessage);
+        return ResponseEntity.accepted().body(result);
+    }
 }
@@ -0,0 +1,50 @@
+package org.fdu.awt.minifdusocket.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.fdu.awt.minifdusocket.service.impl.HistoryMessageWriter;
+import org.fdu.awt.minifdusocket.service.impl.RecentConversationCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 聊天记录服务的运行指标（/actuator/metrics）：
+ * <ul>
+ *     <li>history.cache.*：最近会话缓存的命中、未命中、淘汰次数，缓存的会话数及估算占用的字节数</li>
+ *     <li>history.writer.*：异步写入队列的积压，以及写入溢出文件的记录数</li>
+ * </ul>
+ * 数据库访问耗时由 Spring Data 的 spring.data.repository.invocations 记录。
+ */
+@Component
+public class HistoryMetrics implements MeterBinder {
+    private final RecentConversationCache conversationCache;
+    private final HistoryMessageWriter messageWriter;
+
+    @Autowired
+    public HistoryMetrics(RecentConversationCache conversationCache, HistoryMessageWriter messageWriter) {
+        this.conversationCache = conversationCache;
+        this.messageWriter = messageWriter;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("history.cache.requests", conversationCache, RecentConversationCache::getHits)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("history.cache.requests", conversationCache, RecentConversationCache::getMisses)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("history.cache.evictions", conversationCache, RecentConversationCache::getEvictions)
+                .register(registry);
+        Gauge.builder("history.cache.conversations", conversationCache, RecentConversationCache::getConversationCount)
+                .register(registry);
+        Gauge.builder("history.cache.weight", conversationCache, RecentConversationCache::getWeight)
+                .baseUnit("bytes").register(registry);
+        Gauge.builder("history.writer.pending", messageWriter, HistoryMessageWriter::getPending)
+                .baseUnit("messages").register(registry);
+        FunctionCounter.builder("history.writer.spilled", messageWriter, HistoryMessageWriter::getSpilled)
+                .baseUnit("messages").register(registry);
+        FunctionCounter.builder("history.writer.rejected", messageWriter, HistoryMessageWriter::getRejected)
+                .baseUnit("messages").register(registry);
+    }
+}
@@ -0,0 +1,128 @@
+package org.fdu.awt.minifdusocket.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.fdu.awt.minifdusocket.websocket.ChatWebSocket;
+import org.fdu.awt.minifdusocket.websocket.VideoChatWebSocket;
+import org.fdu.awt.minifdusocket.websocket.game.GameRoom;
+import org.fdu.awt.minifdusocket.websocket.game.GameRoomManager;
+import org.fdu.awt.minifdusocket.websocket.support.OutboundQueues;
+import org.fdu.awt.minifdusocket.websocket.support.OutboundStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * WebSocket 相关的运行指标（/actuator/metrics）：
+ * <ul>
+ *     <li>websocket.sessions.active：各端点当前连接数</li>
+ *     <li>websocket.messages：按端点、方向（in/out/forward）、消息类型计数</li>
+ *     <li>websocket.messages.dropped：收到后未处理的消息，按端点、原因计数</li>
+ *     <li>websocket.message.handle：收到的消息的处理耗时</li>
+ *     <li>websocket.outbound.*：所有会话发送队列的发送数、字节数、失败数、积压深度等，见 {@link OutboundStats}</li>
+ * </ul>
+ * 消息类型来自客户端，不同的类型最多记录 {@link #MAX_COUNTERS} 个，超过后计入 other。
+ */
+@Component
+public class WebSocketMetrics {
+    public static final String ENDPOINT_CHAT = ChatWebSocket.CLUSTER_CHANNEL;
+    public static final String ENDPOINT_VIDEO_CHAT = VideoChatWebSocket.CLUSTER_CHANNEL;
+    public static final String ENDPOINT_GAME = "game";
+
+    private static final int MAX_COUNTERS = 256;
+    private static final String OTHER = "other";
+
+    private final MeterRegistry registry;
+    private final Map<MessageKey, Counter> messageCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> handleTimers = new ConcurrentHashMap<>();
+    private final Map<DropKey, Counter> droppedCounters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public WebSocketMetrics(MeterRegistry registry, OutboundQueues outboundQueues, GameRoomManager roomManager) {
+        this.registry = registry;
+        Gauge.builder("websocket.sessions.active", ChatWebSocket::getOnlineCount)
+                .tag("endpoint", ENDPOINT_CHAT).register(registry);
+        Gauge.builder("websocket.sessions.active", VideoChatWebSocket::getOnlineCount)
+                .tag("endpoint", ENDPOINT_VIDEO_CHAT).register(registry);
+        Gauge.builder("websocket.sessions.active", roomManager,
+                        manager -> manager.getRooms().stream().mapToInt(GameRoom::size).sum())
+                .tag("endpoint", ENDPOINT_GAME).register(registry);
+        Gauge.builder("game.rooms", roomManager, manager -> manager.getRooms().size()).register(registry);
+
+        OutboundStats stats = outboundQueues.getStats();
+        counter("websocket.outbound.sent", stats, OutboundStats::getSentMessages, "messages");
+        counter("websocket.outbound.sent.bytes", stats, OutboundStats::getSentBytes, "bytes");
+        counter("websocket.outbound.failed", stats, OutboundStats::getFailedMessages, "messages");
+        counter("websocket.outbound.dropped.snapshots", stats, OutboundStats::getDroppedSnapshots, "messages");
+        counter("websocket.outbound.evictions", stats, OutboundStats::getEvictions, "sessions");
+        Gauge.builder("websocket.outbound.queued", stats, OutboundStats::getQueuedMessages)
+                .baseUnit("messages").register(registry);
+        Gauge.builder("websocket.outbound.queued.bytes", stats, OutboundStats::getQueuedBytes)
+                .baseUnit("bytes").register(registry);
+    }
+
+    private void counter(String name, OutboundStats stats, ToDoubleFunction<OutboundStats> function, String unit) {
+        FunctionCounter.builder(name, stats, function).baseUnit(unit).register(registry);
+    }
+
+    /**
+     * 记录一条消息
+     *
+     * @param direction in / out / forward
+     * @param type      消息类型，未知时为 null
+     */
+    public void message(String endpoint, String direction, String type) {
+        MessageKey key = new MessageKey(endpoint, direction, type == null ? OTHER : type);
+        Counter counter = messageCounters.get(key);
+        if (counter == null) {
+            if (messageCounters.size() >= MAX_COUNTERS) {
+                key = new MessageKey(endpoint, direction, OTHER);
+            }
+            counter = messageCounters.computeIfAbsent(key, k -> Counter.builder("websocket.messages")
+                    .tag("endpoint", k.endpoint())
+                    .tag("direction", k.direction())
+                    .tag("type", k.type())
+                    .register(registry));
+        }
+        counter.increment();
+    }
+
+    /**
+     * 记录一条收到后被丢弃（未处理）的消息
+     *
+     * @param reason 丢弃原因，取值应是有限的几个常量
+     */
+    public void dropped(String endpoint, String reason) {
+        droppedCounters.computeIfAbsent(new DropKey(endpoint, reason), k -> Counter.builder("websocket.messages.dropped")
+                        .tag("endpoint", k.endpoint())
+                        .tag("reason", k.reason())
+                        .register(registry))
+                .increment();
+    }
+
+    /**
+     * 记录一条收到的消息的处理耗时
+     *
+     * @param startNanos 开始处理时的 {@link System#nanoTime()}
+     */
+    public void handled(String endpoint, long startNanos) {
+        handleTimers.computeIfAbsent(endpoint, e -> Timer.builder("websocket.message.handle")
+                        .tag("endpoint", e)
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .register(registry))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private record MessageKey(String endpoint, String direction, String type) {
+    }
+
+    private record DropKey(String endpoint, String reason) {
+    }
+}
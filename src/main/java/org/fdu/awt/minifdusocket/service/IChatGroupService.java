@@ -0,0 +1,25 @@
+package org.fdu.awt.minifdusocket.service;
+
+import org.fdu.awt.minifdusocket.bo.chatGroup.resp.GroupShowResp;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface IChatGroupService {
+    //创建群，创建者自动成为成员
+    GroupShowResp createGroup(String name, Long ownerId, Collection<Long> memberIds);
+
+    //添加成员，已是成员的忽略
+    void addMembers(Long groupId, Collection<Long> userIds);
+
+    void removeMembers(Long groupId, Collection<Long> userIds);
+
+    //用户加入的所有群
+    List<GroupShowResp> getGroups(Long userId);
+
+    //群成员 id（只读，可能来自缓存），群不存在时为空集合
+    Set<Long> getMembers(Long groupId);
+
+    boolean isMember(Long groupId, Long userId);
+}
@@ -1,6 +1,7 @@
 package org.fdu.awt.minifdusocket.service;
 
 import org.fdu.awt.minifdusocket.bo.historyMessage.req.MessageSendReq;
+import org.fdu.awt.minifdusocket.bo.historyMessage.resp.MessagePageResp;
 import org.fdu.awt.minifdusocket.bo.historyMessage.resp.MessageShowResp;
 
 import java.sql.Timestamp;
@@ -9,6 +10,9 @@ import java.util.List;
 public interface IHistoryMessageService {
     void save(MessageSendReq messageSendReq);
 
+    //群消息，发送者记为 localId，群 id 记为 remoteId
+    void saveGroupMessage(Long groupId, Long senderId, String content, Timestamp time);
+
     void videoChatEnd(Long localId, Long remoteId, Timestamp startTime, Timestamp endTime);
 
     void videoChatReject(Long initiatorId, Long recipientId, Timestamp startTime);
@@ -20,5 +24,11 @@ public interface IHistoryMessageService {
     //获取历史聊天信息
     List<MessageShowResp> getHistoryMessages(Long localId, Long remoteId);
 
+    //分页获取历史聊天信息，游标为 (时间戳, id)，direction 为 before（更早）或 after（更晚），不带游标时从最新/最早开始
+    MessagePageResp getHistoryMessagePage(Long localId, Long remoteId, Long cursorTime, Long cursorId, int size, String direction);
+
+    //分页获取群聊历史信息，参数含义同上
+    MessagePageResp getGroupHistoryMessagePage(Long groupId, Long localId, Long cursorTime, Long cursorId, int size, String direction);
+
     void videoChatCancel(Long initiatorId, Long recipientId, Timestamp cancelTime);
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package org.fdu.awt.minifdusocket.service;
+
+import org.fdu.awt.minifdusocket.entity.OfflineMessage;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+public interface IOfflineMessageService {
+    //接收者不在线时保存，等待上线后推送
+    void store(Long userId, Long fromId, String content, Timestamp time);
+
+    //最早的 size 条待投递消息
+    List<OfflineMessage> getPending(Long userId, int size);
+
+    //客户端确认收到，返回删除的条数
+    int ack(Long userId, Collection<Long> ids);
+}
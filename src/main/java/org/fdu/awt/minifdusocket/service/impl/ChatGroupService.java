@@ -0,0 +1,172 @@
+package org.fdu.awt.minifdusocket.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.bo.chatGroup.resp.GroupShowResp;
+import org.fdu.awt.minifdusocket.config.ChatProperties;
+import org.fdu.awt.minifdusocket.dao.ChatGroupDAO;
+import org.fdu.awt.minifdusocket.dao.ChatGroupMemberDAO;
+import org.fdu.awt.minifdusocket.entity.ChatGroup;
+import org.fdu.awt.minifdusocket.entity.ChatGroupMember;
+import org.fdu.awt.minifdusocket.service.IChatGroupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 群聊及成员管理 <br/>
+ * 群消息每条都要按成员投递，因此成员列表（不可变集合）缓存在本节点，本节点修改成员时在事务提交后立即失效，
+ * 其他节点上的修改在 {@code chat.group.membership-cache-millis} 内生效。
+ */
+@Slf4j
+@Service
+public class ChatGroupService implements IChatGroupService {
+    private final ChatGroupDAO chatGroupDAO;
+    private final ChatGroupMemberDAO chatGroupMemberDAO;
+    private final ChatProperties.Group config;
+    /**
+     * key: groupId
+     */
+    private final ConcurrentHashMap<Long, Members> members = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ChatGroupService(ChatGroupDAO chatGroupDAO, ChatGroupMemberDAO chatGroupMemberDAO, ChatProperties properties) {
+        this.chatGroupDAO = chatGroupDAO;
+        this.chatGroupMemberDAO = chatGroupMemberDAO;
+        this.config = properties.getGroup();
+    }
+
+    @Override
+    @Transactional
+    public GroupShowResp createGroup(String name, Long ownerId, Collection<Long> memberIds) {
+        Set<Long> userIds = new LinkedHashSet<>();
+        userIds.add(ownerId);
+        userIds.addAll(memberIds);
+        if (userIds.size() > config.getMaxMembers()) {
+            throw new IllegalArgumentException("群成员不能超过 " + config.getMaxMembers() + " 人");
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        ChatGroup group = chatGroupDAO.save(ChatGroup.builder()
+                .name(name)
+                .ownerId(ownerId)
+                .createTime(now)
+                .build());
+        chatGroupMemberDAO.saveAll(toMembers(group.getId(), userIds, now));
+        invalidateAfterCommit(group.getId());
+        log.info("【ChatGroupService】用户 {} 创建群 {}，成员 {} 人", ownerId, group.getId(), userIds.size());
+        return toShowResp(group, userIds.size());
+    }
+
+    @Override
+    @Transactional
+    public void addMembers(Long groupId, Collection<Long> userIds) {
+        requireGroup(groupId);
+        Set<Long> current = loadMembers(groupId);
+        Set<Long> added = new LinkedHashSet<>(userIds);
+        added.removeAll(current);
+        if (current.size() + added.size() > config.getMaxMembers()) {
+            throw new IllegalArgumentException("群成员不能超过 " + config.getMaxMembers() + " 人");
+        }
+        chatGroupMemberDAO.saveAll(toMembers(groupId, added, new Timestamp(System.currentTimeMillis())));
+        invalidateAfterCommit(groupId);
+    }
+
+    @Override
+    public void removeMembers(Long groupId, Collection<Long> userIds) {
+        chatGroupMemberDAO.deleteByGroupIdAndUserIdIn(groupId, userIds);
+        invalidateAfterCommit(groupId);
+    }
+
+    @Override
+    public List<GroupShowResp> getGroups(Long userId) {
+        List<GroupShowResp> groups = new ArrayList<>();
+        for (ChatGroup group : chatGroupDAO.findAllById(chatGroupMemberDAO.findGroupIdsByUserId(userId))) {
+            groups.add(toShowResp(group, getMembers(group.getId()).size()));
+        }
+        return groups;
+    }
+
+    @Override
+    public Set<Long> getMembers(Long groupId) {
+        long now = System.nanoTime();
+        Members cached = members.get(groupId);
+        if (cached != null && now - cached.expiresAt < 0) {
+            return cached.userIds;
+        }
+        Set<Long> userIds = loadMembers(groupId);
+        members.put(groupId, new Members(userIds, now + TimeUnit.MILLISECONDS.toNanos(config.getMembershipCacheMillis())));
+        return userIds;
+    }
+
+    @Override
+    public boolean isMember(Long groupId, Long userId) {
+        return getMembers(groupId).contains(userId);
+    }
+
+    /**
+     * 事务提交后再删除缓存的成员列表：提交前删除时，并发的 {@link #getMembers} 会重新读到旧列表并缓存；
+     * 不在事务中时立即删除
+     */
+    private void invalidateAfterCommit(Long groupId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            members.remove(groupId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                members.remove(groupId);
+            }
+        });
+    }
+
+    private Set<Long> loadMembers(Long groupId) {
+        return Set.copyOf(chatGroupMemberDAO.findUserIdsByGroupId(groupId));
+    }
+
+    private void requireGroup(Long groupId) {
+        if (!chatGroupDAO.existsById(groupId)) {
+            throw new IllegalArgumentException("群 " + groupId + " 不存在");
+        }
+    }
+
+    private static List<ChatGroupMember> toMembers(Long groupId, Collection<Long> userIds, Timestamp joinTime) {
+        List<ChatGroupMember> rows = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            rows.add(ChatGroupMember.builder()
+                    .groupId(groupId)
+                    .userId(userId)
+                    .joinTime(joinTime)
+                    .build());
+        }
+        return rows;
+    }
+
+    private static GroupShowResp toShowResp(ChatGroup group, int memberCount) {
+        return GroupShowResp.builder()
+                .groupId(group.getId())
+                .name(group.getName())
+                .ownerId(group.getOwnerId())
+                .createTime(group.getCreateTime())
+                .memberCount(memberCount)
+                .build();
+    }
+
+    /**
+     * 缓存的成员列表
+     *
+     * @param expiresAt 过期时间（nanoTime）
+     */
+    private record Members(Set<Long> userIds, long expiresAt) {
+    }
+}
@@ -2,35 +2,66 @@ package org.fdu.awt.minifdusocket.service.impl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.fdu.awt.minifdusocket.bo.historyMessage.req.MessageSendReq;
+import org.fdu.awt.minifdusocket.bo.historyMessage.resp.MessagePageResp;
 import org.fdu.awt.minifdusocket.bo.historyMessage.resp.MessageShowResp;
 import org.fdu.awt.minifdusocket.dao.HistoryMessageDAO;
 import org.fdu.awt.minifdusocket.entity.HistoryMessage;
 import org.fdu.awt.minifdusocket.service.IHistoryMessageService;
 import org.fdu.awt.minifdusocket.utils.TimeFormatter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.sql.Timestamp;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 
 @Slf4j
 @Service
 public class HistoryMessageService implements IHistoryMessageService {
     private static final String VIDEO_CHAT_END_MESSAGE = "视频通话时长: ";
+    public static final String DIRECTION_BEFORE = "before";
+    public static final String DIRECTION_AFTER = "after";
     private final HistoryMessageDAO historyMessageDAO;
+    private final HistoryMessageWriter historyMessageWriter;
+    private final RecentConversationCache conversationCache;
 
     @Autowired
-    public HistoryMessageService(HistoryMessageDAO historyMessageDAO) {
+    public HistoryMessageService(HistoryMessageDAO historyMessageDAO,
+                                 HistoryMessageWriter historyMessageWriter,
+                                 RecentConversationCache conversationCache) {
         this.historyMessageDAO = historyMessageDAO;
+        this.historyMessageWriter = historyMessageWriter;
+        this.conversationCache = conversationCache;
     }
 
     @Override
     public void save(MessageSendReq messageSendReq) {
-        historyMessageDAO.save(HistoryMessage.fromMessageSendReq(messageSendReq));
+        persist(HistoryMessage.fromMessageSendReq(messageSendReq));
+    }
+
+    /**
+     * 更新缓存并提交异步写入
+     */
+    private void persist(HistoryMessage message) {
+        conversationCache.onWrite(message);
+        historyMessageWriter.enqueue(message);
+    }
+
+    @Override
+    public void saveGroupMessage(Long groupId, Long senderId, String content, Timestamp time) {
+        persist(HistoryMessage.builder()
+                .localId(senderId)
+                .remoteId(groupId)
+                .conversationKey(HistoryMessage.groupConversationKey(groupId))
+                .content(content)
+                .timeStamp(time)
+                .type("text")
+                .build());
     }
 
     @Override
@@ -38,7 +69,7 @@ public class HistoryMessageService implements IHistoryMessageService {
                              Timestamp startTime,
                              Timestamp endTime) {
         Long durationInSec = (endTime.getTime() - startTime.getTime()) / 1000;
-        historyMessageDAO.save(HistoryMessage.builder()
+        persist(HistoryMessage.builder()
                 .localId(localId)
                 .remoteId(remoteId)
                 .content(VIDEO_CHAT_END_MESSAGE + TimeFormatter.formatDuration(durationInSec))
@@ -49,7 +80,7 @@ public class HistoryMessageService implements IHistoryMessageService {
 
     @Override
     public void videoChatReject(Long initiatorId, Long recipientId, Timestamp startTime) {
-        historyMessageDAO.save(HistoryMessage.builder()
+        persist(HistoryMessage.builder()
                 .localId(initiatorId)
                 .remoteId(recipientId)
                 .content("视频通话：已拒绝")
@@ -60,7 +91,7 @@ public class HistoryMessageService implements IHistoryMessageService {
 
     @Override
     public void videoChatOffLine(Long initiatorId, Long recipientId, Timestamp startTime) {
-        historyMessageDAO.save(HistoryMessage.builder()
+        persist(HistoryMessage.builder()
                 .localId(initiatorId)
                 .remoteId(recipientId)
                 .content("视频通话：对方不在线")
@@ -76,28 +107,115 @@ public class HistoryMessageService implements IHistoryMessageService {
 
     @Override
     public List<MessageShowResp> getHistoryMessages(Long localId, Long remoteId) {
-        List<HistoryMessage> selfHistoryMessages = historyMessageDAO.findByLocalIdAndRemoteId(localId, remoteId);
-        List<HistoryMessage> remoteHistoryMessages = historyMessageDAO.findByLocalIdAndRemoteId(remoteId, localId);
-
-        List<HistoryMessage> allMessages = Stream.of(selfHistoryMessages, remoteHistoryMessages)
-                .flatMap(List::stream)
-                .toList();
-
-        return allMessages.stream()
-                .sorted(Comparator.comparing(HistoryMessage::getTimeStamp))
-                .map(message -> {
-                    MessageShowResp resp = new MessageShowResp();
-                    resp.setMessage(message.getContent());
-                    resp.setTimestamp(message.getTimeStamp());
-                    resp.setIfSelf(localId.equals(message.getLocalId()));
-                    resp.setType(message.getType());
-                    return resp;
-                })
+        String key = HistoryMessage.conversationKey(localId, remoteId);
+        List<HistoryMessage> messages = conversationCache.getAll(key);
+        if (messages == null) {
+            long stamp = conversationCache.stamp();
+            messages = historyMessageDAO.findByConversationKeyOrderByTimeStampAscIdAsc(key);
+            conversationCache.populate(key, messages, stamp);
+        }
+        return messages.stream()
+                .map(message -> toShowResp(localId, message))
                 .collect(Collectors.toList());
     }
+
+    @Override
+    public MessagePageResp getHistoryMessagePage(Long localId, Long remoteId,
+                                                 Long cursorTime, Long cursorId,
+                                                 int size, String direction) {
+        return getPage(localId, HistoryMessage.conversationKey(localId, remoteId), cursorTime, cursorId, size, direction);
+    }
+
+    @Override
+    public MessagePageResp getGroupHistoryMessagePage(Long groupId, Long localId,
+                                                      Long cursorTime, Long cursorId,
+                                                      int size, String direction) {
+        return getPage(localId, HistoryMessage.groupConversationKey(groupId), cursorTime, cursorId, size, direction);
+    }
+
+    private MessagePageResp getPage(Long localId, String key,
+                                    Long cursorTime, Long cursorId,
+                                    int size, String direction) {
+        boolean before;
+        if (DIRECTION_BEFORE.equals(direction)) {
+            before = true;
+        } else if (DIRECTION_AFTER.equals(direction)) {
+            before = false;
+        } else {
+            throw new IllegalArgumentException("direction 只能为 before 或 after");
+        }
+        if ((cursorTime == null) != (cursorId == null)) {
+            throw new IllegalArgumentException("cursorTime 和 cursorId 需要同时提供");
+        }
+        if (cursorTime == null && before && conversationCache.isEnabled()
+                && size <= conversationCache.getMaxMessagesPerConversation()) {
+            return getLatestPage(localId, key, size);
+        }
+        // 多取一条用于判断是否还有更多
+        Pageable limit = PageRequest.ofSize(size + 1);
+        List<HistoryMessage> rows;
+        if (cursorTime == null) {
+            rows = before
+                    ? historyMessageDAO.findByConversationKeyOrderByTimeStampDescIdDesc(key, limit)
+                    : historyMessageDAO.findByConversationKeyOrderByTimeStampAscIdAsc(key, limit);
+        } else {
+            Timestamp time = new Timestamp(cursorTime);
+            rows = before
+                    ? historyMessageDAO.findPageBefore(key, time, cursorId, limit)
+                    : historyMessageDAO.findPageAfter(key, time, cursorId, limit);
+        }
+        boolean hasMore = rows.size() > size;
+        List<HistoryMessage> page = new ArrayList<>(hasMore ? rows.subList(0, size) : rows);
+        // 游标取翻页方向上的最后一条
+        HistoryMessage last = page.isEmpty() ? null : page.get(page.size() - 1);
+        if (before) {
+            Collections.reverse(page);
+        }
+        return toPageResp(localId, page, last, hasMore);
+    }
+
+    /**
+     * 最新一页（打开聊天窗口时的请求），优先从缓存读取，未命中时从数据库加载最近的消息放入缓存
+     */
+    private MessagePageResp getLatestPage(Long localId, String key, int size) {
+        boolean[] hasMore = new boolean[1];
+        List<HistoryMessage> page = conversationCache.getLatest(key, size, hasMore);
+        if (page == null) {
+            int limit = conversationCache.getMaxMessagesPerConversation();
+            long stamp = conversationCache.stamp();
+            List<HistoryMessage> rows = new ArrayList<>(
+                    historyMessageDAO.findByConversationKeyOrderByTimeStampDescIdDesc(key, PageRequest.ofSize(limit + 1)));
+            Collections.reverse(rows);
+            conversationCache.populate(key, rows, stamp);
+            hasMore[0] = rows.size() > size;
+            page = rows.subList(Math.max(0, rows.size() - size), rows.size());
+        }
+        HistoryMessage oldest = page.isEmpty() ? null : page.get(0);
+        return toPageResp(localId, page, oldest, hasMore[0]);
+    }
+
+    private static MessagePageResp toPageResp(Long localId, List<HistoryMessage> page, HistoryMessage cursor, boolean hasMore) {
+        return MessagePageResp.builder()
+                .messages(page.stream().map(message -> toShowResp(localId, message)).collect(Collectors.toList()))
+                .nextCursorTime(cursor == null ? null : cursor.getTimeStamp().getTime())
+                .nextCursorId(cursor == null ? null : cursor.getId())
+                .hasMore(hasMore)
+                .build();
+    }
+
+    private static MessageShowResp toShowResp(Long localId, HistoryMessage message) {
+        MessageShowResp resp = new MessageShowResp();
+        resp.setMessage(message.getContent());
+        resp.setTimestamp(message.getTimeStamp());
+        resp.setIfSelf(localId.equals(message.getLocalId()));
+        resp.setType(message.getType());
+        resp.setSenderId(message.getLocalId());
+        return resp;
+    }
+
     @Override
     public void videoChatCancel(Long initiatorId, Long recipientId, Timestamp cancelTime) {
-        historyMessageDAO.save(HistoryMessage.builder()
+        persist(HistoryMessage.builder()
                 .localId(initiatorId)
                 .remoteId(recipientId)
                 .content("视频通话：已取消")
@@ -0,0 +1,422 @@
+package org.fdu.awt.minifdusocket.service.impl;
+
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.config.HistoryProperties;
+import org.fdu.awt.minifdusocket.dao.HistoryMessageDAO;
+import org.fdu.awt.minifdusocket.entity.HistoryMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TypeMismatchDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 聊天记录异步批量写入（write-behind） <br/>
+ * 消息先投递给客户端，再放入内存队列，由单独的线程按批（batchSize 条或 flushIntervalMillis 毫秒）写入数据库：
+ * <ul>
+ *     <li>发送消息不再等待数据库往返及 Hikari 连接，投递延迟与数据库延迟无关</li>
+ *     <li>内存队列满、或数据库写入失败时，记录追加到本地溢出文件（每次写入后 fsync）</li>
+ *     <li>数据库恢复后将溢出文件重新写入数据库，写入成功后删除</li>
+ *     <li>整批因数据错误（内容过长、违反约束等）失败时逐条重试，无法写入的记录移入隔离文件（spillFile + ".rejected"），
+ *     不影响同批其他记录，也不会被当作数据库故障而反复重放</li>
+ * </ul>
+ * 溢出文件中的记录至少写入一次：进程在重放过程中退出时，正在写入的一批可能重复。
+ */
+@Slf4j
+@Component
+public class HistoryMessageWriter implements SmartLifecycle {
+    private static final long STOP_TIMEOUT_MILLIS = 10_000;
+
+    private final HistoryMessageDAO historyMessageDAO;
+    private final RecentConversationCache conversationCache;
+    private final HistoryProperties.WriteBehind config;
+    private final BlockingQueue<HistoryMessage> queue;
+    /**
+     * 溢出文件，重放时先改名为 replayFile，重放期间新的溢出记录仍写入 spillFile
+     */
+    private final Path spillFile;
+    private final Path replayFile;
+    /**
+     * 隔离文件，保存因数据错误无法写入的记录，需人工处理
+     */
+    private final Path rejectedFile;
+    private final Object spillLock = new Object();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    // 以下字段只在写入线程中使用
+    private final List<HistoryMessage> batch = new ArrayList<>();
+    private boolean databaseDown;
+    private long retryAtNanos;
+
+    @Autowired
+    public HistoryMessageWriter(HistoryMessageDAO historyMessageDAO, RecentConversationCache conversationCache,
+                                HistoryProperties properties) {
+        this.historyMessageDAO = historyMessageDAO;
+        this.conversationCache = conversationCache;
+        this.config = properties.getWriteBehind();
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.spillFile = Paths.get(config.getSpillFile());
+        this.replayFile = Paths.get(config.getSpillFile() + ".replay");
+        this.rejectedFile = Paths.get(config.getSpillFile() + ".rejected");
+    }
+
+    /**
+     * 提交一条待写入的记录，不会阻塞（除非队列已满需要写溢出文件）
+     */
+    public void enqueue(HistoryMessage message) {
+        if (!running || !queue.offer(message)) {
+            spill(List.of(message));
+            return;
+        }
+        // 与 stop() 竞争：检查 running 之后 stop() 已取走剩余记录时，这条记录没有人再读取，自己取回并写入溢出文件；
+        // remove 与 drainTo 互斥，只会有一方取得
+        if (!running && queue.remove(message)) {
+            spill(List.of(message));
+        }
+    }
+
+    /**
+     * 队列中等待写入的记录数
+     */
+    public int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * 累计写入溢出文件的记录数
+     */
+    public long getSpilled() {
+        return spilled.sum();
+    }
+
+    /**
+     * 累计因数据错误移入隔离文件的记录数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        flusher = new Thread(this::runFlusher, "history-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("【HistoryMessageWriter】启动，批大小 {}，刷新间隔 {} ms", config.getBatchSize(), config.getFlushIntervalMillis());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread current = flusher;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 写入线程没有及时退出时，剩余记录写入溢出文件，下次启动时重放
+        List<HistoryMessage> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+        }
+        flusher = null;
+        log.info("【HistoryMessageWriter】已停止");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void runFlusher() {
+        while (running || !queue.isEmpty()) {
+            try {
+                HistoryMessage first = queue.poll(config.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, config.getBatchSize() - 1);
+                    write(batch);
+                    batch.clear();
+                }
+                if (isDatabaseAvailable()) {
+                    replaySpill();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("【HistoryMessageWriter】写入出错", e);
+                batch.clear();
+            }
+        }
+    }
+
+    private boolean isDatabaseAvailable() {
+        return !databaseDown || System.nanoTime() - retryAtNanos >= 0;
+    }
+
+    /**
+     * 写入一批记录，失败时写入溢出文件
+     *
+     * @return 是否写入了数据库
+     */
+    private boolean write(List<HistoryMessage> messages) {
+        if (!isDatabaseAvailable()) {
+            spill(messages);
+            return false;
+        }
+        int written = insert(messages);
+        if (written < messages.size()) {
+            spill(messages.subList(written, messages.size()));
+            return false;
+        }
+        if (databaseDown) {
+            databaseDown = false;
+            log.info("【HistoryMessageWriter】数据库已恢复");
+        }
+        return true;
+    }
+
+    /**
+     * 写入数据库；整批因数据错误失败时逐条重试，无法写入的记录移入隔离文件
+     *
+     * @return 已处理（写入或隔离）的记录数；小于 messages.size() 时数据库不可用，其余记录需保留
+     */
+    private int insert(List<HistoryMessage> messages) {
+        try {
+            assignIds(messages, historyMessageDAO.insertBatch(messages));
+            conversationCache.onFlushed(messages);
+            return messages.size();
+        } catch (RuntimeException e) {
+            if (!isDataError(e)) {
+                markDown(messages.size(), e);
+                return 0;
+            }
+            log.warn("【HistoryMessageWriter】批量写入 {} 条记录出现数据错误，改为逐条写入: {}", messages.size(), e.getMessage());
+        }
+        // insertBatch 在事务中执行，失败的批次没有写入任何记录
+        for (int i = 0; i < messages.size(); i++) {
+            List<HistoryMessage> single = messages.subList(i, i + 1);
+            try {
+                assignIds(single, historyMessageDAO.insertBatch(single));
+            } catch (RuntimeException e) {
+                if (!isDataError(e)) {
+                    markDown(messages.size() - i, e);
+                    return i;
+                }
+                log.error("【HistoryMessageWriter】记录无法写入，已移入隔离文件: {}", e.getMessage());
+                reject(single);
+            }
+            conversationCache.onFlushed(single);
+        }
+        return messages.size();
+    }
+
+    /**
+     * 回填 id，缓存中的消息与写入的是同一个对象，此后可以作为分页游标；在 {@link RecentConversationCache#onFlushed} 之前调用
+     */
+    private static void assignIds(List<HistoryMessage> messages, List<Long> ids) {
+        if (ids == null || ids.size() != messages.size()) {
+            return;
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            messages.get(i).setId(ids.get(i));
+        }
+    }
+
+    /**
+     * 记录本身有问题（内容过长、违反约束、类型不符），重试也不会成功；其余错误（连接失败、超时、SQL 错误等）按数据库不可用处理
+     */
+    private static boolean isDataError(RuntimeException e) {
+        return e instanceof DataIntegrityViolationException || e instanceof TypeMismatchDataAccessException;
+    }
+
+    private void markDown(int count, RuntimeException e) {
+        databaseDown = true;
+        retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getRetryIntervalMillis());
+        log.error("【HistoryMessageWriter】写入 {} 条记录失败，{} ms 内改为写入溢出文件: {}",
+                count, config.getRetryIntervalMillis(), e.getMessage());
+    }
+
+    /**
+     * 追加到溢出文件并 fsync
+     */
+    private void spill(List<HistoryMessage> messages) {
+        if (append(spillFile, messages)) {
+            spilled.add(messages.size());
+        } else {
+            log.error("【HistoryMessageWriter】写入溢出文件失败，丢失 {} 条记录", messages.size());
+            conversationCache.onFlushed(messages);
+        }
+    }
+
+    /**
+     * 追加到隔离文件并 fsync，调用方负责通知缓存
+     */
+    private void reject(List<HistoryMessage> messages) {
+        rejected.add(messages.size());
+        if (!append(rejectedFile, messages)) {
+            log.error("【HistoryMessageWriter】写入隔离文件失败，丢失 {} 条记录: {}", messages.size(), messages);
+        }
+    }
+
+    /**
+     * @return 是否写入成功
+     */
+    private boolean append(Path file, List<HistoryMessage> messages) {
+        StringBuilder lines = new StringBuilder(messages.size() * 128);
+        for (HistoryMessage message : messages) {
+            lines.append(toLine(message)).append('\n');
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        synchronized (spillLock) {
+            try {
+                Path parent = file.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                try (FileChannel channel = FileChannel.open(file,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                    channel.force(false);
+                }
+                return true;
+            } catch (IOException e) {
+                log.error("【HistoryMessageWriter】写入 {} 失败", file, e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 将溢出文件重新写入数据库；中途失败时把未写入的部分留在 replayFile 中，下次继续
+     */
+    private void replaySpill() throws IOException {
+        synchronized (spillLock) {
+            if (!Files.exists(replayFile)) {
+                if (!Files.exists(spillFile)) {
+                    return;
+                }
+                Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        List<String> lines = new ArrayList<>(config.getBatchSize());
+        List<HistoryMessage> messages = new ArrayList<>(config.getBatchSize());
+        long replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                HistoryMessage message = fromLine(line);
+                if (message == null) {
+                    continue;
+                }
+                lines.add(line);
+                messages.add(message);
+                if (messages.size() >= config.getBatchSize()) {
+                    int written = insert(messages);
+                    if (written < messages.size()) {
+                        keepRemaining(lines.subList(written, lines.size()), reader);
+                        return;
+                    }
+                    replayed += messages.size();
+                    lines.clear();
+                    messages.clear();
+                }
+            }
+            if (!messages.isEmpty()) {
+                int written = insert(messages);
+                if (written < messages.size()) {
+                    keepRemaining(lines.subList(written, lines.size()), reader);
+                    return;
+                }
+                replayed += messages.size();
+            }
+        }
+        Files.delete(replayFile);
+        log.info("【HistoryMessageWriter】已重放溢出文件中的 {} 条记录", replayed);
+    }
+
+    /**
+     * 把未写入的记录（当前批次及之后的所有行）写回 replayFile
+     */
+    private void keepRemaining(List<String> pending, BufferedReader reader) throws IOException {
+        Path tmp = Paths.get(replayFile + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (String line : pending) {
+                writer.write(line);
+                writer.newLine();
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, replayFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String toLine(HistoryMessage message) {
+        JSONObject json = new JSONObject();
+        json.put("localId", message.getLocalId());
+        json.put("remoteId", message.getRemoteId());
+        json.put("content", message.getContent());
+        json.put("timeStamp", message.getTimeStamp().getTime());
+        json.put("type", message.getType());
+        json.put("conversationKey", message.getConversationKey());
+        return json.toJSONString();
+    }
+
+    /**
+     * 解析溢出文件中的一行，进程崩溃时最后一行可能不完整，此时返回 null
+     */
+    private static HistoryMessage fromLine(String line) {
+        try {
+            JSONObject json = JSONObject.parseObject(line);
+            return HistoryMessage.builder()
+                    .localId(json.getLong("localId"))
+                    .remoteId(json.getLong("remoteId"))
+                    .content(json.getString("content"))
+                    .timeStamp(new Timestamp(json.getLongValue("timeStamp")))
+                    .type(json.getString("type"))
+                    // 旧版本写入的记录没有该字段，按单聊计算
+                    .conversationKey(json.getString("conversationKey"))
+                    .build();
+        } catch (Exception e) {
+            log.error("【HistoryMessageWriter】溢出文件中的记录格式错误，已跳过: {}", line);
+            return null;
+        }
+    }
+}
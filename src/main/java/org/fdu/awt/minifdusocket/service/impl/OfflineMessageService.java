@@ -0,0 +1,52 @@
+package org.fdu.awt.minifdusocket.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.dao.OfflineMessageDAO;
+import org.fdu.awt.minifdusocket.entity.OfflineMessage;
+import org.fdu.awt.minifdusocket.service.IOfflineMessageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 离线消息收件箱 <br/>
+ * 与聊天记录不同，离线消息在写入成功前不能认为已送达，因此同步写入而不经过 {@link HistoryMessageWriter}
+ */
+@Slf4j
+@Service
+public class OfflineMessageService implements IOfflineMessageService {
+    private final OfflineMessageDAO offlineMessageDAO;
+
+    @Autowired
+    public OfflineMessageService(OfflineMessageDAO offlineMessageDAO) {
+        this.offlineMessageDAO = offlineMessageDAO;
+    }
+
+    @Override
+    public void store(Long userId, Long fromId, String content, Timestamp time) {
+        offlineMessageDAO.save(OfflineMessage.builder()
+                .userId(userId)
+                .fromId(fromId)
+                .content(content)
+                .timeStamp(time)
+                .type("text")
+                .build());
+    }
+
+    @Override
+    public List<OfflineMessage> getPending(Long userId, int size) {
+        return offlineMessageDAO.findByUserIdOrderByIdAsc(userId, PageRequest.ofSize(size));
+    }
+
+    @Override
+    public int ack(Long userId, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return offlineMessageDAO.deleteByUserIdAndIdIn(userId, ids);
+    }
+}
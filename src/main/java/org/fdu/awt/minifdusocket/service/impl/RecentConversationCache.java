@@ -0,0 +1,295 @@
+package org.fdu.awt.minifdusocket.service.impl;
+
+import org.fdu.awt.minifdusocket.config.HistoryProperties;
+import org.fdu.awt.minifdusocket.entity.HistoryMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+/**
+ * 最近会话缓存 <br/>
+ * 以会话键（{@link HistoryMessage#conversationKey}）为单位缓存最近 N 条消息，按访问顺序 LRU 淘汰，
+ * 总大小按消息内容估算，不超过 maxBytes：
+ * <ul>
+ *     <li>读取历史消息未命中时从数据库加载并放入缓存</li>
+ *     <li>新消息（聊天、视频通话记录）写入时直接追加到已缓存的会话，缓存不会过期</li>
+ *     <li>聊天记录是异步写入数据库的（见 {@link HistoryMessageWriter}），会话有尚未写入数据库的消息时，
+ *     从数据库读到的结果可能缺少这些消息，此时不放入缓存；读取期间有消息写入数据库的会话同样不放入缓存
+ *     （读取前调用 {@link #stamp()}）</li>
+ * </ul>
+ * 缓存中的消息按发送方存储，ifSelf 在读取时根据查看者计算。
+ * 新写入的消息在写入数据库后才有 id（由 {@link HistoryMessageWriter} 回填）；
+ * 会话的消息全部写入数据库后仍有消息没有 id 时（重放溢出文件写入的是副本、或记录被隔离），从缓存中移除该会话，下次读取时重新加载。 <br/>
+ * 所有操作都很短，使用一把锁保护。
+ */
+@Component
+public class RecentConversationCache {
+    /**
+     * 每条消息及每个会话的固定开销估算（对象头、字段、时间戳等）
+     */
+    private static final long MESSAGE_OVERHEAD = 96;
+    private static final long CONVERSATION_OVERHEAD = 128;
+    /**
+     * 最多记录多少个会话最近一次写完的序号
+     */
+    private static final int MAX_DRAINED = 4096;
+
+    private final HistoryProperties.Cache config;
+    private final Map<String, Conversation> conversations = new LinkedHashMap<>(256, 0.75f, true);
+    /**
+     * 尚未写入数据库的消息数，key: 会话键
+     */
+    private final Map<String, Integer> unflushed = new HashMap<>();
+    /**
+     * 会话最近一次全部写入数据库时的序号，只保留最近 MAX_DRAINED 个，更早的以 drainedFloor 代替
+     */
+    private final Map<String, Long> drained = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            if (size() > MAX_DRAINED) {
+                drainedFloor = Math.max(drainedFloor, eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+    private long drainedFloor;
+    private long sequence;
+    private long weight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    @Autowired
+    public RecentConversationCache(HistoryProperties properties) {
+        this.config = properties.getCache();
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 获取会话的全部消息（按时间正序），只有缓存中包含整个会话时才命中
+     *
+     * @return 未命中时返回 null
+     */
+    public synchronized List<HistoryMessage> getAll(String key) {
+        Conversation conversation = conversations.get(key);
+        if (conversation == null || !conversation.complete) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new ArrayList<>(conversation.messages);
+    }
+
+    /**
+     * 获取会话最新的 size 条消息（按时间正序） <br/>
+     * 其中最早的一条作为下一页的游标，它还没有 id（尚未写入数据库）时同样视为未命中
+     *
+     * @param hasMore 输出参数，hasMore[0] 表示是否还有更早的消息
+     * @return 未命中时返回 null
+     */
+    public synchronized List<HistoryMessage> getLatest(String key, int size, boolean[] hasMore) {
+        Conversation conversation = conversations.get(key);
+        if (conversation == null || (!conversation.complete && conversation.messages.size() < size)) {
+            misses++;
+            return null;
+        }
+        int count = Math.min(size, conversation.messages.size());
+        List<HistoryMessage> latest = new ArrayList<>(count);
+        ListIterator<HistoryMessage> iterator = conversation.messages.listIterator(conversation.messages.size() - count);
+        while (iterator.hasNext()) {
+            latest.add(iterator.next());
+        }
+        if (!latest.isEmpty() && latest.get(0).getId() == null) {
+            misses++;
+            return null;
+        }
+        hasMore[0] = conversation.messages.size() > count || !conversation.complete;
+        hits++;
+        return latest;
+    }
+
+    public int getMaxMessagesPerConversation() {
+        return config.getMaxMessagesPerConversation();
+    }
+
+    /**
+     * 从数据库读取前调用，传给 {@link #populate}
+     */
+    public synchronized long stamp() {
+        return sequence;
+    }
+
+    /**
+     * 放入从数据库读到的消息，只保留最近 maxMessagesPerConversation 条
+     *
+     * @param messages 按时间正序，为整个会话或会话最近的 maxMessagesPerConversation + 1 条
+     *                 （多出的一条说明会话不完整）
+     * @param stamp    读取数据库之前的 {@link #stamp()}
+     */
+    public synchronized void populate(String key, List<HistoryMessage> messages, long stamp) {
+        if (!config.isEnabled() || unflushed.containsKey(key)
+                || drained.getOrDefault(key, drainedFloor) > stamp) {
+            return;
+        }
+        Conversation conversation = new Conversation(key);
+        for (HistoryMessage message : messages) {
+            conversation.append(message);
+        }
+        conversation.trim(config.getMaxMessagesPerConversation());
+        Conversation previous = conversations.put(key, conversation);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += conversation.weight;
+        evict();
+    }
+
+    /**
+     * 新消息写入时调用（先于提交给 {@link HistoryMessageWriter}）
+     */
+    public synchronized void onWrite(HistoryMessage message) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        String key = message.getConversationKey();
+        unflushed.merge(key, 1, Integer::sum);
+        Conversation conversation = conversations.get(key);
+        if (conversation == null) {
+            return;
+        }
+        long before = conversation.weight;
+        conversation.insert(message);
+        conversation.trim(config.getMaxMessagesPerConversation());
+        weight += conversation.weight - before;
+        evict();
+    }
+
+    /**
+     * 消息已写入数据库（或确定无法写入）后由 {@link HistoryMessageWriter} 调用，写入成功的消息已回填 id
+     */
+    public synchronized void onFlushed(Collection<HistoryMessage> messages) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        for (HistoryMessage message : messages) {
+            String key = message.getConversationKey();
+            Integer count = unflushed.get(key);
+            // 上次运行溢出的记录在本次重放时没有对应的计数
+            if (count == null) {
+                continue;
+            }
+            if (count > 1) {
+                unflushed.put(key, count - 1);
+            } else {
+                unflushed.remove(key);
+                drained.remove(key);
+                drained.put(key, ++sequence);
+                Conversation conversation = conversations.get(key);
+                if (conversation != null && conversation.hasMissingIds()) {
+                    weight -= conversations.remove(key).weight;
+                }
+            }
+        }
+    }
+
+    private void evict() {
+        Iterator<Conversation> iterator = conversations.values().iterator();
+        while (weight > config.getMaxBytes() && iterator.hasNext()) {
+            weight -= iterator.next().weight;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int getConversationCount() {
+        return conversations.size();
+    }
+
+    /**
+     * 缓存估算占用的字节数（与 maxBytes 比较的值）
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    private static long weightOf(HistoryMessage message) {
+        String content = message.getContent();
+        return MESSAGE_OVERHEAD + (content == null ? 0 : 2L * content.length());
+    }
+
+    private static final class Conversation {
+        private final LinkedList<HistoryMessage> messages = new LinkedList<>();
+        private boolean complete = true;
+        private long weight;
+
+        private Conversation(String key) {
+            this.weight = CONVERSATION_OVERHEAD + 2L * key.length();
+        }
+
+        private void append(HistoryMessage message) {
+            messages.addLast(message);
+            weight += weightOf(message);
+        }
+
+        /**
+         * 按时间插入，视频通话记录的时间可能早于已缓存的消息
+         */
+        private void insert(HistoryMessage message) {
+            ListIterator<HistoryMessage> iterator = messages.listIterator(messages.size());
+            while (iterator.hasPrevious()) {
+                if (!iterator.previous().getTimeStamp().after(message.getTimeStamp())) {
+                    iterator.next();
+                    break;
+                }
+            }
+            if (!iterator.hasPrevious() && !messages.isEmpty() && !complete) {
+                // 比缓存中最早的消息还早，且缓存不是完整会话，无法确定位置
+                return;
+            }
+            iterator.add(message);
+            weight += weightOf(message);
+        }
+
+        private boolean hasMissingIds() {
+            for (HistoryMessage message : messages) {
+                if (message.getId() == null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void trim(int maxMessages) {
+            while (messages.size() > maxMessages) {
+                weight -= weightOf(messages.removeFirst());
+                complete = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.fdu.awt.minifdusocket.websocket;
+
+
+import com.alibaba.fastjson2.JSONObject;
+import jakarta.websocket.*;
+import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.config.GameProperties;
+import org.fdu.awt.minifdusocket.metrics.WebSocketMetrics;
+import org.fdu.awt.minifdusocket.utils.SpringContext;
+import org.fdu.awt.minifdusocket.websocket.game.GameBinaryCodec;
+import org.fdu.awt.minifdusocket.websocket.game.GamePlayer;
+import org.fdu.awt.minifdusocket.websocket.game.GameRoom;
+import org.fdu.awt.minifdusocket.websocket.game.GameRoomManager;
+import org.fdu.awt.minifdusocket.websocket.support.JsonEnvelope;
+import org.fdu.awt.minifdusocket.websocket.support.MessageDispatcher;
+import org.fdu.awt.minifdusocket.websocket.support.SerialExecutor;
+import org.fdu.awt.minifdusocket.websocket.support.TokenBucket;
+import org.fdu.awt.minifdusocket.websocket.support.TrafficLog;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 游戏同步端点的公共实现 <br/>
+ * Jakarta WebSocket 要求每个端点类只能有一个 @OnOpen，且路径参数不同，
+ * 因此 {@link GameWebSocket} 与 {@link GameRoomWebSocket} 各自声明 @OnOpen，其余处理方法在此实现 <br/>
+ * 收到的消息先在容器线程中限流（{@code game.ingest.*}）并只扫描 type，local_update 交给 {@link GamePlayer#offerUpdate}、
+ * 二进制 POSE 帧交给 {@link GamePlayer#offerPose}，在下一个 tick 中解析最新的一条，无论客户端发送频率多高，
+ * 每个玩家每个 tick 最多解析一次位置更新，且所有修改都以该 tick 的序号为版本号。
+ */
+@Slf4j
+public abstract class AbstractGameWebSocket {
+    private static final String LOCAL_UPDATE = "local_update";
+    private static final String DROPPED_RATE = "rate";
+    private static final String DROPPED_SIZE = "size";
+    private static final String DROPPED_SUPERSEDED = "superseded";
+
+    private final GameRoomManager roomManager;
+    private final WebSocketMetrics metrics;
+    private final GameProperties.Ingest ingest;
+    /**
+     * 本会话的限流，只在容器的消息回调中使用
+     */
+    private final TokenBucket rateLimiter;
+    /**
+     * 本会话的消息处理执行器
+     */
+    private final SerialExecutor dispatcher;
+    private GamePlayer player;
+    private GameRoom room;
+
+    /**
+     * 无参构造函数，必须有
+     * Jakarta WebSocket 规范要求WebSocket端点实例的创建过程能够处理无参构造函数 <br/>
+     */
+    protected AbstractGameWebSocket() {
+        // 手动获取GameRoomManager实例
+        this.roomManager = SpringContext.getBean(GameRoomManager.class);
+        this.metrics = SpringContext.getBean(WebSocketMetrics.class);
+        this.ingest = SpringContext.getBean(GameProperties.class).getIngest();
+        this.rateLimiter = new TokenBucket(ingest.getMaxMessagesPerSecond(), ingest.getBurst());
+        this.dispatcher = SpringContext.getBean(MessageDispatcher.class).newSerialExecutor();
+    }
+
+    protected void open(Session session, String roomId, Long userId) {
+        try {
+            this.player = roomManager.createPlayer(session, userId);
+            this.room = roomManager.join(roomId, player);
+            log.info("【GameWebSocket】用户 {} 加入房间 {}，房间人数为:{}", userId, roomId, room.size());
+        } catch (Exception e) {
+            log.error("【GameWebSocket】连接时出错", e);
+        }
+    }
+
+    @OnClose
+    public void onClose() {
+        // 排在已收到的消息之后处理
+        dispatcher.execute(this::handleClose);
+    }
+
+    private void handleClose() {
+        try {
+            if (room == null) {
+                return;
+            }
+            roomManager.leave(room, player);
+            log.info("【GameWebSocket】用户 {} 离开房间 {}，房间人数为:{}", player.getUserId(), room.getRoomId(), room.size());
+        } catch (Exception e) {
+            log.error("【GameWebSocket】关闭时出错", e);
+        }
+    }
+
+    @OnMessage
+    public void onMessage(String message) {
+        if (!rateLimiter.tryAcquire()) {
+            metrics.dropped(WebSocketMetrics.ENDPOINT_GAME, DROPPED_RATE);
+            return;
+        }
+        if (message.length() > ingest.getMaxMessageChars()) {
+            metrics.dropped(WebSocketMetrics.ENDPOINT_GAME, DROPPED_SIZE);
+            return;
+        }
+        // 只扫描 type，不解析字段值；无法识别时交给 handleMessage 完整解析
+        JsonEnvelope envelope = JsonEnvelope.scan(message);
+        String type = envelope != null ? envelope.getType() : null;
+        metrics.message(WebSocketMetrics.ENDPOINT_GAME, TrafficLog.IN, type);
+        if (LOCAL_UPDATE.equals(type)) {
+            if (room != null && player.offerUpdate(message, hasAppearance(message))) {
+                metrics.dropped(WebSocketMetrics.ENDPOINT_GAME, DROPPED_SUPERSEDED);
+            }
+            return;
+        }
+        // 在 websocket.dispatch.mode 指定的线程中处理，同一会话按顺序执行
+        dispatcher.execute(() -> {
+            long start = System.nanoTime();
+            handleMessage(message);
+            metrics.handled(WebSocketMetrics.ENDPOINT_GAME, start);
+        });
+    }
+
+    private static boolean hasAppearance(String message) {
+        return message.contains("\"username\"") || message.contains("\"model\"") || message.contains("\"colour\"");
+    }
+
+    private void handleMessage(String message) {
+        try {
+//            log.info("【GameWebSocket】收到客户端消息:{}", message);
+            JSONObject jsonObject = JSONObject.parseObject(message);
+            String type = jsonObject.getString("type");
+            switch (type) {
+                case LOCAL_UPDATE:
+                    // 路由头无法识别的写法，同样交给下一个 tick 应用
+                    if (room != null && player.offerUpdate(message, hasAppearance(message))) {
+                        metrics.dropped(WebSocketMetrics.ENDPOINT_GAME, DROPPED_SUPERSEDED);
+                    }
+                    break;
+                case "ack":
+                    if (player.getView() != null) {
+                        player.getView().ack(jsonObject.getLongValue("seq"));
+                    }
+                    break;
+                default:
+                    log.error("【GameWebSocket】未知消息类型:{}", type);
+                    break;
+            }
+        } catch (Exception e) {
+            log.error("【GameWebSocket】消息格式错误:{}", message, e);
+        }
+    }
+
+    /**
+     * 二进制协议的位置上报 <br/>
+     * 在容器线程中只检查格式并复制（ByteBuffer 由容器复用），与 local_update 一样在下一个 tick 中应用最新的一条
+     */
+    @OnMessage
+    public void onBinaryMessage(ByteBuffer message) {
+        if (!rateLimiter.tryAcquire()) {
+            metrics.dropped(WebSocketMetrics.ENDPOINT_GAME, DROPPED_RATE);
+            return;
+        }
+        if (room == null) {
+            return;
+        }
+        if (!GameBinaryCodec.isPose(message)) {
+            log.error("【GameWebSocket】二进制消息格式错误，用户 {}，长度 {}", player.getUserId(), message.remaining());
+        } else if (player.offerPose(message)) {
+            metrics.dropped(WebSocketMetrics.ENDPOINT_GAME, DROPPED_SUPERSEDED);
+        }
+    }
+
+    @OnError
+    public void onError(Session session, Throwable error) {
+        log.error("用户错误,原因:{}", error.getMessage());
+    }
+}
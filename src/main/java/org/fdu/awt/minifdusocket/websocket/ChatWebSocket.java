@@ -1,23 +1,61 @@
 package org.fdu.awt.minifdusocket.websocket;
 
+import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
 import jakarta.websocket.*;
 import jakarta.websocket.server.PathParam;
 import jakarta.websocket.server.ServerEndpoint;
 import lombok.extern.slf4j.Slf4j;
 import org.fdu.awt.minifdusocket.bo.historyMessage.req.MessageSendReq;
+import org.fdu.awt.minifdusocket.cluster.ClusterMessage;
+import org.fdu.awt.minifdusocket.cluster.ClusterRouter;
+import org.fdu.awt.minifdusocket.config.ChatProperties;
+import org.fdu.awt.minifdusocket.entity.HistoryMessage;
+import org.fdu.awt.minifdusocket.entity.OfflineMessage;
+import org.fdu.awt.minifdusocket.metrics.WebSocketMetrics;
+import org.fdu.awt.minifdusocket.service.impl.ChatGroupService;
 import org.fdu.awt.minifdusocket.service.impl.HistoryMessageService;
+import org.fdu.awt.minifdusocket.service.impl.OfflineMessageService;
 import org.fdu.awt.minifdusocket.utils.SpringContext;
+import org.fdu.awt.minifdusocket.websocket.support.MessageDispatcher;
+import org.fdu.awt.minifdusocket.websocket.support.OutboundQueues;
+import org.fdu.awt.minifdusocket.websocket.support.SerialExecutor;
+import org.fdu.awt.minifdusocket.websocket.support.SessionRegistry;
+import org.fdu.awt.minifdusocket.websocket.support.SharedFrame;
+import org.fdu.awt.minifdusocket.websocket.support.TrafficLog;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 @Component
 @Slf4j
 @ServerEndpoint(value = "/chat/{userId}")
 public class ChatWebSocket {
+    /**
+     * 跨节点路由的通道名
+     */
+    public static final String CLUSTER_CHANNEL = "chat";
+    /**
+     * 群消息跨节点转发的通道名，每个节点一条消息，toId 为群 id
+     */
+    public static final String GROUP_CLUSTER_CHANNEL = "chat-group";
+
     private final HistoryMessageService historyMessageService;
+    private final ChatGroupService chatGroupService;
+    private final OfflineMessageService offlineMessageService;
+    private final ChatProperties.Offline offlineConfig;
+    private final OutboundQueues outboundQueues;
+    private final ClusterRouter clusterRouter;
+    private final TrafficLog trafficLog;
+    private final WebSocketMetrics metrics;
+    /**
+     * 本会话的消息处理执行器
+     */
+    private final SerialExecutor dispatcher;
 
     /**
      * 无参构造函数，必须有
@@ -26,6 +64,17 @@ public class ChatWebSocket {
     public ChatWebSocket() {
         // 手动获取HistoryMessageService实例
         this.historyMessageService = SpringContext.getBean(HistoryMessageService.class);
+        this.chatGroupService = SpringContext.getBean(ChatGroupService.class);
+        this.offlineMessageService = SpringContext.getBean(OfflineMessageService.class);
+        this.offlineConfig = SpringContext.getBean(ChatProperties.class).getOffline();
+        this.outboundQueues = SpringContext.getBean(OutboundQueues.class);
+        this.clusterRouter = SpringContext.getBean(ClusterRouter.class);
+        this.trafficLog = SpringContext.getBean(TrafficLog.class);
+        this.metrics = SpringContext.getBean(WebSocketMetrics.class);
+        this.dispatcher = SpringContext.getBean(MessageDispatcher.class).newSerialExecutor();
+        // 接收其他节点转发来的消息
+        this.clusterRouter.setHandlerIfAbsent(CLUSTER_CHANNEL, this::deliverLocal);
+        this.clusterRouter.setHandlerIfAbsent(GROUP_CLUSTER_CHANNEL, this::deliverGroupLocal);
     }
 
     //与某个客户端的连接会话，需要通过它来给客户端发送数据
@@ -34,12 +83,28 @@ public class ChatWebSocket {
      * 用户ID
      */
     private Long userId;
-    //concurrent包的线程安全Set，用来存放每个客户端对应的MyWebSocket对象。
-    //虽然@Component默认是单例模式的，但springboot还是会为每个websocket连接初始化一个bean，所以可以用一个静态set保存起来。
-    //  注：底下WebSocket是当前类名
-    private static final CopyOnWriteArraySet<ChatWebSocket> webSockets = new CopyOnWriteArraySet<>();
-    // 用来存在线连接用户信息
-    private static final ConcurrentHashMap<Long, Session> sessionPool = new ConcurrentHashMap<>();
+    /**
+     * 已推送、等待客户端确认的离线消息 id，只在 dispatcher 中访问
+     */
+    private final Set<Long> offlineInFlight = new HashSet<>();
+    //虽然@Component默认是单例模式的，但springboot还是会为每个websocket连接初始化一个bean，所以用一个静态表保存起来。
+    //key: userId，每个用户只保留最新的一个连接
+    private static final SessionRegistry<Long, ChatWebSocket> sessions = new SessionRegistry<>();
+
+    /**
+     * 本节点上的连接数
+     */
+    public static int getOnlineCount() {
+        return sessions.size();
+    }
+
+    /**
+     * 用户在本节点上的会话，不在线时返回 null
+     */
+    private static Session sessionOf(Long id) {
+        ChatWebSocket webSocket = sessions.get(id);
+        return webSocket != null ? webSocket.session : null;
+    }
 
     /**
      * 链接成功调用的方法
@@ -49,9 +114,14 @@ public class ChatWebSocket {
         try {
             this.session = session;
             this.userId = userId;
-            webSockets.add(this);
-            sessionPool.put(userId, session);
-            log.info("【ChatWebsocket消息】用户 {} 连接，总数为:{}", userId, webSockets.size());
+            ChatWebSocket previous = sessions.register(userId, this);
+            if (previous != null) {
+                log.info("【ChatWebsocket消息】用户 {} 重复连接，关闭旧连接", userId);
+                outboundQueues.of(previous.session).disconnect(SessionRegistry.REPLACED);
+            }
+            clusterRouter.register(CLUSTER_CHANNEL, userId);
+            log.info("【ChatWebsocket消息】用户 {} 连接，总数为:{}", userId, sessions.size());
+            dispatcher.execute(this::pushOffline);
         } catch (Exception e) {
             log.error("【ChatWebsocket消息】连接时出错", e);
         }
@@ -62,10 +132,18 @@ public class ChatWebSocket {
      */
     @OnClose
     public void onClose() {
+        // 排在已收到的消息之后处理
+        dispatcher.execute(this::handleClose);
+    }
+
+    private void handleClose() {
         try {
-            webSockets.remove(this);
-            sessionPool.remove(this.userId);
-            log.info("【ChatWebsocket消息】用户 {} 连接断开，总数为:{}", this.userId, webSockets.size());
+            // 已被新连接替换时不能注销，新连接仍在本节点上
+            if (sessions.unregister(this.userId, this)) {
+                clusterRouter.unregister(CLUSTER_CHANNEL, this.userId);
+            }
+            outboundQueues.close(this.session);
+            log.info("【ChatWebsocket消息】用户 {} 连接断开，总数为:{}", this.userId, sessions.size());
         } catch (Exception e) {
             log.error("【ChatWebsocket消息】连接断开时出错", e);
         }
@@ -78,34 +156,219 @@ public class ChatWebSocket {
      */
     @OnMessage
     public void onMessage(String message) {
+        // 在 websocket.dispatch.mode 指定的线程中处理，同一会话按顺序执行
+        dispatcher.execute(() -> {
+            long start = System.nanoTime();
+            handleMessage(message);
+            metrics.handled(CLUSTER_CHANNEL, start);
+        });
+    }
+
+    private void handleMessage(String message) {
         try {
-            log.info("【ChatWebsocket消息】收到用户 {} 的message: {}", userId, message);
-            //这里继续加type（从而来判断收到的前端具体的socket信息）
-            JSONObject jsonObject = JSONObject.parseObject(message);
-            String type = jsonObject.getString("type");
+            Inbound inbound = parse(message);
+            String type = inbound.type();
+            trafficLog.record(TrafficLog.IN, CLUSTER_CHANNEL, userId, type, message);
             if (type.equals("chat")) {
-                handleChatMessage(jsonObject);
+                handleChatMessage(inbound.targetId(), inbound.text());
+            } else if (type.equals("group")) {
+                handleGroupMessage(inbound.targetId(), inbound.text());
+            } else if (type.equals("offline-ack")) {
+                handleOfflineAck(inbound.body());
             } else {
                 log.error("【ChatWebsocket消息】未知消息类型:{}", type);
             }
         } catch (Exception e) {
-            log.error("【ChatWebsocket消息】消息格式错误:{}", message, e);
+            log.error("【ChatWebsocket消息】消息格式错误:{}", trafficLog.abbreviate(message), e);
+        }
+    }
+
+    /**
+     * 客户端发来的消息
+     *
+     * @param targetId chat 为 remoteId，group 为 groupId，其他类型为 null
+     * @param text     chat、group 的 message 字段，其他类型为 null
+     */
+    record Inbound(String type, JSONObject body, Long targetId, String text) {
+    }
+
+    /**
+     * 解析客户端消息，读取 chat、group 消息的字段（基准测试 ChatMessageBenchmark 同样调用此方法）
+     */
+    static Inbound parse(String message) {
+        //这里继续加type（从而来判断收到的前端具体的socket信息）
+        JSONObject jsonObject = JSONObject.parseObject(message);
+        String type = jsonObject.getString("type");
+        if ("chat".equals(type)) {
+            // 约定：客户端发送的是一个 JSON 字符串，包含 remoteId 和 message
+            return new Inbound(type, jsonObject, jsonObject.getLong("remoteId"), jsonObject.getString("message"));
+        } else if ("group".equals(type)) {
+            // 约定：客户端发送的是一个 JSON 字符串，包含 groupId 和 message
+            return new Inbound(type, jsonObject, jsonObject.getLong("groupId"), jsonObject.getString("message"));
         }
+        return new Inbound(type, jsonObject, null, null);
     }
 
-    public void handleChatMessage(JSONObject jsonObject) {
-        // 约定：客户端发送的是一个 JSON 字符串，包含 remoteId 和 message
-        Long remoteId = jsonObject.getLong("remoteId");
-        String textMessage = jsonObject.getString("message");
-        log.info("【ChatWebsocket消息】收到客户端消息:{}", textMessage);
+    public void handleChatMessage(Long remoteId, String textMessage) {
+        if (!isAcceptable(textMessage)) {
+            return;
+        }
+        Timestamp time = new Timestamp(System.currentTimeMillis());
+        Long fromId = userId;
+        // 先投递，再异步写入聊天记录；对方不在线、或排队后没有送达（断开、被替换、发送失败）时放入离线收件箱
+        boolean delivered = sendOneMessage(remoteId, textMessage,
+                () -> dispatcher.execute(() -> storeOffline(remoteId, fromId, textMessage, time)));
+        sendOneMessage(userId, textMessage);
+        if (!delivered) {
+            storeOffline(remoteId, fromId, textMessage, time);
+        }
         historyMessageService.save(MessageSendReq.builder()
                 .localId(userId)
                 .remoteId(remoteId)
                 .content(textMessage)
                 .type("text")
                 .build());
-        sendOneMessage(remoteId, textMessage);
-        sendOneMessage(userId, textMessage);
+    }
+
+    /**
+     * 消息内容不能为空，且不能超过 {@link HistoryMessage#MAX_CONTENT_LENGTH}，否则无法写入聊天记录
+     */
+    private boolean isAcceptable(String textMessage) {
+        if (textMessage == null || textMessage.length() > HistoryMessage.MAX_CONTENT_LENGTH) {
+            log.warn("【ChatWebsocket消息】用户 {} 的消息为空或超过 {} 个字符，已丢弃", userId, HistoryMessage.MAX_CONTENT_LENGTH);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 保存离线消息；保存期间对方恰好连接到本节点时，其上线时的查询可能没有看到这条消息，因此再通知它推送一次
+     */
+    private void storeOffline(Long remoteId, Long fromId, String textMessage, Timestamp time) {
+        try {
+            offlineMessageService.store(remoteId, fromId, textMessage, time);
+        } catch (Exception e) {
+            log.error("【ChatWebsocket消息】保存用户 {} 的离线消息出错", remoteId, e);
+            return;
+        }
+        ChatWebSocket recipient = sessions.get(remoteId);
+        if (recipient != null) {
+            recipient.dispatcher.execute(recipient::pushOffline);
+        }
+    }
+
+    /**
+     * 推送一批离线消息：{"type":"offline","messages":[...],"hasMore":...}，messages 中每条与在线消息格式相同并带有 id <br/>
+     * 客户端回复 {"type":"offline-ack","ids":[...]} 后删除这些消息，全部确认后推送下一批；
+     * 未确认的消息在下次连接时重新推送。只在 dispatcher 中调用
+     */
+    private void pushOffline() {
+        if (!offlineInFlight.isEmpty() || !session.isOpen()) {
+            return;
+        }
+        int batchSize = offlineConfig.getBatchSize();
+        List<OfflineMessage> pending;
+        try {
+            // 多取一条用于判断是否还有更多
+            pending = offlineMessageService.getPending(userId, batchSize + 1);
+        } catch (Exception e) {
+            log.error("【ChatWebsocket消息】查询用户 {} 的离线消息出错", userId, e);
+            return;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        boolean hasMore = pending.size() > batchSize;
+        JSONArray messages = new JSONArray(Math.min(pending.size(), batchSize));
+        for (OfflineMessage offline : hasMore ? pending.subList(0, batchSize) : pending) {
+            JSONObject item = new JSONObject();
+            item.put("id", offline.getId());
+            item.put("message", offline.getContent());
+            item.put("remoteId", userId);
+            item.put("localId", offline.getFromId());
+            item.put("ifSelf", "false");
+            item.put("timestamp", offline.getTimeStamp().getTime());
+            messages.add(item);
+            offlineInFlight.add(offline.getId());
+        }
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("type", "offline");
+        jsonObject.put("messages", messages);
+        jsonObject.put("hasMore", hasMore);
+        String payload = jsonObject.toJSONString();
+        trafficLog.record(TrafficLog.OUT, CLUSTER_CHANNEL, userId, "offline", payload);
+        outboundQueues.of(session).offer(payload);
+    }
+
+    private void handleOfflineAck(JSONObject jsonObject) {
+        List<Long> ids = jsonObject.getList("ids", Long.class);
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        offlineMessageService.ack(userId, ids);
+        ids.forEach(offlineInFlight::remove);
+        pushOffline();
+    }
+
+    /**
+     * 群消息：只序列化一次，本节点上的成员共享同一帧，其他节点上的成员按节点各转发一次，聊天记录只写一条
+     */
+    public void handleGroupMessage(Long groupId, String textMessage) {
+        if (!isAcceptable(textMessage)) {
+            return;
+        }
+        Set<Long> members = chatGroupService.getMembers(groupId);
+        if (!members.contains(userId)) {
+            log.warn("【ChatWebsocket消息】用户 {} 不是群 {} 的成员", userId, groupId);
+            return;
+        }
+        Timestamp time = new Timestamp(System.currentTimeMillis());
+        JSONObject jsonMessage = new JSONObject();
+        jsonMessage.put("type", "group");
+        jsonMessage.put("groupId", groupId);
+        jsonMessage.put("localId", userId); // 发送者
+        jsonMessage.put("message", textMessage);
+        jsonMessage.put("timestamp", time.getTime());
+        String payload = jsonMessage.toJSONString();
+
+        List<Long> elsewhere = new ArrayList<>();
+        deliverToMembers(members, payload, elsewhere);
+        trafficLog.record(TrafficLog.OUT, CLUSTER_CHANNEL, null, "group", payload);
+        if (clusterRouter.forwardToNodes(CLUSTER_CHANNEL, elsewhere,
+                new ClusterMessage(GROUP_CLUSTER_CHANNEL, groupId, "group", payload)) > 0) {
+            trafficLog.record(TrafficLog.FORWARD, CLUSTER_CHANNEL, null, "group", payload);
+        }
+        historyMessageService.saveGroupMessage(groupId, userId, textMessage, time);
+    }
+
+    /**
+     * 发送给本节点上的群成员
+     *
+     * @param elsewhere 不为 null 时收集不在本节点上的成员
+     */
+    private void deliverToMembers(Set<Long> members, String payload, List<Long> elsewhere) {
+        SharedFrame frame = SharedFrame.of(payload);
+        try {
+            for (Long memberId : members) {
+                Session session = sessionOf(memberId);
+                if (session != null && session.isOpen()) {
+                    outboundQueues.of(session).offer(frame, false);
+                } else if (elsewhere != null) {
+                    elsewhere.add(memberId);
+                }
+            }
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * 投递其他节点转发来的群消息
+     */
+    private boolean deliverGroupLocal(ClusterMessage message) {
+        trafficLog.record(TrafficLog.OUT, CLUSTER_CHANNEL, null, message.getType(), message.getPayload());
+        deliverToMembers(chatGroupService.getMembers(message.getToId()), message.getPayload(), null);
+        return true;
     }
 
     /**
@@ -120,14 +383,14 @@ public class ChatWebSocket {
     }
 
     /**
-     * 此为广播消息
+     * 此为广播消息（只发给本节点上的用户）
      */
     public void sendAllMessage(String message) {
-        log.info("【ChatWebsocket消息】广播消息:{}", message);
-        for (ChatWebSocket webSocket : webSockets) {
+        trafficLog.record(TrafficLog.OUT, CLUSTER_CHANNEL, null, "broadcast", message);
+        for (ChatWebSocket webSocket : sessions.snapshot()) {
             try {
                 if (webSocket.session.isOpen()) {
-                    webSocket.session.getAsyncRemote().sendText(message);
+                    outboundQueues.of(webSocket.session).offer(message);
                 }
             } catch (Exception e) {
                 log.error("【ChatWebsocket消息】广播消息出错", e);
@@ -136,27 +399,90 @@ public class ChatWebSocket {
     }
 
     /**
-     * 此为单点消息
+     * 此为单点消息，接收者连接在其他节点上时转发到该节点
+     */
+    public boolean sendOneMessage(Long id, String message) {
+        return sendOneMessage(id, message, null);
+    }
+
+    /**
+     * @param onDropped 消息已交给本节点的发送队列、但最终没有送达时回调
+     */
+    private boolean sendOneMessage(Long id, String message, Runnable onDropped) {
+        try {
+            // 创建一个JSONObject来封装消息
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put("message", message); // 消息内容
+            jsonObject.put("remoteId", id); // 远程ID
+            jsonObject.put("localId", userId); // 本地ID
+            String ifSelf = id.equals(userId) ? "true" : "false"; // 判断是否是给自己发送消息
+            jsonObject.put("ifSelf", ifSelf); // 是否给自己发送消息
+
+            // 将JSONObject转换为JSON字符串并发送
+            return sendOrForward(id, jsonObject.toJSONString(), onDropped);
+        } catch (Exception e) {
+            log.error("【ChatWebsocket消息】 单点消息出错", e);
+            return false;
+        }
+    }
+
+    /**
+     * 发送给本节点上的用户，不在本节点时转发给其所在节点
+     *
+     * @param onDropped 已交给本节点的发送队列、但最终没有送达时回调；转发到其他节点的消息由该节点处理
+     * @return 用户不在任何节点上时返回 false
      */
-    public void sendOneMessage(Long id, String message) {
-        Session session = sessionPool.get(id);
+    private boolean sendOrForward(Long id, String message, Runnable onDropped) {
+        Session session = sessionOf(id);
         if (session != null && session.isOpen()) {
-            try {
-                log.info("【ChatWebsocket消息】 单点消息:{}", message);
-                // 创建一个JSONObject来封装消息
-                JSONObject jsonObject = new JSONObject();
-                jsonObject.put("message", message); // 消息内容
-                jsonObject.put("remoteId", id); // 远程ID
-                jsonObject.put("localId", userId); // 本地ID
-                String ifSelf = id.equals(userId) ? "true" : "false"; // 判断是否是给自己发送消息
-                jsonObject.put("ifSelf", ifSelf); // 是否给自己发送消息
-
-                // 将JSONObject转换为JSON字符串并发送
-                session.getAsyncRemote().sendText(jsonObject.toJSONString());
-            } catch (Exception e) {
-                log.error("【ChatWebsocket消息】 单点消息出错", e);
+            trafficLog.record(TrafficLog.OUT, CLUSTER_CHANNEL, id, "chat", message);
+            outboundQueues.of(session).offer(message, onDropped);
+            return true;
+        }
+        if (clusterRouter.forward(CLUSTER_CHANNEL, id, "chat", message)) {
+            trafficLog.record(TrafficLog.FORWARD, CLUSTER_CHANNEL, id, "chat", message);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 投递其他节点转发来的消息 <br/>
+     * 发送方节点已认为投递成功，因此接收者已断开、或排队后没有送达时，由本节点将单聊消息转存为离线消息
+     */
+    private boolean deliverLocal(ClusterMessage message) {
+        Timestamp time = new Timestamp(System.currentTimeMillis());
+        Runnable onDropped = () -> dispatcher.execute(() -> storeForwarded(message, time));
+        Session session = sessionOf(message.getToId());
+        if (session == null || !session.isOpen()) {
+            onDropped.run();
+            return true;
+        }
+        trafficLog.record(TrafficLog.OUT, CLUSTER_CHANNEL, message.getToId(), message.getType(), message.getPayload());
+        outboundQueues.of(session).offer(message.getPayload(), onDropped);
+        return true;
+    }
+
+    /**
+     * 将没有送达的转发消息存入接收者的离线收件箱，消息格式见 {@link #sendOneMessage(Long, String)}
+     */
+    private void storeForwarded(ClusterMessage message, Timestamp time) {
+        String textMessage = null;
+        Long fromId = null;
+        try {
+            JSONObject jsonObject = JSONObject.parseObject(message.getPayload());
+            if (jsonObject != null && !"true".equals(jsonObject.getString("ifSelf"))) {
+                textMessage = jsonObject.getString("message");
+                fromId = jsonObject.getLong("localId");
             }
+        } catch (Exception e) {
+            // 不是单聊消息（如 sendMoreMessage 发送的任意文本）
+        }
+        if (textMessage == null || fromId == null) {
+            log.warn("【ChatWebsocket消息】用户 {} 已断开，丢弃转发来的消息:{}", message.getToId(), trafficLog.abbreviate(message.getPayload()));
+            return;
         }
+        storeOffline(message.getToId(), fromId, textMessage, time);
     }
 
     /**
@@ -164,14 +490,10 @@ public class ChatWebSocket {
      */
     public void sendMoreMessage(String[] userIds, String message) {
         for (String userId : userIds) {
-            Session session = sessionPool.get(Long.valueOf(userId));
-            if (session != null && session.isOpen()) {
-                try {
-                    log.info("【ChatWebsocket消息】 多人单点消息:{}", message);
-                    session.getAsyncRemote().sendText(message);
-                } catch (Exception e) {
-                    log.error("【ChatWebsocket消息】 多人单点消息出错", e);
-                }
+            try {
+                sendOrForward(Long.valueOf(userId), message, null);
+            } catch (Exception e) {
+                log.error("【ChatWebsocket消息】 多人单点消息出错", e);
             }
         }
     }
@@ -0,0 +1,22 @@
+package org.fdu.awt.minifdusocket.websocket;
+
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.PathParam;
+import jakarta.websocket.server.ServerEndpoint;
+import org.fdu.awt.minifdusocket.websocket.game.GameBinaryCodec;
+import org.springframework.stereotype.Component;
+
+/**
+ * 带房间号的游戏同步 <br/>
+ * 每个房间拥有独立的玩家表和定时广播，房间之间互不可见；消息处理与 {@link GameWebSocket} 相同
+ */
+@Component
+@ServerEndpoint(value = "/game/{roomId}/{userId}", subprotocols = {GameBinaryCodec.SUBPROTOCOL})
+public class GameRoomWebSocket extends AbstractGameWebSocket {
+
+    @OnOpen
+    public void onOpen(Session session, @PathParam("roomId") String roomId, @PathParam("userId") Long userId) {
+        open(session, roomId, userId);
+    }
+}
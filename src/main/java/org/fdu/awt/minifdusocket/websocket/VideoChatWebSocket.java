@@ -5,33 +5,113 @@ import jakarta.websocket.*;
 import jakarta.websocket.server.PathParam;
 import jakarta.websocket.server.ServerEndpoint;
 import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.cluster.ClusterMessage;
+import org.fdu.awt.minifdusocket.cluster.ClusterRouter;
+import org.fdu.awt.minifdusocket.config.WebSocketProperties;
+import org.fdu.awt.minifdusocket.metrics.WebSocketMetrics;
 import org.fdu.awt.minifdusocket.service.IHistoryMessageService;
 import org.fdu.awt.minifdusocket.service.impl.HistoryMessageService;
 import org.fdu.awt.minifdusocket.utils.SpringContext;
+import org.fdu.awt.minifdusocket.websocket.support.JsonEnvelope;
+import org.fdu.awt.minifdusocket.websocket.support.MessageDispatcher;
+import org.fdu.awt.minifdusocket.websocket.support.OutboundQueues;
+import org.fdu.awt.minifdusocket.websocket.support.SerialExecutor;
+import org.fdu.awt.minifdusocket.websocket.support.SessionRegistry;
+import org.fdu.awt.minifdusocket.websocket.support.TrafficLog;
 import org.springframework.stereotype.Component;
 
 import java.sql.Timestamp;
+import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * Video Chat WebSocket Service <br/>
- * 用于实现视频聊天功能的 WebSocket 服务
+ * 用于实现视频聊天功能的 WebSocket 服务 <br/>
+ * 每个连接是一个只在自己的 {@link SerialExecutor}（信箱）中运行的参与者：
+ * <ul>
+ *     <li>通话状态（{@link CallState}）只由本连接的信箱读写，不需要加锁</li>
+ *     <li>双方之间的交互都是信令：发给对方的信令投递到对方的信箱（对方在其他节点上时经 {@link ClusterRouter} 转发），
+ *     由对方根据自己的状态决定是否接受，例如同时收到多个邀请时只有第一个会响铃，其余回复 busy</li>
+ *     <li>邀请在 {@code websocket.video.invite-timeout-millis} 内未接听时双方都回到空闲状态</li>
+ *     <li>连接时带 {@code ?batch=true} 的客户端，对方在 {@code websocket.video.coalesce-millis} 内发来的多条
+ *     video-processing 会合并成一条 video-processing-batch 发送，messages 中为原消息，顺序不变</li>
+ * </ul>
  */
 @Component
 @Slf4j
 @ServerEndpoint(value = "/video-chat/{userId}")
 public class VideoChatWebSocket {
+    /**
+     * 跨节点路由的通道名
+     */
+    public static final String CLUSTER_CHANNEL = "video-chat";
+
+    private static final String INVITE = "video-invite";
+    private static final String ACCEPT = "video-accept";
+    private static final String REJECT = "video-reject";
+    private static final String PROCESSING = "video-processing";
+    private static final String END = "video-end";
+    private static final String PROCESSING_BATCH = "video-processing-batch";
+    private static final String PROCESSING_BATCH_PREFIX = "{\"type\":\"" + PROCESSING_BATCH + "\",\"messages\":[";
+
     private final IHistoryMessageService historyMessageService;
+    private final OutboundQueues outboundQueues;
+    private final ClusterRouter clusterRouter;
+    private final MessageDispatcher messageDispatcher;
+    private final TrafficLog trafficLog;
+    private final WebSocketMetrics metrics;
+    private final WebSocketProperties.Video config;
+    /**
+     * 本会话的信箱，以下通话状态只在其中读写
+     */
+    private final SerialExecutor dispatcher;
 
     private Session session;
     private Long userId;
 
+    private CallState state = CallState.IDLE;
+    private Long peerId;
     private boolean isTheInitiator = false;
-    private boolean isBusy = false;
     private Timestamp startTime;
-    private static final ConcurrentHashMap<Long, VideoChatWebSocket> socketPool = new ConcurrentHashMap<>();
+    /**
+     * 每次响铃递增，用于识别过期的超时任务
+     */
+    private long callSeq;
+    private ScheduledFuture<?> inviteTimeout;
+    /**
+     * 客户端是否接受合并的转发信令，以及等待合并的信令（只有当前通话对方发来的才会转发）
+     */
+    private boolean batching;
+    private final StringBuilder pendingRelay = new StringBuilder();
+    private int pendingRelayCount;
+    private ScheduledFuture<?> relayFlush;
+    /**
+     * key: userId，每个用户只保留最新的一个连接
+     */
+    private static final SessionRegistry<Long, VideoChatWebSocket> sessions = new SessionRegistry<>();
+
+    /**
+     * 一个用户的通话状态
+     */
+    enum CallState {
+        /**
+         * 空闲，可以发起或接收邀请
+         */
+        IDLE,
+        /**
+         * 已发出邀请等待对方接听（发起者）或收到邀请尚未接听（接收者）
+         */
+        RINGING,
+        /**
+         * 通话中
+         */
+        ACTIVE,
+        /**
+         * 连接已关闭，不再接受任何通话
+         */
+        ENDED
+    }
 
     /**
      * 无参构造函数，必须有
@@ -40,42 +120,96 @@ public class VideoChatWebSocket {
     public VideoChatWebSocket() {
         // 手动获取HistoryMessageService实例
         this.historyMessageService = SpringContext.getBean(HistoryMessageService.class);
+        this.outboundQueues = SpringContext.getBean(OutboundQueues.class);
+        this.clusterRouter = SpringContext.getBean(ClusterRouter.class);
+        this.messageDispatcher = SpringContext.getBean(MessageDispatcher.class);
+        this.trafficLog = SpringContext.getBean(TrafficLog.class);
+        this.metrics = SpringContext.getBean(WebSocketMetrics.class);
+        this.config = SpringContext.getBean(WebSocketProperties.class).getVideo();
+        this.dispatcher = messageDispatcher.newSerialExecutor();
+        // 接收其他节点转发来的信令
+        this.clusterRouter.setHandlerIfAbsent(CLUSTER_CHANNEL, VideoChatWebSocket::deliverLocal);
+    }
+
+    /**
+     * 本节点上的连接数
+     */
+    public static int getOnlineCount() {
+        return sessions.size();
     }
 
     @OnOpen
     public void onOpen(Session session, @PathParam("userId") Long userId) {
         this.session = session;
         this.userId = userId;
-        socketPool.put(userId, this);
-        log.info("【VideoChatWebSocket】用户 {} 连接，总连接数: {}", userId, socketPool.size());
+        List<String> batch = session.getRequestParameterMap().get("batch");
+        this.batching = config.getCoalesceMillis() > 0 && batch != null && batch.contains("true");
+        VideoChatWebSocket previous = sessions.register(userId, this);
+        if (previous != null) {
+            // 旧连接关闭时会挂断它的通话
+            log.info("【VideoChatWebSocket】用户 {} 重复连接，关闭旧连接", userId);
+            outboundQueues.of(previous.session).disconnect(SessionRegistry.REPLACED);
+        }
+        clusterRouter.register(CLUSTER_CHANNEL, userId);
+        log.info("【VideoChatWebSocket】用户 {} 连接，总连接数: {}", userId, sessions.size());
     }
 
     @OnClose
     public void onClose() {
-        socketPool.remove(this.userId);
-        log.info("【VideoChatWebSocket】用户 {} 断开连接，总连接数: {}", userId, socketPool.size());
+        // 排在已收到的消息之后处理
+        dispatcher.execute(this::handleClose);
+    }
+
+    private void handleClose() {
+        // 断开时挂断进行中的通话，否则对方会一直处于忙碌状态
+        if (state == CallState.RINGING || state == CallState.ACTIVE) {
+            hangUp(peerId);
+        }
+        state = CallState.ENDED;
+        cancelRelayFlush();
+        // 已被新连接替换时不能注销，新连接仍在本节点上
+        if (sessions.unregister(this.userId, this)) {
+            clusterRouter.unregister(CLUSTER_CHANNEL, this.userId);
+        }
+        outboundQueues.close(this.session);
+        log.info("【VideoChatWebSocket】用户 {} 断开连接，总连接数: {}", userId, sessions.size());
     }
 
     @OnMessage
     public void onMessage(String message) {
+        // 在 websocket.dispatch.mode 指定的线程中处理，同一会话按顺序执行
+        dispatcher.execute(() -> {
+            long start = System.nanoTime();
+            handleMessage(message);
+            metrics.handled(CLUSTER_CHANNEL, start);
+        });
+    }
+
+    private void handleMessage(String message) {
         try {
-            log.info("【VideoChatWebSocket】收到用户 {} 的message: {}", userId, message);
+            // 转发信令只读取路由头，forwardData 原样转发
+            JsonEnvelope envelope = JsonEnvelope.scan(message);
+            trafficLog.record(TrafficLog.IN, CLUSTER_CHANNEL, userId, envelope != null ? envelope.getType() : null, message);
+            if (envelope != null && PROCESSING.equals(envelope.getType())) {
+                handleVideoProcessing(envelope);
+                return;
+            }
             JSONObject data = JSONObject.parseObject(message);
             String type = data.getString("type");
             switch (type) {
-                case "video-invite":
+                case INVITE:
                     handleVideoInvite(data);
                     break;
-                case "video-accept":
+                case ACCEPT:
                     handleVideoAccept(data);
                     break;
-                case "video-reject":
+                case REJECT:
                     handleVideoReject(data);
                     break;
-                case "video-processing":
+                case PROCESSING:
                     handleVideoProcessing(data);
                     break;
-                case "video-end":
+                case END:
                     handleVideoEnd(data);
                     break;
                 default:
@@ -83,133 +217,277 @@ public class VideoChatWebSocket {
                     break;
             }
         } catch (Exception e) {
-            log.error("【VideoChatWebSocket】处理消息时出错: {}", message, e);
+            log.error("【VideoChatWebSocket】处理消息时出错: {}", trafficLog.abbreviate(message), e);
         }
     }
 
     private void handleVideoInvite(JSONObject data) {
         Long toId = data.getLong("toId");
-        VideoChatWebSocket toSocket = socketPool.get(toId);
-        // 对方不在线
-        if (toSocket == null || toSocket.session == null || !toSocket.session.isOpen()) {
-            this.sendRejectMessage(userId, toId, "offline");
-            historyMessageService.videoChatOffLine(userId, toId, new Timestamp(System.currentTimeMillis()));
+        if (state != CallState.IDLE) {
+            log.warn("【VideoChatWebSocket】用户 {} 在 {} 状态下发起邀请，忽略", userId, state);
+            this.sendToClient(signal(REJECT, toId, userId).fluentPut("reason", "busy"));
             return;
         }
-        // 对方正在通话中
-        if (toSocket.isBusy) {
-            this.sendRejectMessage(userId, toId, "busy");
-            historyMessageService.videoChatBusy(userId, toId, new Timestamp(System.currentTimeMillis()));
+        // 对方不在线
+        if (!isOnline(toId)) {
+            this.sendToClient(signal(REJECT, toId, userId).fluentPut("reason", "offline"));
+            historyMessageService.videoChatOffLine(userId, toId, new Timestamp(System.currentTimeMillis()));
             return;
         }
-        // 对方在线且空闲
-        this.sendInviteMessage(toId, userId);
-        // 标记自己为发起者
-        this.isTheInitiator = true;
-        this.isBusy = true;
-        this.startTime = new Timestamp(System.currentTimeMillis());
+        // 对方是否忙碌由对方的信箱判断，忙碌时回复 busy
+        this.startRinging(toId, true);
+        this.sendToPeer(toId, signal(INVITE, userId, toId));
     }
 
     private void handleVideoAccept(JSONObject data) {
         Long toId = data.getLong("toId");
+        if (!isRingingWith(toId, false)) {
+            log.warn("【VideoChatWebSocket】用户 {} 接受了不存在的邀请: {}", userId, toId);
+            return;
+        }
         // 告知对方接受了邀请
-        this.sendAcceptMessage(toId, userId);
-        // 标记自己为接受者
-        this.isTheInitiator = false;
-        this.isBusy = true;
-        this.startTime = new Timestamp(System.currentTimeMillis());
+        this.startCall();
+        this.sendToPeer(toId, signal(ACCEPT, userId, toId));
     }
 
     private void handleVideoReject(JSONObject data) {
         Long toId = data.getLong("toId");
-        this.sendRejectMessage(toId, userId, "reject");
+        if (!isRingingWith(toId, false)) {
+            log.warn("【VideoChatWebSocket】用户 {} 拒绝了不存在的邀请: {}", userId, toId);
+            return;
+        }
         // 存入数据库：拒绝由接受者存储
-        if (this.isTheInitiator) {
-            log.error("【VideoChatWebSocket】逻辑错误，发起者拒绝了自己的邀请");
-        } else {
-            historyMessageService.videoChatReject(toId, userId, new Timestamp(System.currentTimeMillis()));
+        historyMessageService.videoChatReject(toId, userId, new Timestamp(System.currentTimeMillis()));
+        this.reset();
+        this.sendToPeer(toId, signal(REJECT, userId, toId).fluentPut("reason", "reject"));
+    }
+
+    private void handleVideoProcessing(JsonEnvelope envelope) {
+        // 只做转发
+        Long toId = envelope.getToId();
+        if (toId == null || Objects.equals(toId, this.userId)) {
+            log.error("【VideoChatWebSocket】逻辑错误，转发消息的目标是自己");
+            return;
         }
-        this.isBusy = false;
-        this.startTime = null;
+        this.sendToPeer(toId, PROCESSING, relayPayload(userId, toId, envelope));
     }
 
+    /**
+     * 拼接转发给对方的信令，fromId 使用服务端记录的用户ID，forwardData 原样拷贝
+     */
+    static String relayPayload(Long fromId, Long toId, JsonEnvelope envelope) {
+        int forwardLength = envelope.hasForwardData() ? envelope.getForwardDataLength() : 0;
+        StringBuilder payload = new StringBuilder(forwardLength + 96)
+                .append("{\"type\":\"").append(PROCESSING)
+                .append("\",\"fromId\":").append(fromId)
+                .append(",\"toId\":").append(toId);
+        if (envelope.hasForwardData()) {
+            envelope.appendForwardData(payload.append(",\"forwardData\":"));
+        }
+        return payload.append('}').toString();
+    }
+
+    /**
+     * 路由头无法识别的消息（如字段名含转义字符）经完整解析后转发
+     */
     private void handleVideoProcessing(JSONObject data) {
-        // 只做转发
         Long toId = data.getLong("toId");
 
         if (Objects.equals(toId, this.userId)) {
             log.error("【VideoChatWebSocket】逻辑错误，转发消息的目标是自己");
             return;
         }
-        this.sendProcessingMessage(toId, userId, data.getJSONObject("forwardData"));
+        this.sendToPeer(toId, signal(PROCESSING, userId, toId).fluentPut("forwardData", data.getJSONObject("forwardData")));
     }
 
     private void handleVideoEnd(JSONObject data) {
         Long toId = data.getLong("toId");
-        boolean isAccepted = data.getBoolean("isAccepted");
-
-        if (isAccepted) {
-            this.sendEndMessage(toId, userId);
-            VideoChatWebSocket peerSocket = socketPool.get(toId);
-            if (peerSocket != null) {
-                peerSocket.isTheInitiator = false;
-                peerSocket.isBusy = false;
-                peerSocket.startTime = null;
-            }
+        if (!Objects.equals(toId, peerId) || (state != CallState.RINGING && state != CallState.ACTIVE)) {
+            // 对方已先挂断
+            log.info("【VideoChatWebSocket】用户 {} 结束的通话已不存在: {}", userId, toId);
+            return;
+        }
+        this.hangUp(toId);
+    }
+
+    /**
+     * 在本会话的信箱中处理对方发来的信令
+     *
+     * @param message 原样发给客户端的消息
+     */
+    private void onSignal(String type, Long fromId, String message) {
+        switch (type) {
+            case INVITE:
+                if (state != CallState.IDLE) {
+                    // 正在通话中，或已断开
+                    String reason = state == CallState.ENDED ? "offline" : "busy";
+                    this.sendToPeer(fromId, signal(REJECT, userId, fromId).fluentPut("reason", reason));
+                    if (state != CallState.ENDED) {
+                        historyMessageService.videoChatBusy(fromId, userId, new Timestamp(System.currentTimeMillis()));
+                    }
+                    return;
+                }
+                this.startRinging(fromId, false);
+                break;
+            case ACCEPT:
+                if (!isRingingWith(fromId, true)) {
+                    // 已取消或超时，让对方也结束
+                    this.sendToPeer(fromId, signal(END, userId, fromId));
+                    return;
+                }
+                this.startCall();
+                break;
+            case REJECT:
+                if (!isRingingWith(fromId, true)) {
+                    return;
+                }
+                this.reset();
+                break;
+            case END:
+                if (!Objects.equals(fromId, peerId) || (state != CallState.RINGING && state != CallState.ACTIVE)) {
+                    return;
+                }
+                this.reset();
+                break;
+            case PROCESSING:
+                if (!Objects.equals(fromId, peerId)) {
+                    return;
+                }
+                if (batching) {
+                    this.coalesceRelay(message);
+                    return;
+                }
+                break;
+            default:
+                log.error("【VideoChatWebSocket】未知信令类型:{}", type);
+                return;
+        }
+        this.sendToClient(type, message);
+    }
+
+    /**
+     * 挂断或取消当前通话并通知对方
+     */
+    private void hangUp(Long toId) {
+        if (state == CallState.ACTIVE) {
             // 视频结束由 发起结束者 存储
             historyMessageService.videoChatEnd(userId, toId, startTime, new Timestamp(System.currentTimeMillis()));
-        } else {
+        } else if (isTheInitiator) {
             // 视频通话已取消
-            this.sendEndMessage(toId, userId);
             historyMessageService.videoChatCancel(userId, toId, new Timestamp(System.currentTimeMillis()));
+        } else {
+            // 接收者未接听直接结束，按拒绝记录
+            historyMessageService.videoChatReject(toId, userId, new Timestamp(System.currentTimeMillis()));
         }
+        this.reset();
+        this.sendToPeer(toId, signal(END, userId, toId));
+    }
 
-        this.isTheInitiator = false;
-        this.isBusy = false;
+    private void onInviteTimeout(long seq) {
+        if (state != CallState.RINGING || seq != callSeq) {
+            return;
+        }
+        Long toId = peerId;
+        log.info("【VideoChatWebSocket】用户 {} 与 {} 的邀请超时", userId, toId);
+        if (isTheInitiator) {
+            // 超时未接听，与对方不在线时相同，由发起者存储
+            historyMessageService.videoChatOffLine(userId, toId, new Timestamp(System.currentTimeMillis()));
+            this.sendToPeer(toId, signal(END, userId, toId));
+            this.sendToClient(signal(REJECT, toId, userId).fluentPut("reason", "timeout"));
+        } else {
+            this.sendToPeer(toId, signal(REJECT, userId, toId).fluentPut("reason", "timeout"));
+            this.sendToClient(signal(END, toId, userId));
+        }
+        this.reset();
+    }
+
+    /**
+     * 加入等待合并的转发信令，窗口到期或数量达到上限时发送
+     */
+    private void coalesceRelay(String message) {
+        if (pendingRelayCount > 0) {
+            pendingRelay.append(',');
+        }
+        pendingRelay.append(message);
+        pendingRelayCount++;
+        if (pendingRelayCount >= config.getCoalesceMaxMessages()) {
+            flushRelay();
+        } else if (relayFlush == null) {
+            relayFlush = messageDispatcher.schedule(dispatcher, this::flushRelay, config.getCoalesceMillis());
+        }
+    }
+
+    /**
+     * 发送等待合并的转发信令，只有一条时原样发送
+     */
+    private void flushRelay() {
+        cancelRelayFlush();
+        if (pendingRelayCount == 0) {
+            return;
+        }
+        boolean single = pendingRelayCount == 1;
+        String message = single
+                ? pendingRelay.toString()
+                : new StringBuilder(PROCESSING_BATCH_PREFIX.length() + pendingRelay.length() + 2)
+                .append(PROCESSING_BATCH_PREFIX).append(pendingRelay).append("]}").toString();
+        pendingRelay.setLength(0);
+        pendingRelayCount = 0;
+        this.send(single ? PROCESSING : PROCESSING_BATCH, message);
+    }
+
+    private void cancelRelayFlush() {
+        if (relayFlush != null) {
+            relayFlush.cancel(false);
+            relayFlush = null;
+        }
+    }
+
+    private void startRinging(Long peerId, boolean isTheInitiator) {
+        long seq = ++callSeq;
+        this.state = CallState.RINGING;
+        this.peerId = peerId;
+        this.isTheInitiator = isTheInitiator;
         this.startTime = null;
+        this.inviteTimeout = messageDispatcher.schedule(dispatcher, () -> onInviteTimeout(seq), config.getInviteTimeoutMillis());
     }
 
+    private void startCall() {
+        cancelInviteTimeout();
+        this.state = CallState.ACTIVE;
+        this.startTime = new Timestamp(System.currentTimeMillis());
+    }
 
-    private void sendRejectMessage(Long toId, Long fromId, String reason) {
-        JSONObject message = new JSONObject();
-        message.put("type", "video-reject");
-        message.put("fromId", fromId);
-        message.put("toId", toId);
-        message.put("reason", reason);
-        sendOneMessage(toId, message.toJSONString());
+    private void reset() {
+        cancelInviteTimeout();
+        this.state = CallState.IDLE;
+        this.peerId = null;
+        this.isTheInitiator = false;
+        this.startTime = null;
     }
 
-    private void sendInviteMessage(Long toId, Long fromId) {
-        JSONObject message = new JSONObject();
-        message.put("type", "video-invite");
-        message.put("fromId", fromId);
-        message.put("toId", toId);
-        sendOneMessage(toId, message.toJSONString());
+    private void cancelInviteTimeout() {
+        if (inviteTimeout != null) {
+            inviteTimeout.cancel(false);
+            inviteTimeout = null;
+        }
     }
 
-    private void sendAcceptMessage(Long toId, Long fromId) {
-        JSONObject message = new JSONObject();
-        message.put("type", "video-accept");
-        message.put("fromId", fromId);
-        message.put("toId", toId);
-        sendOneMessage(toId, message.toJSONString());
+    private boolean isRingingWith(Long peerId, boolean isTheInitiator) {
+        return state == CallState.RINGING && this.isTheInitiator == isTheInitiator && Objects.equals(this.peerId, peerId);
     }
 
-    private void sendEndMessage(Long toId, Long fromId) {
-        JSONObject message = new JSONObject();
-        message.put("type", "video-end");
-        message.put("fromId", fromId);
-        message.put("toId", toId);
-        sendOneMessage(toId, message.toJSONString());
+    private boolean isOnline(Long userId) {
+        VideoChatWebSocket socket = sessions.get(userId);
+        return (socket != null && socket.session != null && socket.session.isOpen())
+                || clusterRouter.isOnlineElsewhere(CLUSTER_CHANNEL, userId);
     }
 
-    private void sendProcessingMessage(Long toId, Long fromId, JSONObject forwardData) {
+    static JSONObject signal(String type, Long fromId, Long toId) {
         JSONObject message = new JSONObject();
-        message.put("type", "video-processing");
+        message.put("type", type);
         message.put("fromId", fromId);
         message.put("toId", toId);
-        message.put("forwardData", forwardData);
-        sendOneMessage(toId, message.toJSONString());
+        return message;
     }
 
     @OnError
@@ -218,21 +496,74 @@ public class VideoChatWebSocket {
     }
 
     /**
-     * 单点消息
+     * 发给本会话的客户端，先发出等待合并的转发信令以保持顺序
+     */
+    private void sendToClient(JSONObject message) {
+        sendToClient(message.getString("type"), message.toJSONString());
+    }
+
+    private void sendToClient(String type, String message) {
+        flushRelay();
+        send(type, message);
+    }
+
+    private void send(String type, String message) {
+        try {
+            if (session.isOpen()) {
+                trafficLog.record(TrafficLog.OUT, CLUSTER_CHANNEL, userId, type, message);
+                outboundQueues.of(session).offer(message);
+            }
+        } catch (Exception e) {
+            log.error("【VideoChatWebSocket】发送消息时出错: {}", trafficLog.abbreviate(message), e);
+        }
+    }
+
+    /**
+     * 发给对方的信令：投递到对方的信箱，对方连接在其他节点上时转发到该节点
      *
-     * @param userId  用户ID
-     * @param message 消息内容
-     */
-    private void sendOneMessage(Long userId, String message) {
-        Session session = Optional.ofNullable(socketPool.get(userId))
-                .map(socket -> socket.session).orElse(null);
-        if (session != null && session.isOpen()) {
-            try {
-                log.info("【VideoChatWebSocket】发送消息给用户 {}: {}", userId, message);
-                session.getAsyncRemote().sendText(message);
-            } catch (Exception e) {
-                log.error("【VideoChatWebSocket】发送消息时出错: {}", message, e);
+     * @param toId    用户ID
+     * @param message 信令内容
+     */
+    private void sendToPeer(Long toId, JSONObject message) {
+        sendToPeer(toId, message.getString("type"), message.toJSONString());
+    }
+
+    private void sendToPeer(Long toId, String type, String payload) {
+        try {
+            if (deliver(toId, type, userId, payload)) {
+                return;
             }
+            if (clusterRouter.forward(CLUSTER_CHANNEL, toId, type, payload)) {
+                trafficLog.record(TrafficLog.FORWARD, CLUSTER_CHANNEL, toId, type, payload);
+            }
+        } catch (Exception e) {
+            log.error("【VideoChatWebSocket】发送消息时出错: {}", trafficLog.abbreviate(payload), e);
         }
     }
+
+    /**
+     * 投递到本节点上用户的信箱
+     *
+     * @return 用户不在本节点上时返回 false
+     */
+    private static boolean deliver(Long toId, String type, Long fromId, String payload) {
+        VideoChatWebSocket socket = sessions.get(toId);
+        if (socket == null || socket.session == null || !socket.session.isOpen()) {
+            return false;
+        }
+        socket.dispatcher.execute(() -> socket.onSignal(type, fromId, payload));
+        return true;
+    }
+
+    /**
+     * 投递其他节点转发来的信令
+     */
+    private static boolean deliverLocal(ClusterMessage message) {
+        // 信令都由本类生成，路由头总能识别，不必解析 forwardData
+        JsonEnvelope envelope = JsonEnvelope.scan(message.getPayload());
+        Long fromId = envelope != null
+                ? envelope.getFromId()
+                : JSONObject.parseObject(message.getPayload()).getLong("fromId");
+        return deliver(message.getToId(), message.getType(), fromId, message.getPayload());
+    }
 }
@@ -0,0 +1,187 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import org.fdu.awt.minifdusocket.websocket.support.JsonByteWriter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 二进制协议客户端的同步状态，见 {@link GameBinaryCodec} <br/>
+ * 每个 tick 依次：
+ * <ol>
+ *     <li>{@link #prepare}：计算进入视野、发生变化、离开视野的玩家</li>
+ *     <li>{@link #writeInfo}：映射表或静态字段有变化时，生成 json 文本消息 playerInfo</li>
+ *     <li>{@link #writeSnapshot}：生成二进制快照帧</li>
+ * </ol>
+ * 二进制帧走可靠有序的 TCP，因此以上一次下发该玩家时的快照为基线，不需要客户端确认；
+ * 远处玩家按 {@link UpdateRate} 降频，每个已知玩家单独记录最后一次下发的快照序号。
+ * 除 {@link #resync()} 外，所有方法只能在 tick 线程中调用。
+ */
+public class BinaryView {
+    private static final int POSE_MASK = UserData.bit(UserData.MODEL) | UserData.bit(UserData.ACTION)
+            | UserData.bit(UserData.X) | UserData.bit(UserData.Y) | UserData.bit(UserData.Z)
+            | UserData.bit(UserData.H) | UserData.bit(UserData.PB);
+    private static final byte[] PLAYER_INFO_HEAD = JsonByteWriter.ascii("{\"type\":\"playerInfo\"");
+    private static final byte[] RESET = JsonByteWriter.ascii(",\"reset\":true");
+    private static final byte[] SYMBOLS = JsonByteWriter.ascii(",\"symbols\":");
+    private static final byte[] DATA = JsonByteWriter.ascii(",\"data\":[");
+    private static final byte[] ARRAY_OBJECT_END = JsonByteWriter.ascii("]}");
+
+    /**
+     * key: 客户端当前已知的玩家 id，value: 最后一次下发该玩家数据（或确认其没有变化）的快照序号
+     */
+    private Map<Long, Long> known = new HashMap<>();
+    private Map<Long, Long> spare = new HashMap<>();
+    /**
+     * 客户端已收到的映射表版本
+     */
+    private int symbolVersion;
+    private volatile boolean resyncPending;
+    /**
+     * 本 tick 是否为重新同步，playerInfo 中带上 reset 通知客户端清空已知玩家
+     */
+    private boolean resetting;
+
+    private final List<UserData> entered = new ArrayList<>();
+    private final List<UserData> changed = new ArrayList<>();
+    /**
+     * changed 中每个玩家相对于其基线发生变化的字段
+     */
+    private int[] changedMasks = new int[16];
+    private final List<Long> left = new ArrayList<>();
+
+    /**
+     * 已发出的快照在发送前被丢弃，之后的快照以它为基线，已经无法还原；
+     * 下一个 tick 通知客户端清空已知玩家，并把所有可见玩家当作新进入视野重新下发，可在任意线程调用
+     */
+    public void resync() {
+        resyncPending = true;
+    }
+
+    /**
+     * @param seq     本 tick 的快照序号
+     * @param visible 本 tick 该客户端可见的玩家（已 capture）
+     * @param rate    本 tick 下发哪些玩家的变化（已对该客户端调用 {@link UpdateRate#begin}）
+     */
+    public void prepare(long seq, List<UserData> visible, UpdateRate rate) {
+        resetting = resyncPending;
+        if (resetting) {
+            resyncPending = false;
+            known.clear();
+        }
+        entered.clear();
+        changed.clear();
+        left.clear();
+        Long current = seq;
+        Map<Long, Long> next = spare;
+        next.clear();
+        for (UserData userData : visible) {
+            Long lastSent = known.get(userData.getUserId());
+            if (lastSent == null) {
+                entered.add(userData);
+                next.put(userData.getUserId(), current);
+            } else if (rate.isDue(userData)) {
+                int mask = userData.changedMaskSince(lastSent);
+                if (mask != 0) {
+                    if (changed.size() == changedMasks.length) {
+                        changedMasks = Arrays.copyOf(changedMasks, changed.size() * 2);
+                    }
+                    changedMasks[changed.size()] = mask;
+                    changed.add(userData);
+                }
+                next.put(userData.getUserId(), current);
+            } else {
+                next.put(userData.getUserId(), lastSent);
+            }
+        }
+        for (Long userId : known.keySet()) {
+            if (!next.containsKey(userId)) {
+                left.add(userId);
+            }
+        }
+        spare = known;
+        known = next;
+    }
+
+    /**
+     * 生成需要先于快照发送的 json 消息：
+     * {"type":"playerInfo","symbols":{"boy":1,"walk":2},"data":[{"userId":1,"username":"..","model":"..","colour":".."}]}
+     * 其中 symbols 只包含客户端尚未收到的映射（playerInfo 不会被丢弃，客户端累积保存），没有新增时省略；
+     * data 为进入视野或静态字段发生变化的玩家；
+     * 重新同步时带有 "reset":true，客户端应先清空已知玩家
+     *
+     * @return 是否有需要发送的消息
+     */
+    public boolean writeInfo(SymbolDictionary symbols, JsonByteWriter out) {
+        out.reset();
+        boolean symbolsChanged = symbols.version() != symbolVersion;
+        out.raw(PLAYER_INFO_HEAD);
+        if (resetting) {
+            out.raw(RESET);
+        }
+        if (symbolsChanged) {
+            symbolVersion = symbols.writeSince(symbolVersion, out.raw(SYMBOLS));
+        }
+        out.raw(DATA);
+        int count = 0;
+        for (UserData userData : entered) {
+            if (count++ > 0) {
+                out.raw((byte) ',');
+            }
+            userData.writeJson(UserData.STATIC_MASK, out);
+        }
+        for (int i = 0, n = changed.size(); i < n; i++) {
+            if ((changedMasks[i] & UserData.STATIC_MASK) != 0) {
+                if (count++ > 0) {
+                    out.raw((byte) ',');
+                }
+                changed.get(i).writeJson(UserData.STATIC_MASK, out);
+            }
+        }
+        out.raw(ARRAY_OBJECT_END);
+        return resetting || symbolsChanged || count > 0;
+    }
+
+    /**
+     * 快照帧所需的最大字节数
+     */
+    public int snapshotCapacity() {
+        return GameBinaryCodec.snapshotCapacity(entered.size() + changed.size(), left.size());
+    }
+
+    /**
+     * 编码二进制快照
+     *
+     * @param time 本 tick 的服务端时间（毫秒）
+     * @return 是否有内容需要发送
+     */
+    public boolean writeSnapshot(long seq, long time, SymbolDictionary symbols, ByteBuffer out) {
+        int records = entered.size();
+        for (int i = 0, n = changed.size(); i < n; i++) {
+            if ((changedMasks[i] & POSE_MASK) != 0) {
+                records++;
+            }
+        }
+        if (records == 0 && left.isEmpty()) {
+            return false;
+        }
+        GameBinaryCodec.writeSnapshotHeader(out, seq, time, records);
+        for (UserData userData : entered) {
+            GameBinaryCodec.writeRecord(out, userData, symbols);
+        }
+        for (int i = 0, n = changed.size(); i < n; i++) {
+            if ((changedMasks[i] & POSE_MASK) != 0) {
+                GameBinaryCodec.writeRecord(out, changed.get(i), symbols);
+            }
+        }
+        out.putShort((short) left.size());
+        for (Long userId : left) {
+            out.putLong(userId);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,104 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 游戏通道二进制协议（大端序，与浏览器 DataView 默认字节序一致） <br/>
+ * 客户端 -> 服务端 POSE 帧（23 字节）：
+ * <pre>
+ * [u8 op=0x01][u16 actionId][f32 x][f32 y][f32 z][f32 h][f32 pb]
+ * </pre>
+ * actionId 为 {@link #ACTION_UNCHANGED} 时表示动作不变；新的动作字符串以及 username/model/colour
+ * 仍通过 json 的 local_update 上报，服务端在房间的 {@link SymbolDictionary} 中分配 id 后通过 playerInfo 的 symbols 下发。 <br/>
+ * 服务端 -> 客户端 SNAPSHOT 帧：
+ * <pre>
+ * [u8 op=0x10][u32 seq][f64 t][u16 count] count * ([i64 userId][u16 modelId][u16 actionId][f32 x][f32 y][f32 z][f32 h][f32 pb])
+ * [u16 leaveCount] leaveCount * [i64 userId]
+ * </pre>
+ * t 为服务端 capture 时间（毫秒，与 json 快照中的 t 相同），以 f64 编码便于浏览器直接读取，客户端据此插值。
+ * 每条玩家记录固定 32 字节；与 json 格式的字节数对比见 BinaryViewTest，解析耗时对比见 UserDataBenchmark（parseAndUpdate / applyPose）。
+ */
+public final class GameBinaryCodec {
+    public static final String SUBPROTOCOL = "mini-fdu-game.bin";
+
+    public static final byte OP_POSE = 0x01;
+    public static final byte OP_SNAPSHOT = 0x10;
+
+    public static final int POSE_LENGTH = 1 + 2 + 5 * 4;
+    public static final int RECORD_LENGTH = 8 + 2 + 2 + 5 * 4;
+    public static final int ACTION_UNCHANGED = 0xFFFF;
+
+    private GameBinaryCodec() {
+    }
+
+    /**
+     * 是否为格式正确的 POSE 帧（只检查长度和 op，不检查数值）
+     */
+    public static boolean isPose(ByteBuffer frame) {
+        return frame.remaining() == POSE_LENGTH && frame.get(frame.position()) == OP_POSE;
+    }
+
+    /**
+     * 将 POSE 帧复制到 pending（容量为 {@link #POSE_LENGTH}），不改变 frame 的 position <br/>
+     * 覆盖尚未应用的旧帧时，如果新帧不更新动作则保留旧帧中的动作，避免动作变化被之后的位置上报覆盖而丢失
+     *
+     * @param supersede pending 中是否有尚未应用的旧帧
+     */
+    public static void copyPose(ByteBuffer frame, ByteBuffer pending, boolean supersede) {
+        int previousAction = supersede ? pending.getShort(1) & 0xFFFF : ACTION_UNCHANGED;
+        pending.clear();
+        pending.put(frame.duplicate());
+        pending.flip();
+        if ((pending.getShort(1) & 0xFFFF) == ACTION_UNCHANGED) {
+            pending.putShort(1, (short) previousAction);
+        }
+    }
+
+    /**
+     * 解析 POSE 帧并写入 userData
+     *
+     * @return 帧格式是否正确，坐标不合法（见 {@link UserData#MAX_COORDINATE}）时同样返回 false
+     */
+    public static boolean applyPose(ByteBuffer frame, UserData userData, SymbolDictionary symbols, long version) {
+        if (!isPose(frame)) {
+            return false;
+        }
+        int p = frame.position() + 1;
+        int actionId = frame.getShort(p) & 0xFFFF;
+        String action = actionId == ACTION_UNCHANGED ? null : symbols.symbolOf(actionId);
+        return userData.updatePose(
+                frame.getFloat(p + 2),
+                frame.getFloat(p + 6),
+                frame.getFloat(p + 10),
+                frame.getFloat(p + 14),
+                frame.getFloat(p + 18),
+                action,
+                actionId != ACTION_UNCHANGED,
+                version);
+    }
+
+    /**
+     * 快照帧所需的最大字节数
+     */
+    public static int snapshotCapacity(int records, int leaves) {
+        return 1 + 4 + 8 + 2 + records * RECORD_LENGTH + 2 + leaves * 8;
+    }
+
+    public static void writeSnapshotHeader(ByteBuffer out, long seq, long time, int count) {
+        out.put(OP_SNAPSHOT);
+        out.putInt((int) seq);
+        out.putDouble(time);
+        out.putShort((short) count);
+    }
+
+    public static void writeRecord(ByteBuffer out, UserData userData, SymbolDictionary symbols) {
+        out.putLong(userData.getUserId());
+        out.putShort((short) symbols.idOf(userData.getModel()));
+        out.putShort((short) symbols.idOf(userData.getAction()));
+        out.putFloat((float) userData.getX());
+        out.putFloat((float) userData.getY());
+        out.putFloat((float) userData.getZ());
+        out.putFloat((float) userData.getH());
+        out.putFloat((float) userData.getPb());
+    }
+}
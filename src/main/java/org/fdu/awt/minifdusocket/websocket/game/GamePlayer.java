@@ -0,0 +1,308 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import com.alibaba.fastjson2.JSONObject;
+import jakarta.websocket.Session;
+import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.websocket.support.ByteBufferPool;
+import org.fdu.awt.minifdusocket.websocket.support.JsonByteWriter;
+import org.fdu.awt.minifdusocket.websocket.support.OutboundQueue;
+import org.fdu.awt.minifdusocket.websocket.support.SharedFrame;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 一个已连接的玩家：会话、同步数据以及该客户端使用的协议 <br/>
+ * <ul>
+ *     <li>默认：每个 tick 全量下发 remoteData</li>
+ *     <li>{@link PlayerView}：增量同步（?protocol=delta）</li>
+ *     <li>{@link BinaryView}：二进制协议（子协议或 ?format=binary）</li>
+ * </ul>
+ * 所有发送都经过会话的 {@link OutboundQueue}，快照只保留最新的一条。 <br/>
+ * 客户端的 local_update 同样只保留最新的一条（{@link #offerUpdate}），由 tick 线程在 capture 前解析并应用。
+ */
+@Slf4j
+public class GamePlayer {
+    private final Session session;
+    private final OutboundQueue outbound;
+    private final Long userId;
+    /**
+     * 加入房间时由房间的 {@link PlayerStateStore} 分配
+     */
+    private UserData userData;
+    private final PlayerView view;
+    private final BinaryView binaryView;
+    /**
+     * 是否以二进制帧发送 json（内容相同，省去每个会话的 UTF-8 编码）
+     */
+    private final boolean binaryFrames;
+    /**
+     * 等待下一个 tick 应用的 local_update，由 this 保护 <br/>
+     * 含外观字段（加入房间或更换外观）的消息单独保存，不会被之后的位置更新覆盖
+     */
+    private String pendingUpdate;
+    private String pendingAppearance;
+    /**
+     * 等待下一个 tick 应用的二进制 POSE 帧，同样只保留最新的一条，由 this 保护；只有二进制协议的客户端才会分配
+     */
+    private ByteBuffer pendingPose;
+    private boolean posePending;
+    /**
+     * tick 线程解析用的副本，在锁外解析
+     */
+    private ByteBuffer appliedPose;
+    /**
+     * 快照间隔（tick 数）及下一次发送快照的序号，只在 tick 线程中使用
+     */
+    private int snapshotInterval = 1;
+    private long nextSnapshotSeq;
+    /**
+     * 该玩家在房间的 {@link SymbolDictionary} 中新增的字符串数，只在 tick 线程中使用
+     */
+    private int registeredSymbols;
+
+    public GamePlayer(OutboundQueue outbound, Long userId, PlayerView view, BinaryView binaryView, boolean binaryFrames) {
+        this.session = outbound.getSession();
+        this.outbound = outbound;
+        this.userId = userId;
+        this.view = view;
+        this.binaryView = binaryView;
+        // 二进制协议中二进制帧只用于快照，json 消息仍以文本帧发送
+        this.binaryFrames = binaryView == null && binaryFrames;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public UserData getUserData() {
+        return userData;
+    }
+
+    void setUserData(UserData userData) {
+        this.userData = userData;
+    }
+
+    public PlayerView getView() {
+        return view;
+    }
+
+    public BinaryView getBinaryView() {
+        return binaryView;
+    }
+
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    public boolean isOpen() {
+        return session.isOpen();
+    }
+
+    /**
+     * 保存一条 local_update，替换尚未应用的同类消息，可在任意线程调用
+     *
+     * @param appearance 是否含有 username/model/colour
+     * @return 是否替换了尚未应用的消息
+     */
+    public synchronized boolean offerUpdate(String message, boolean appearance) {
+        boolean superseded = pendingUpdate != null;
+        if (appearance) {
+            superseded |= pendingAppearance != null;
+            pendingAppearance = message;
+            // 之前的位置更新已包含在这条消息中
+            pendingUpdate = null;
+        } else {
+            pendingUpdate = message;
+        }
+        return superseded;
+    }
+
+    /**
+     * 保存一个二进制 POSE 帧（调用方已检查格式），替换尚未应用的旧帧，可在任意线程调用 <br/>
+     * 帧的内容会被复制，调用返回后容器可以复用 frame
+     *
+     * @return 是否替换了尚未应用的帧
+     */
+    public synchronized boolean offerPose(ByteBuffer frame) {
+        if (pendingPose == null) {
+            pendingPose = ByteBuffer.allocate(GameBinaryCodec.POSE_LENGTH);
+        }
+        boolean superseded = posePending;
+        GameBinaryCodec.copyPose(frame, pendingPose, superseded);
+        posePending = true;
+        return superseded;
+    }
+
+    /**
+     * 解析并应用等待中的 local_update 和 POSE 帧，只在 tick 线程中调用 <br/>
+     * 位置更新总是晚于保存的外观更新，因此后应用；所有修改都以本 tick 的序号为版本号，
+     * 不会出现版本号早于本 tick、却在上一次 capture 之后才写入而被增量同步漏掉的修改
+     *
+     * @param version 本次修改所属的快照序号
+     */
+    void applyPendingUpdates(long version, SymbolDictionary symbols) {
+        String appearance;
+        String update;
+        boolean pose = false;
+        synchronized (this) {
+            appearance = pendingAppearance;
+            update = pendingUpdate;
+            pendingAppearance = null;
+            pendingUpdate = null;
+            if (posePending) {
+                if (appliedPose == null) {
+                    appliedPose = ByteBuffer.allocate(GameBinaryCodec.POSE_LENGTH);
+                }
+                appliedPose.clear();
+                appliedPose.put(pendingPose.duplicate());
+                appliedPose.flip();
+                posePending = false;
+                pose = true;
+            }
+        }
+        if (appearance != null) {
+            applyUpdate(appearance, version, symbols);
+        }
+        if (update != null) {
+            applyUpdate(update, version, symbols);
+        }
+        if (pose && !GameBinaryCodec.applyPose(appliedPose, userData, symbols, version)) {
+            log.warn("【GameWebSocket】用户 {} 的 POSE 帧数值无效，已丢弃", userId);
+        }
+    }
+
+    private void applyUpdate(String message, long version, SymbolDictionary symbols) {
+        try {
+            JSONObject data = JSONObject.parseObject(message).getJSONObject("data");
+            if (data == null) {
+                return;
+            }
+            admitSymbol(data, "model", symbols);
+            admitSymbol(data, "action", symbols);
+            if (!userData.updateUserData(data, version)) {
+                log.warn("【GameWebSocket】用户 {} 的 local_update 数值无效，已丢弃", userId);
+            }
+        } catch (Exception e) {
+            log.error("【GameWebSocket】用户 {} 的 local_update 格式错误", userId, e);
+        }
+    }
+
+    /**
+     * 为 model/action 中新的字符串分配 id；房间的映射表已满、或该玩家新增的字符串已达上限时忽略该字段
+     */
+    private void admitSymbol(JSONObject data, String field, SymbolDictionary symbols) {
+        String symbol = data.getString(field);
+        if (symbol == null || symbols.idOf(symbol) != SymbolDictionary.NONE) {
+            return;
+        }
+        if (registeredSymbols < symbols.getMaxPerPlayer() && symbols.register(symbol) != SymbolDictionary.NONE) {
+            registeredSymbols++;
+            return;
+        }
+        data.remove(field);
+        log.warn("【GameWebSocket】用户 {} 上报的 {} 超出映射表上限，已忽略: {}", userId, field, symbol);
+    }
+
+    /**
+     * 本 tick 是否向该客户端发送快照，只在 tick 线程中调用 <br/>
+     * 发送前队列中仍有未发出的消息说明客户端跟不上，快照间隔加倍（不超过 maxInterval）；
+     * 队列清空后间隔逐步减半，恢复为每个 tick 一次
+     */
+    boolean isSnapshotDue(long seq, int maxInterval) {
+        if (seq < nextSnapshotSeq) {
+            return false;
+        }
+        if (outbound.size() > 0) {
+            snapshotInterval = Math.min(snapshotInterval * 2, Math.max(1, maxInterval));
+        } else if (snapshotInterval > 1) {
+            snapshotInterval /= 2;
+        }
+        nextSnapshotSeq = seq + snapshotInterval;
+        return true;
+    }
+
+    /**
+     * 发送多个会话共享的消息帧
+     */
+    public void send(SharedFrame frame) {
+        if (session.isOpen()) {
+            outbound.offer(frame, binaryFrames);
+        }
+    }
+
+    /**
+     * 发送只属于当前会话的消息
+     */
+    public void send(JsonByteWriter message, ByteBufferPool pool) {
+        if (!session.isOpen()) {
+            return;
+        }
+        if (binaryFrames) {
+            SharedFrame frame = SharedFrame.copyOf(message, pool);
+            outbound.offer(frame, true);
+            frame.release();
+        } else {
+            outbound.offer(message.toUtf8String());
+        }
+    }
+
+    /**
+     * 发送多个会话共享的快照，尚未发出的旧快照会被替换
+     */
+    void sendSnapshot(SharedFrame frame) {
+        if (session.isOpen()) {
+            outbound.offerLatest(frame, binaryFrames, null);
+        }
+    }
+
+    /**
+     * 发送只属于当前会话的快照（增量或过滤后的全量），尚未发出的旧快照会被替换；
+     * 增量快照被替换时客户端状态无法还原，需要重新同步
+     */
+    void sendSnapshot(JsonByteWriter message, ByteBufferPool pool) {
+        if (!session.isOpen()) {
+            return;
+        }
+        Runnable onDropped = view != null ? view::resync : null;
+        if (binaryFrames) {
+            SharedFrame frame = SharedFrame.copyOf(message, pool);
+            outbound.offerLatest(frame, true, onDropped);
+            frame.release();
+        } else {
+            outbound.offerLatest(message.toUtf8String(), onDropped);
+        }
+    }
+
+    /**
+     * 二进制协议：先发送 playerInfo（如有），再发送二进制快照
+     */
+    void sendBinarySnapshot(long seq, long time, List<UserData> visible, UpdateRate rate, SymbolDictionary symbols,
+                            JsonByteWriter infoWriter, ByteBufferPool pool) {
+        binaryView.prepare(seq, visible, rate);
+        if (binaryView.writeInfo(symbols, infoWriter)) {
+            send(infoWriter, pool);
+        }
+        ByteBuffer buffer = pool.acquire(binaryView.snapshotCapacity());
+        SharedFrame frame = null;
+        try {
+            if (binaryView.writeSnapshot(seq, time, symbols, buffer)) {
+                buffer.flip();
+                frame = SharedFrame.wrap(buffer, pool);
+                if (session.isOpen()) {
+                    outbound.offerLatest(frame, true, binaryView::resync);
+                }
+            }
+        } finally {
+            if (frame != null) {
+                frame.release();
+            } else {
+                pool.release(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.config.GameProperties;
+import org.fdu.awt.minifdusocket.websocket.support.ByteBufferPool;
+import org.fdu.awt.minifdusocket.websocket.support.JsonByteWriter;
+import org.fdu.awt.minifdusocket.websocket.support.SessionRegistry;
+import org.fdu.awt.minifdusocket.websocket.support.SharedFrame;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 游戏房间 <br/>
+ * 每个房间拥有独立的玩家表和 tick 任务，房间之间互不可见；不同房间的 tick 由 {@link GameTickEngine}
+ * 分散到多个线程上执行，同一房间的 tick 不会并发执行。 <br/>
+ * 每个客户端的快照频率按发送队列的积压情况调整（{@link GamePlayer#isSnapshotDue}），
+ * 增量与二进制协议中远处玩家的变化降频下发（{@link UpdateRate}），所有快照带有时间戳 t 供客户端插值。
+ */
+@Slf4j
+public class GameRoom {
+    private final String roomId;
+    private final GameProperties properties;
+    private final SymbolDictionary symbols;
+    private final ByteBufferPool bufferPool;
+    /**
+     * key: userId, value: 玩家，每个用户只保留最新的一个连接
+     */
+    private final SessionRegistry<Long, GamePlayer> players = new SessionRegistry<>();
+    /**
+     * 所有玩家的同步数据
+     */
+    private final PlayerStateStore states = new PlayerStateStore();
+    /**
+     * 最近一次广播的快照序号，客户端的修改在 tick 开始时应用，归属于该 tick 的快照
+     */
+    private final AtomicLong snapshotSeq = new AtomicLong();
+    /**
+     * 房间关闭后不再接受新玩家，由 this 保护
+     */
+    private boolean closed;
+    private GameTickEngine.Ticker ticker;
+
+    // 以下字段只在 tick 线程中使用，tick 之间复用
+    private SpatialGrid<UserData> grid;
+    private UpdateRate updateRate;
+    private final GameSnapshotWriter snapshotWriter = new GameSnapshotWriter();
+    private final JsonByteWriter infoWriter = new JsonByteWriter(1024);
+    private final List<UserData> modelled = new ArrayList<>();
+    private final List<UserData> visible = new ArrayList<>();
+
+    public GameRoom(String roomId, GameProperties properties, ByteBufferPool bufferPool) {
+        this.roomId = roomId;
+        this.properties = properties;
+        GameProperties.Ingest ingest = properties.getIngest();
+        this.symbols = new SymbolDictionary(ingest.getMaxSymbolsPerRoom(), ingest.getMaxSymbolsPerPlayer());
+        this.bufferPool = bufferPool;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    void setTicker(GameTickEngine.Ticker ticker) {
+        this.ticker = ticker;
+    }
+
+    GameTickEngine.Ticker getTicker() {
+        return ticker;
+    }
+
+    public SymbolDictionary getSymbols() {
+        return symbols;
+    }
+
+    public int size() {
+        return players.size();
+    }
+
+    public Collection<GamePlayer> getPlayers() {
+        return players.snapshot();
+    }
+
+    public GamePlayer getPlayer(Long userId) {
+        return players.get(userId);
+    }
+
+    /**
+     * 玩家加入
+     *
+     * @return 房间已关闭时返回 false，调用方应重新获取房间
+     */
+    synchronized boolean join(GamePlayer player) {
+        if (closed) {
+            return false;
+        }
+        player.setUserData(states.add(player.getUserId()));
+        GamePlayer previous = players.register(player.getUserId(), player);
+        if (previous != null) {
+            // 同一用户重复连接：旧连接随后关闭时不会再从房间中删除，在这里释放它的槽位
+            log.info("【GameRoom】用户 {} 重复连接房间 {}，关闭旧连接", player.getUserId(), roomId);
+            states.remove(previous.getUserData());
+            previous.getOutbound().disconnect(SessionRegistry.REPLACED);
+        }
+        ticker.wake();
+        return true;
+    }
+
+    void leave(GamePlayer player) {
+        if (players.unregister(player.getUserId(), player)) {
+            states.remove(player.getUserData());
+            broadcastDeletePlayer(player.getUserId());
+        }
+    }
+
+    /**
+     * 房间为空时关闭房间
+     *
+     * @return 是否已关闭
+     */
+    synchronized boolean closeIfEmpty() {
+        if (players.isEmpty()) {
+            closed = true;
+        }
+        return closed;
+    }
+
+    boolean isIdle() {
+        return players.isEmpty();
+    }
+
+    private void broadcastDeletePlayer(Long userId) {
+        JSONObject json = new JSONObject();
+        json.put("type", "deletePlayer");
+        json.put("userId", userId);
+        sendMessageToAll(json.toJSONString());
+    }
+
+    public void sendMessageToAll(String message) {
+        sendFrameToAll(SharedFrame.of(message));
+    }
+
+    /**
+     * 将同一帧发送给房间内所有玩家，发送完成后释放创建者持有的引用
+     */
+    private void sendFrameToAll(SharedFrame frame) {
+        try {
+            for (GamePlayer player : players.snapshot()) {
+                player.send(frame);
+            }
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * 广播一次房间内的玩家数据，由 {@link GameTickEngine} 调度
+     */
+    void tick() {
+        long seq = snapshotSeq.incrementAndGet();
+        long now = System.currentTimeMillis();
+        snapshotWriter.beginTick(seq, now);
+        List<GamePlayer> current = players.snapshot();
+        for (GamePlayer player : current) {
+            player.applyPendingUpdates(seq, symbols);
+        }
+        modelled.clear();
+        for (UserData userData : states.capture(seq)) {
+            if (userData.getModel() != null) {
+                modelled.add(userData);
+            }
+        }
+
+        GameProperties.Aoi aoi = properties.getAoi();
+        GameProperties.Rate rate = properties.getRate();
+        if (updateRate == null) {
+            updateRate = new UpdateRate(rate.getNearRadius(), rate.getFarInterval());
+        }
+        if (aoi.isEnabled()) {
+            if (grid == null) {
+                grid = new SpatialGrid<>(aoi.getCellSize());
+            }
+            grid.clear();
+            for (UserData userData : modelled) {
+                grid.insert(userData.getX(), userData.getZ(), userData);
+            }
+        }
+
+        // 不做过滤时所有旧协议客户端收到的内容相同，只编码一次
+        SharedFrame fullFrame = null;
+        try {
+            for (GamePlayer player : current) {
+                UserData self = player.getUserData();
+                // tick 开始后才加入的玩家下一个 tick 再同步
+                if (!player.isOpen() || !self.isCaptured(seq)
+                        || !player.isSnapshotDue(seq, rate.getMaxCongestedInterval())) {
+                    continue;
+                }
+                visible.clear();
+                if (aoi.isEnabled()) {
+                    grid.query(self.getX(), self.getZ(), aoi.getRadius(), visible::add);
+                } else {
+                    visible.addAll(modelled);
+                }
+
+                updateRate.begin(self, seq);
+                if (player.getBinaryView() != null) {
+                    player.sendBinarySnapshot(seq, now, visible, updateRate, symbols, infoWriter, bufferPool);
+                } else if (player.getView() != null) {
+                    if (player.getView().writeMessage(visible, snapshotWriter, updateRate)) {
+                        player.sendSnapshot(snapshotWriter.message(), bufferPool);
+                    }
+                } else if (!aoi.isEnabled()) {
+                    if (fullFrame == null) {
+                        fullFrame = SharedFrame.copyOf(snapshotWriter.remoteData(visible), bufferPool);
+                    }
+                    player.sendSnapshot(fullFrame);
+                } else {
+                    player.sendSnapshot(snapshotWriter.remoteData(visible), bufferPool);
+                }
+            }
+        } finally {
+            if (fullFrame != null) {
+                fullFrame.release();
+            }
+        }
+    }
+
+}
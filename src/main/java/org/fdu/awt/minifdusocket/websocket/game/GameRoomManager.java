@@ -0,0 +1,106 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import jakarta.websocket.Session;
+import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.config.GameProperties;
+import org.fdu.awt.minifdusocket.websocket.support.ByteBufferPool;
+import org.fdu.awt.minifdusocket.websocket.support.OutboundQueues;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 游戏房间管理 <br/>
+ * 第一个玩家加入时创建房间并注册 tick 任务，最后一个玩家离开时关闭房间并注销 tick 任务。
+ */
+@Slf4j
+@Component
+public class GameRoomManager {
+    /**
+     * 不带房间号的连接（/game/{userId}）进入的房间
+     */
+    public static final String DEFAULT_ROOM = "default";
+
+    private final GameProperties properties;
+    private final GameTickEngine tickEngine;
+    private final OutboundQueues outboundQueues;
+    /**
+     * 所有房间共享的缓冲区池（线程安全），model/action 的 id 映射每个房间一个
+     */
+    private final ByteBufferPool bufferPool = new ByteBufferPool(64);
+    /**
+     * key: roomId, value: room
+     */
+    private final ConcurrentHashMap<String, GameRoom> rooms = new ConcurrentHashMap<>();
+
+    @Autowired
+    public GameRoomManager(GameProperties properties, GameTickEngine tickEngine, OutboundQueues outboundQueues) {
+        this.properties = properties;
+        this.tickEngine = tickEngine;
+        this.outboundQueues = outboundQueues;
+    }
+
+    /**
+     * 根据连接参数确定客户端使用的协议并创建玩家
+     */
+    public GamePlayer createPlayer(Session session, Long userId) {
+        BinaryView binaryView = null;
+        PlayerView view = null;
+        if (GameBinaryCodec.SUBPROTOCOL.equals(session.getNegotiatedSubprotocol())
+                || hasParameter(session, "format", "binary")) {
+            binaryView = new BinaryView();
+        } else if (hasParameter(session, "protocol", "delta")) {
+            GameProperties.Delta delta = properties.getDelta();
+            view = new PlayerView(delta.getKeyframeInterval(), delta.getMaxAckLag());
+        }
+        return new GamePlayer(outboundQueues.of(session), userId, view, binaryView, hasParameter(session, "frame", "binary"));
+    }
+
+    private static boolean hasParameter(Session session, String name, String value) {
+        List<String> values = session.getRequestParameterMap().get(name);
+        return values != null && values.contains(value);
+    }
+
+    /**
+     * 玩家加入房间，房间不存在时创建
+     */
+    public GameRoom join(String roomId, GamePlayer player) {
+        while (true) {
+            GameRoom room = rooms.computeIfAbsent(roomId, this::createRoom);
+            // 房间恰好在此期间被关闭时重新获取
+            if (room.join(player)) {
+                return room;
+            }
+        }
+    }
+
+    public void leave(GameRoom room, GamePlayer player) {
+        room.leave(player);
+        outboundQueues.close(player.getSession());
+        if (!room.isIdle()) {
+            return;
+        }
+        rooms.computeIfPresent(room.getRoomId(), (roomId, current) -> {
+            if (current != room || !room.closeIfEmpty()) {
+                return current;
+            }
+            tickEngine.unregister(room.getTicker());
+            log.info("【GameRoomManager】房间 {} 已关闭，当前房间数: {}", roomId, rooms.size() - 1);
+            return null;
+        });
+    }
+
+    public Collection<GameRoom> getRooms() {
+        return rooms.values();
+    }
+
+    private GameRoom createRoom(String roomId) {
+        GameRoom room = new GameRoom(roomId, properties, bufferPool);
+        room.setTicker(tickEngine.register("room-" + roomId, room::tick, room::isIdle));
+        log.info("【GameRoomManager】创建房间 {}，当前房间数: {}", roomId, rooms.size() + 1);
+        return room;
+    }
+}
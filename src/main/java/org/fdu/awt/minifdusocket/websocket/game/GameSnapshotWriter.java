@@ -0,0 +1,94 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import org.fdu.awt.minifdusocket.websocket.support.JsonByteWriter;
+
+import java.util.List;
+
+/**
+ * 每个 tick 复用的快照序列化器 <br/>
+ * 每个玩家的完整数据在一个 tick 内只编码一次（存放在片段缓冲区中），之后组装 remoteData、关键帧、
+ * enter 列表时直接拷贝字节，不再创建 JSONObject/JSONArray。 <br/>
+ * 非线程安全，只能在 tick 线程中使用。
+ */
+public class GameSnapshotWriter {
+    private static final byte[] REMOTE_DATA_HEAD = JsonByteWriter.ascii("{\"type\":\"remoteData\",\"t\":");
+    private static final byte[] DATA = JsonByteWriter.ascii(",\"data\":[");
+    private static final byte[] ARRAY_OBJECT_END = JsonByteWriter.ascii("]}");
+
+    /**
+     * 本 tick 所有玩家完整数据的片段
+     */
+    private final JsonByteWriter fragments = new JsonByteWriter(16 * 1024);
+    /**
+     * 当前正在组装的消息
+     */
+    private final JsonByteWriter message = new JsonByteWriter(16 * 1024);
+    private long seq;
+    private long time;
+
+    /**
+     * @param time 本 tick capture 的服务端时间（毫秒），作为快照的时间戳 t 供客户端插值
+     */
+    public void beginTick(long seq, long time) {
+        this.seq = seq;
+        this.time = time;
+        fragments.reset();
+    }
+
+    public long seq() {
+        return seq;
+    }
+
+    public long time() {
+        return time;
+    }
+
+    /**
+     * 开始组装一条新消息
+     */
+    public JsonByteWriter startMessage() {
+        message.reset();
+        return message;
+    }
+
+    public JsonByteWriter message() {
+        return message;
+    }
+
+    /**
+     * 写入玩家完整数据（每个 tick 每个玩家只编码一次）
+     */
+    public void writeFull(UserData userData, JsonByteWriter out) {
+        if (userData.fragmentSeq != seq) {
+            int offset = fragments.size();
+            userData.writeJson(UserData.ALL_MASK, fragments);
+            userData.fragmentSeq = seq;
+            userData.fragmentOffset = offset;
+            userData.fragmentLength = fragments.size() - offset;
+        }
+        out.raw(fragments.array(), userData.fragmentOffset, userData.fragmentLength);
+    }
+
+    /**
+     * 写入一组玩家的完整数据，逗号分隔
+     */
+    public void writeFullArray(List<UserData> players, JsonByteWriter out) {
+        for (int i = 0, n = players.size(); i < n; i++) {
+            if (i > 0) {
+                out.raw((byte) ',');
+            }
+            writeFull(players.get(i), out);
+        }
+    }
+
+    /**
+     * 组装旧协议的 remoteData 消息：{"type":"remoteData","t":1700000000000,"data":[...]}
+     */
+    public JsonByteWriter remoteData(List<UserData> visible) {
+        JsonByteWriter out = startMessage();
+        out.raw(REMOTE_DATA_HEAD).writeLong(time).raw(DATA);
+        writeFullArray(visible, out);
+        out.raw(ARRAY_OBJECT_END);
+        return out;
+    }
+}
@@ -0,0 +1,232 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.config.GameProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 游戏定时广播引擎 <br/>
+ * 以固定频率（scheduleAtFixedRate，按初始时间补偿漂移，不会因为广播耗时而拉长周期）执行注册的 tick 任务：
+ * <ul>
+ *     <li>tick 频率由 {@code game.tick.rate} 配置，所有任务共享 {@code game.tick.threads} 个线程，同一任务不会并发执行</li>
+ *     <li>生命周期与 Spring 容器绑定，容器关闭时停止所有任务</li>
+ *     <li>任务空闲（如没有玩家）时暂停调度，{@link Ticker#wake()} 后恢复</li>
+ *     <li>每个任务记录耗时、超时次数、调度延迟，见 {@link TickStats}，
+ *     并以 game.tick.duration、game.tick.lag、game.tick.overruns（tag: task）发布到 /actuator/metrics，
+ *     {@link #unregister} 时删除</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class GameTickEngine implements SmartLifecycle {
+    /**
+     * 超时告警日志的最小间隔
+     */
+    private static final long OVERRUN_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final GameProperties.Tick config;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Ticker> tickers = new ConcurrentHashMap<>();
+    private volatile ScheduledExecutorService scheduler;
+
+    @Autowired
+    public GameTickEngine(GameProperties gameProperties, MeterRegistry meterRegistry) {
+        this.config = gameProperties.getTick();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 注册一个 tick 任务，注册后处于暂停状态，需要调用 {@link Ticker#wake()} 开始调度
+     *
+     * @param name   任务名，用于日志及统计
+     * @param task   每个 tick 执行的任务，同一任务不会并发执行
+     * @param isIdle 返回 true 时暂停调度
+     */
+    public Ticker register(String name, Runnable task, BooleanSupplier isIdle) {
+        Ticker ticker = new Ticker(name, task, isIdle);
+        if (tickers.putIfAbsent(name, ticker) != null) {
+            throw new IllegalStateException("tick task already registered: " + name);
+        }
+        return ticker;
+    }
+
+    /**
+     * 注销任务并删除它的统计项；房间会不断创建、销毁，统计项不删除会一直留在 registry 中
+     */
+    public void unregister(Ticker ticker) {
+        tickers.remove(ticker.name, ticker);
+        ticker.suspend();
+        meterRegistry.remove(ticker.durationTimer);
+        meterRegistry.remove(ticker.lagTimer);
+        meterRegistry.remove(ticker.overrunCounter);
+    }
+
+    public Map<String, Ticker> getTickers() {
+        return tickers;
+    }
+
+    public long getPeriodNanos() {
+        return TimeUnit.SECONDS.toNanos(1) / config.getRate();
+    }
+
+    @Override
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "game-tick-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        int threads = config.getThreads() > 0 ? config.getThreads() : Runtime.getRuntime().availableProcessors();
+        scheduler = Executors.newScheduledThreadPool(threads, threadFactory);
+        log.info("【GameTickEngine】启动，tick 频率 {} Hz，线程数 {}", config.getRate(), threads);
+        tickers.values().forEach(Ticker::wake);
+    }
+
+    @Override
+    public void stop() {
+        ScheduledExecutorService current = scheduler;
+        scheduler = null;
+        if (current == null) {
+            return;
+        }
+        tickers.values().forEach(Ticker::suspend);
+        current.shutdown();
+        try {
+            if (!current.awaitTermination(1, TimeUnit.SECONDS)) {
+                current.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            current.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        log.info("【GameTickEngine】已停止");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+
+    /**
+     * 一个 tick 任务的调度句柄
+     */
+    public final class Ticker {
+        private final String name;
+        private final Runnable task;
+        private final BooleanSupplier isIdle;
+        private final TickStats stats = new TickStats();
+        private final Timer durationTimer;
+        private final Timer lagTimer;
+        private final Counter overrunCounter;
+        private ScheduledFuture<?> future;
+        /**
+         * 本轮调度的起始时间及已执行的 tick 数，用于计算调度延迟
+         */
+        private long startNanos;
+        private long ticks;
+        private long lastOverrunLogNanos;
+
+        private Ticker(String name, Runnable task, BooleanSupplier isIdle) {
+            this.name = name;
+            this.task = task;
+            this.isIdle = isIdle;
+            this.durationTimer = Timer.builder("game.tick.duration")
+                    .tag("task", name)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.lagTimer = Timer.builder("game.tick.lag")
+                    .tag("task", name)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            this.overrunCounter = Counter.builder("game.tick.overruns")
+                    .tag("task", name)
+                    .register(meterRegistry);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public TickStats getStats() {
+            return stats;
+        }
+
+        /**
+         * 恢复调度（已在调度中时无操作），可在任意线程调用
+         */
+        public synchronized void wake() {
+            ScheduledExecutorService current = scheduler;
+            if (current == null || (future != null && !future.isDone())) {
+                return;
+            }
+            long period = getPeriodNanos();
+            startNanos = System.nanoTime() + period;
+            ticks = 0;
+            future = current.scheduleAtFixedRate(this::runTick, period, period, TimeUnit.NANOSECONDS);
+        }
+
+        private synchronized void suspend() {
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+        }
+
+        private void runTick() {
+            long period = getPeriodNanos();
+            long begin = System.nanoTime();
+            long lag = begin - (startNanos + ticks * period);
+            ticks++;
+            try {
+                if (isIdle.getAsBoolean()) {
+                    suspendIfStillIdle();
+                    return;
+                }
+                task.run();
+            } catch (Exception e) {
+                // 异常不能抛出，否则 scheduleAtFixedRate 会终止后续调度
+                log.error("【GameTickEngine】tick 任务 {} 出错", name, e);
+            }
+            long duration = System.nanoTime() - begin;
+            boolean overrun = duration > period;
+            stats.record(duration, Math.max(lag, 0), overrun);
+            durationTimer.record(duration, TimeUnit.NANOSECONDS);
+            lagTimer.record(Math.max(lag, 0), TimeUnit.NANOSECONDS);
+            if (overrun) {
+                overrunCounter.increment();
+            }
+            if (overrun && begin - lastOverrunLogNanos > OVERRUN_LOG_INTERVAL_NANOS) {
+                lastOverrunLogNanos = begin;
+                log.warn("【GameTickEngine】tick 任务 {} 超时: 耗时 {} ms，周期 {} ms，累计超时 {} 次",
+                        name, TimeUnit.NANOSECONDS.toMillis(duration), TimeUnit.NANOSECONDS.toMillis(period),
+                        stats.getOverruns());
+            }
+        }
+
+        /**
+         * 在锁内再次确认空闲后暂停，避免与 {@link #wake()} 竞争导致新玩家加入后不再调度
+         */
+        private synchronized void suspendIfStillIdle() {
+            if (isIdle.getAsBoolean()) {
+                suspend();
+            }
+        }
+    }
+}
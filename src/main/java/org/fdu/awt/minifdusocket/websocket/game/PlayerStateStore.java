@@ -0,0 +1,285 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static org.fdu.awt.minifdusocket.websocket.game.UserData.FIELD_COUNT;
+
+/**
+ * 房间内所有玩家同步数据的列式存储 <br/>
+ * 每个玩家占用一个槽位（slot），各字段分列存放在基本类型数组中（struct of arrays），{@link UserData} 只是访问槽位的句柄：
+ * <ul>
+ *     <li>最新数据：按固定大小的分段存放，分段创建后不再移动。socket 线程（二进制位置上报）和 tick 线程（local_update）
+ *     都可能写入，每个槽位一个 seqlock 序号，写入期间为奇数，写者之间通过 CAS 互斥</li>
+ *     <li>快照：只由 tick 线程读写的连续数组。{@link #capture} 不加锁地从最新数据复制，复制前后序号不一致时重试，
+ *     因此快照中不会出现撕裂的数据（新的 x、旧的 z）</li>
+ * </ul>
+ * 离开房间的玩家的槽位在下一次 capture 时才回收，正在进行的 tick 中的句柄不会读到新玩家的数据。
+ */
+public class PlayerStateStore {
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final VarHandle SEQ = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * 最新数据的分段，只会追加，发布新数组前分段已创建完毕
+     */
+    private volatile Segment[] segments = new Segment[0];
+    /**
+     * 当前玩家，加入/离开时整体替换（写时复制）
+     */
+    private volatile UserData[] members = new UserData[0];
+    private volatile boolean releasePending;
+
+    // 以下字段由 this 保护
+    private int highWater;
+    private int[] free = new int[16];
+    private int freeCount;
+    private int[] released = new int[16];
+    private int releasedCount;
+
+    // 以下字段为快照，只在 tick 线程中使用
+    private final String[][] capturedStrings = new String[FIELD_COUNT][];
+    private final double[][] capturedDoubles = new double[FIELD_COUNT][];
+    /**
+     * 按槽位连续存放各字段的版本号（slot * FIELD_COUNT + field），计算变化掩码时只访问一段连续内存
+     */
+    private long[] capturedVersions = new long[0];
+    private int capacity;
+
+    /**
+     * 为玩家分配槽位
+     */
+    public synchronized UserData add(Long userId) {
+        int slot = freeCount > 0 ? free[--freeCount] : highWater++;
+        Segment[] current = segments;
+        int index = slot >>> SEGMENT_BITS;
+        if (index >= current.length) {
+            current = Arrays.copyOf(current, index + 1);
+            current[index] = new Segment();
+            segments = current;
+        }
+        // 回收的槽位在回收时已清空
+        UserData userData = new UserData(userId, this, slot);
+        UserData[] next = Arrays.copyOf(members, members.length + 1);
+        next[next.length - 1] = userData;
+        members = next;
+        return userData;
+    }
+
+    /**
+     * 玩家离开，槽位在下一次 capture 时回收
+     */
+    public synchronized void remove(UserData userData) {
+        UserData[] current = members;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == userData) {
+                UserData[] next = new UserData[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                members = next;
+                if (releasedCount == released.length) {
+                    released = Arrays.copyOf(released, releasedCount * 2);
+                }
+                released[releasedCount++] = userData.slot;
+                releasePending = true;
+                return;
+            }
+        }
+    }
+
+    public int size() {
+        return members.length;
+    }
+
+    /**
+     * 将所有玩家的最新数据复制到快照，只在 tick 线程中调用
+     *
+     * @param seq 本 tick 的快照序号，记录在句柄上（见 {@link UserData#isCaptured}）
+     * @return 本次 capture 的玩家，tick 期间加入的玩家不在其中
+     */
+    UserData[] capture(long seq) {
+        if (releasePending) {
+            recycle();
+        }
+        UserData[] current = members;
+        // 在 members 之后读取，已包含 current 中所有槽位所在的分段
+        Segment[] segs = segments;
+        ensureCapacity(segs.length * SEGMENT_SIZE);
+        for (UserData userData : current) {
+            captureSlot(segs, userData.slot);
+            userData.capturedSeq = seq;
+        }
+        return current;
+    }
+
+    /**
+     * 清空并回收上一个 tick 之前离开的玩家的槽位
+     */
+    private synchronized void recycle() {
+        Segment[] segs = segments;
+        for (int r = 0; r < releasedCount; r++) {
+            int slot = released[r];
+            Segment segment = segs[slot >>> SEGMENT_BITS];
+            int i = slot & SEGMENT_MASK;
+            long stamp = segment.lock(i);
+            segment.clear(i);
+            segment.unlock(i, stamp);
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = slot;
+        }
+        releasedCount = 0;
+        releasePending = false;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= capacity) {
+            return;
+        }
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (UserData.isString(field)) {
+                capturedStrings[field] = Arrays.copyOf(capturedStrings[field] != null ? capturedStrings[field] : new String[0], required);
+            } else {
+                capturedDoubles[field] = Arrays.copyOf(capturedDoubles[field] != null ? capturedDoubles[field] : new double[0], required);
+            }
+        }
+        capturedVersions = Arrays.copyOf(capturedVersions, required * FIELD_COUNT);
+        capacity = required;
+    }
+
+    private void captureSlot(Segment[] segs, int slot) {
+        Segment segment = segs[slot >>> SEGMENT_BITS];
+        int i = slot & SEGMENT_MASK;
+        while (true) {
+            long stamp = (long) SEQ.getAcquire(segment.seq, i);
+            if ((stamp & 1) == 0) {
+                for (int field = 0; field < FIELD_COUNT; field++) {
+                    if (UserData.isString(field)) {
+                        capturedStrings[field][slot] = segment.strings[field][i];
+                    } else {
+                        capturedDoubles[field][slot] = segment.doubles[field][i];
+                    }
+                }
+                System.arraycopy(segment.versions, i * FIELD_COUNT, capturedVersions, slot * FIELD_COUNT, FIELD_COUNT);
+                VarHandle.loadLoadFence();
+                if ((long) SEQ.getOpaque(segment.seq, i) == stamp) {
+                    return;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // 写入最新数据，可在任意线程调用，必须在 beginWrite/endWrite 之间
+
+    /**
+     * 开始写入槽位，与其他写者互斥（写入只是少量赋值，自旋等待即可）
+     *
+     * @return 传给 {@link #endWrite} 的序号
+     */
+    long beginWrite(int slot) {
+        return segments[slot >>> SEGMENT_BITS].lock(slot & SEGMENT_MASK);
+    }
+
+    void endWrite(int slot, long stamp) {
+        segments[slot >>> SEGMENT_BITS].unlock(slot & SEGMENT_MASK, stamp);
+    }
+
+    void setString(int slot, int field, String value, long version) {
+        Segment segment = segments[slot >>> SEGMENT_BITS];
+        int i = slot & SEGMENT_MASK;
+        String[] column = segment.strings[field];
+        if (!Objects.equals(column[i], value)) {
+            column[i] = value;
+            segment.versions[i * FIELD_COUNT + field] = version;
+        }
+    }
+
+    void setDouble(int slot, int field, double value, long version) {
+        Segment segment = segments[slot >>> SEGMENT_BITS];
+        int i = slot & SEGMENT_MASK;
+        double[] column = segment.doubles[field];
+        if (Double.compare(column[i], value) != 0) {
+            column[i] = value;
+            segment.versions[i * FIELD_COUNT + field] = version;
+        }
+    }
+
+    // 读取快照，只在 tick 线程中调用
+
+    String capturedString(int slot, int field) {
+        return capturedStrings[field][slot];
+    }
+
+    double capturedDouble(int slot, int field) {
+        return capturedDoubles[field][slot];
+    }
+
+    long capturedVersion(int slot, int field) {
+        return capturedVersions[slot * FIELD_COUNT + field];
+    }
+
+    /**
+     * 快照中自 baseline 之后发生变化的字段
+     */
+    int changedMaskSince(int slot, long baseline) {
+        int mask = 0;
+        int base = slot * FIELD_COUNT;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (capturedVersions[base + field] > baseline) {
+                mask |= UserData.bit(field);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 一段连续槽位的最新数据
+     */
+    private static final class Segment {
+        private final long[] seq = new long[SEGMENT_SIZE];
+        private final String[][] strings = new String[FIELD_COUNT][];
+        private final double[][] doubles = new double[FIELD_COUNT][];
+        private final long[] versions = new long[SEGMENT_SIZE * FIELD_COUNT];
+
+        Segment() {
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                if (UserData.isString(field)) {
+                    strings[field] = new String[SEGMENT_SIZE];
+                } else {
+                    doubles[field] = new double[SEGMENT_SIZE];
+                }
+            }
+        }
+
+        long lock(int i) {
+            while (true) {
+                long stamp = (long) SEQ.getVolatile(seq, i);
+                if ((stamp & 1) == 0 && SEQ.compareAndSet(seq, i, stamp, stamp + 1)) {
+                    return stamp + 1;
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        void unlock(int i, long stamp) {
+            SEQ.setRelease(seq, i, stamp + 1);
+        }
+
+        void clear(int i) {
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                if (strings[field] != null) {
+                    strings[field][i] = null;
+                } else {
+                    doubles[field][i] = 0;
+                }
+            }
+            Arrays.fill(versions, i * FIELD_COUNT, (i + 1) * FIELD_COUNT, 0);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import org.fdu.awt.minifdusocket.websocket.support.JsonByteWriter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个客户端的增量同步状态 <br/>
+ * 记录客户端最后确认（ack）的快照序号以及客户端当前已知的玩家集合，
+ * 每个 tick 只下发相对于已确认快照发生变化的字段：
+ * <ul>
+ *     <li>enter: 新进入视野的玩家，下发完整数据（包括 username/model/colour 等静态字段）</li>
+ *     <li>update: 已知玩家中发生变化的字段</li>
+ *     <li>leave: 离开视野的玩家 id</li>
+ * </ul>
+ * 每隔 keyframeInterval 个 tick，或客户端确认落后太多时，下发一次完整的关键帧（与旧协议相同的 remoteData 格式）用于重新同步。 <br/>
+ * 远处玩家的 update 按 {@link UpdateRate} 降频，因此每个已知玩家单独记录最后一次下发的快照序号，
+ * 其变化以该序号和已确认序号中较小的一个为基线，跳过的 tick 中发生的变化不会丢失。 <br/>
+ * 除 {@link #ack(long)}、{@link #resync()} 外，所有方法只能在 tick 线程中调用。
+ */
+public class PlayerView {
+    private static final byte[] DELTA_HEAD = JsonByteWriter.ascii("{\"type\":\"remoteDelta\",\"seq\":");
+    private static final byte[] TIME = JsonByteWriter.ascii(",\"t\":");
+    private static final byte[] BASE = JsonByteWriter.ascii(",\"base\":");
+    private static final byte[] ENTER = JsonByteWriter.ascii(",\"enter\":[");
+    private static final byte[] UPDATE = JsonByteWriter.ascii("],\"update\":[");
+    private static final byte[] LEAVE = JsonByteWriter.ascii("],\"leave\":[");
+    private static final byte[] ARRAY_OBJECT_END = JsonByteWriter.ascii("]}");
+    private static final byte[] KEYFRAME_HEAD = JsonByteWriter.ascii("{\"type\":\"remoteData\",\"seq\":");
+    private static final byte[] KEYFRAME_DATA = JsonByteWriter.ascii(",\"keyframe\":true,\"data\":[");
+
+    private final int keyframeInterval;
+    private final int maxAckLag;
+
+    private final AtomicLong ackedSeq = new AtomicLong();
+    private long lastKeyframeSeq;
+    private final AtomicBoolean keyframePending = new AtomicBoolean(true);
+    /**
+     * key: 客户端当前已知的玩家 id，value: 最后一次下发该玩家数据（或确认其没有变化）的快照序号
+     */
+    private Map<Long, Long> known = new HashMap<>();
+    private Map<Long, Long> spare = new HashMap<>();
+
+    public PlayerView(int keyframeInterval, int maxAckLag) {
+        this.keyframeInterval = keyframeInterval;
+        this.maxAckLag = maxAckLag;
+    }
+
+    /**
+     * 客户端确认已收到 seq 及之前的快照，可在任意线程调用
+     */
+    public void ack(long seq) {
+        ackedSeq.getAndAccumulate(seq, Math::max);
+    }
+
+    /**
+     * 已发出的增量在发送前被丢弃（见 {@link org.fdu.awt.minifdusocket.websocket.support.OutboundQueue}），
+     * 客户端的已知集合不再可信，下一个 tick 改发关键帧，可在任意线程调用
+     */
+    public void resync() {
+        keyframePending.set(true);
+    }
+
+    /**
+     * 生成本 tick 要发给该客户端的消息，写入 {@link GameSnapshotWriter#message()}
+     *
+     * @param visible 本 tick 该客户端可见的玩家（已 capture）
+     * @param writer  本 tick 的序列化器
+     * @param rate    本 tick 下发哪些玩家的变化（已对该客户端调用 {@link UpdateRate#begin}）
+     * @return 是否生成了消息，没有任何变化时返回 false
+     */
+    public boolean writeMessage(List<UserData> visible, GameSnapshotWriter writer, UpdateRate rate) {
+        long seq = writer.seq();
+        long baseline = ackedSeq.get();
+        // 在生成关键帧前清除标记，生成期间到达的 resync 留到下一个 tick
+        boolean resyncing = keyframePending.compareAndSet(true, false);
+        if (resyncing || seq - lastKeyframeSeq >= keyframeInterval || seq - baseline > maxAckLag) {
+            writeKeyframe(visible, writer);
+            return true;
+        }
+
+        JsonByteWriter out = writer.startMessage();
+        out.raw(DELTA_HEAD).writeLong(seq).raw(TIME).writeLong(writer.time()).raw(BASE).writeLong(baseline).raw(ENTER);
+        Long current = seq;
+        int count = 0;
+        Map<Long, Long> next = spare;
+        next.clear();
+        for (UserData userData : visible) {
+            Long lastSent = known.get(userData.getUserId());
+            if (lastSent == null) {
+                if (count++ > 0) {
+                    out.raw((byte) ',');
+                }
+                writer.writeFull(userData, out);
+                lastSent = current;
+            }
+            next.put(userData.getUserId(), lastSent);
+        }
+        out.raw(UPDATE);
+        int updates = 0;
+        for (UserData userData : visible) {
+            Long lastSent = known.get(userData.getUserId());
+            if (lastSent == null || !rate.isDue(userData)) {
+                continue;
+            }
+            next.put(userData.getUserId(), current);
+            int mask = userData.changedMaskSince(Math.min(baseline, lastSent));
+            if (mask != 0) {
+                if (updates++ > 0) {
+                    out.raw((byte) ',');
+                }
+                userData.writeJson(mask, out);
+            }
+        }
+        count += updates;
+        out.raw(LEAVE);
+        int leaves = 0;
+        for (Long userId : known.keySet()) {
+            if (!next.containsKey(userId)) {
+                if (leaves++ > 0) {
+                    out.raw((byte) ',');
+                }
+                out.writeLong(userId);
+            }
+        }
+        count += leaves;
+        out.raw(ARRAY_OBJECT_END);
+        spare = known;
+        known = next;
+        return count > 0;
+    }
+
+    private void writeKeyframe(List<UserData> visible, GameSnapshotWriter writer) {
+        long seq = writer.seq();
+        Long current = seq;
+        known.clear();
+        for (UserData userData : visible) {
+            known.put(userData.getUserId(), current);
+        }
+        lastKeyframeSeq = seq;
+        // 关键帧本身即为新的基线，避免从不 ack 的客户端持续收到关键帧
+        ack(seq);
+        JsonByteWriter out = writer.startMessage();
+        out.raw(KEYFRAME_HEAD).writeLong(seq).raw(TIME).writeLong(writer.time()).raw(KEYFRAME_DATA);
+        writer.writeFullArray(visible, out);
+        out.raw(ARRAY_OBJECT_END);
+    }
+}
@@ -0,0 +1,116 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 均匀网格空间索引（x/z 平面） <br/>
+ * 每个 tick 先 {@link #clear()} 再逐个 {@link #insert}，之后用 {@link #query} 查询半径范围内的对象。 <br/>
+ * 单元格列表在 tick 之间复用，避免每个 tick 重新分配；非线程安全，只能在 tick 线程中使用。
+ *
+ * @param <T> 存放的对象类型
+ */
+public class SpatialGrid<T> {
+    private final double cellSize;
+    /**
+     * key: 单元格坐标 (cx, cz) 打包成的 long，value: 该单元格内的对象
+     */
+    private final Map<Long, Cell<T>> cells = new HashMap<>();
+
+    public SpatialGrid(double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * 清空所有单元格（保留单元格对象以便复用），长时间为空的单元格会被移除
+     */
+    public void clear() {
+        cells.values().removeIf(cell -> {
+            boolean unused = cell.items.isEmpty();
+            cell.clear();
+            return unused;
+        });
+    }
+
+    public void insert(double x, double z, T item) {
+        long key = cellKey(cellCoord(x), cellCoord(z));
+        cells.computeIfAbsent(key, k -> new Cell<>()).add(x, z, item);
+    }
+
+    /**
+     * 查询以 (x, z) 为圆心、radius 为半径范围内的所有对象（包括边界）
+     */
+    public void query(double x, double z, double radius, Consumer<T> consumer) {
+        double radiusSq = radius * radius;
+        int minCx = cellCoord(x - radius);
+        int maxCx = cellCoord(x + radius);
+        int minCz = cellCoord(z - radius);
+        int maxCz = cellCoord(z + radius);
+        // 范围覆盖的单元格比已有的单元格还多时（半径很大或坐标极端），直接遍历已有的单元格
+        double span = ((double) maxCx - minCx + 1) * ((double) maxCz - minCz + 1);
+        if (span > cells.size()) {
+            for (Cell<T> cell : cells.values()) {
+                collect(cell, x, z, radiusSq, consumer);
+            }
+            return;
+        }
+        // long 计数，maxCx 为 Integer.MAX_VALUE 时不会溢出
+        for (long cx = minCx; cx <= maxCx; cx++) {
+            for (long cz = minCz; cz <= maxCz; cz++) {
+                Cell<T> cell = cells.get(cellKey((int) cx, (int) cz));
+                if (cell != null) {
+                    collect(cell, x, z, radiusSq, consumer);
+                }
+            }
+        }
+    }
+
+    private static <T> void collect(Cell<T> cell, double x, double z, double radiusSq, Consumer<T> consumer) {
+        for (int i = 0, n = cell.items.size(); i < n; i++) {
+            double dx = cell.xs[i] - x;
+            double dz = cell.zs[i] - z;
+            if (dx * dx + dz * dz <= radiusSq) {
+                consumer.accept(cell.items.get(i));
+            }
+        }
+    }
+
+    /**
+     * 超出 int 范围的坐标截断到 Integer.MIN_VALUE/MAX_VALUE，NaN 视为 0
+     */
+    private int cellCoord(double v) {
+        return (int) Math.floor(v / cellSize);
+    }
+
+    private static long cellKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    private static final class Cell<T> {
+        private final List<T> items = new ArrayList<>();
+        private double[] xs = new double[4];
+        private double[] zs = new double[4];
+
+        void add(double x, double z, T item) {
+            int i = items.size();
+            if (i == xs.length) {
+                xs = Arrays.copyOf(xs, i * 2);
+                zs = Arrays.copyOf(zs, i * 2);
+            }
+            xs[i] = x;
+            zs[i] = z;
+            items.add(item);
+        }
+
+        void clear() {
+            items.clear();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import org.fdu.awt.minifdusocket.websocket.support.JsonByteWriter;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 字符串到小整数 id 的映射，用于二进制协议中的 model/action 字段，每个房间一个 <br/>
+ * id 从 1 开始分配，0 表示 null 或未知；最多 maxSize 个，分配后不再回收，随房间关闭释放。
+ * 只有客户端通过 local_update 上报的字符串才会分配 id（{@link #register}），每个玩家最多新增 maxPerPlayer 个（见 {@link GamePlayer}），
+ * 超出的字符串被丢弃。客户端只接收自己尚未收到的映射（{@link #writeSince}）。 <br/>
+ * 新增字符串很少发生，采用写时复制，查询无锁。
+ */
+public class SymbolDictionary {
+    public static final int NONE = 0;
+    /**
+     * 协议中 id 为 u16，0xFFFF 表示动作不变
+     */
+    public static final int MAX_ID = 0xFFFE;
+
+    private final int maxSize;
+    private final int maxPerPlayer;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    /**
+     * 下标即 id，下标 0 为 null；数组长度减一即为版本号
+     */
+    private volatile String[] symbols = {null};
+
+    public SymbolDictionary(int maxSize, int maxPerPlayer) {
+        this.maxSize = Math.min(maxSize, MAX_ID);
+        this.maxPerPlayer = maxPerPlayer;
+    }
+
+    /**
+     * @return 已分配的 id，null 或尚未分配 id 的字符串返回 {@link #NONE}
+     */
+    public int idOf(String symbol) {
+        if (symbol == null) {
+            return NONE;
+        }
+        Integer id = ids.get(symbol);
+        return id != null ? id : NONE;
+    }
+
+    /**
+     * 为字符串分配 id，已分配时返回原有的 id
+     *
+     * @return 映射表已满时返回 {@link #NONE}
+     */
+    public synchronized int register(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        String[] current = symbols;
+        if (current.length > maxSize) {
+            return NONE;
+        }
+        String[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = symbol;
+        ids.put(symbol, current.length);
+        symbols = next;
+        return current.length;
+    }
+
+    /**
+     * @return id 对应的字符串，未知 id 返回 null
+     */
+    public String symbolOf(int id) {
+        String[] current = symbols;
+        return id > 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * 每新增一个字符串版本号加一，即最大的 id；客户端已收到某个版本时，只需下发之后新增的映射
+     */
+    public int version() {
+        return symbols.length - 1;
+    }
+
+    /**
+     * 每个玩家最多新增的字符串数
+     */
+    public int getMaxPerPlayer() {
+        return maxPerPlayer;
+    }
+
+    /**
+     * 写入版本 version 之后新增的映射：{"run":3,"jump":4}
+     *
+     * @return 写入的映射对应的版本号
+     */
+    public int writeSince(int version, JsonByteWriter out) {
+        String[] current = symbols;
+        out.raw((byte) '{');
+        for (int id = version + 1; id < current.length; id++) {
+            if (id > version + 1) {
+                out.raw((byte) ',');
+            }
+            out.writeString(current[id]).raw((byte) ':').writeLong(id);
+        }
+        out.raw((byte) '}');
+        return current.length - 1;
+    }
+}
@@ -0,0 +1,68 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * tick 任务的耗时统计 <br/>
+ * 只由 tick 线程写入，其它线程可随时读取（单写者，volatile 即可）。
+ */
+public class TickStats {
+    private volatile long ticks;
+    private volatile long overruns;
+    private volatile long lastDurationNanos;
+    private volatile long maxDurationNanos;
+    private volatile long totalDurationNanos;
+    private volatile long lastLagNanos;
+    private volatile long maxLagNanos;
+
+    void record(long durationNanos, long lagNanos, boolean overrun) {
+        ticks++;
+        if (overrun) {
+            overruns++;
+        }
+        lastDurationNanos = durationNanos;
+        totalDurationNanos += durationNanos;
+        if (durationNanos > maxDurationNanos) {
+            maxDurationNanos = durationNanos;
+        }
+        lastLagNanos = lagNanos;
+        if (lagNanos > maxLagNanos) {
+            maxLagNanos = lagNanos;
+        }
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * 耗时超过一个周期的 tick 数
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getLastDurationNanos() {
+        return lastDurationNanos;
+    }
+
+    public long getMaxDurationNanos() {
+        return maxDurationNanos;
+    }
+
+    public double getAverageDurationMillis() {
+        long count = ticks;
+        return count == 0 ? 0 : (double) totalDurationNanos / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 实际开始时间相对于计划开始时间的延迟
+     */
+    public long getLastLagNanos() {
+        return lastLagNanos;
+    }
+
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+}
@@ -0,0 +1,54 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+/**
+ * 按距离决定本 tick 是否向某个客户端下发其他玩家的变化 <br/>
+ * 以观察者为中心 nearRadius 以内的玩家每个 tick 都下发；更远的玩家每 farInterval 个 tick 下发一次，
+ * 不同玩家按 userId 错开，避免集中在同一个 tick。 <br/>
+ * 每个观察者先调用 {@link #begin}，非线程安全，只能在 tick 线程中使用。
+ */
+public class UpdateRate {
+    private final double nearRadiusSq;
+    private final int farInterval;
+    private double x;
+    private double z;
+    private long seq;
+
+    public UpdateRate(double nearRadius, int farInterval) {
+        this.nearRadiusSq = nearRadius * nearRadius;
+        this.farInterval = Math.max(1, farInterval);
+    }
+
+    /**
+     * 每个 tick 都下发，不降频
+     */
+    public static UpdateRate everyTick() {
+        return new UpdateRate(0, 1);
+    }
+
+    /**
+     * 开始处理一个观察者
+     *
+     * @param self 观察者（已 capture）
+     * @param seq  本 tick 的快照序号
+     */
+    public void begin(UserData self, long seq) {
+        this.x = self.getX();
+        this.z = self.getZ();
+        this.seq = seq;
+    }
+
+    /**
+     * 本 tick 是否下发 other 的变化
+     */
+    public boolean isDue(UserData other) {
+        if (farInterval == 1) {
+            return true;
+        }
+        double dx = other.getX() - x;
+        double dz = other.getZ() - z;
+        if (dx * dx + dz * dz <= nearRadiusSq) {
+            return true;
+        }
+        return Math.floorMod(seq + other.getUserId(), farInterval) == 0;
+    }
+}
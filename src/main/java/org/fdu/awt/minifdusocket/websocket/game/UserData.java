@@ -0,0 +1,251 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import com.alibaba.fastjson2.JSONObject;
+import org.fdu.awt.minifdusocket.websocket.support.JsonByteWriter;
+
+/**
+ * 玩家同步数据，数据本身存放在所在房间的 {@link PlayerStateStore} 中，本对象只是访问某个槽位的句柄 <br/>
+ * socket 线程或 tick 线程通过 {@link #updateUserData}、{@link #updatePose} 写入最新数据；tick 线程每个 tick
+ * 先由 {@link PlayerStateStore#capture} 复制一次快照，之后所有 getter 读取的都是这份快照，保证同一 tick 内所有玩家看到的是同一份、不撕裂的数据。 <br/>
+ * 每个字段都记录了最后一次发生变化时的快照序号（version），用于增量同步。
+ */
+public class UserData {
+    public static final int USERNAME = 0;
+    public static final int MODEL = 1;
+    public static final int COLOUR = 2;
+    public static final int X = 3;
+    public static final int Y = 4;
+    public static final int Z = 5;
+    public static final int H = 6;
+    public static final int PB = 7;
+    public static final int ACTION = 8;
+    public static final int FIELD_COUNT = 9;
+
+    /**
+     * 只在加入时发送一次的静态字段
+     */
+    public static final int STATIC_MASK = bit(USERNAME) | bit(MODEL) | bit(COLOUR);
+    public static final int ALL_MASK = (1 << FIELD_COUNT) - 1;
+    private static final int STRING_MASK = STATIC_MASK | bit(ACTION);
+    /**
+     * 坐标（x/y/z）绝对值的上限，超出或为非有限值（NaN、Infinity）的上报整条丢弃，
+     * 避免空间索引的单元格坐标溢出
+     */
+    public static final double MAX_COORDINATE = 1_000_000;
+
+    private static final String[] FIELD_NAMES = {"username", "model", "colour", "x", "y", "z", "h", "pb", "action"};
+    /**
+     * 预先编码的 {@code ,"name":} 片段
+     */
+    private static final byte[][] FIELD_PREFIXES = new byte[FIELD_COUNT][];
+    private static final byte[] USER_ID_PREFIX = JsonByteWriter.ascii("{\"userId\":");
+
+    static {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            FIELD_PREFIXES[field] = JsonByteWriter.ascii(",\"" + FIELD_NAMES[field] + "\":");
+        }
+    }
+
+    private final Long userId;
+    private final PlayerStateStore store;
+    final int slot;
+    /**
+     * 最近一次 capture 的快照序号，只在 tick 线程中使用
+     */
+    long capturedSeq = -1;
+    /**
+     * 本 tick 完整数据在 {@link GameSnapshotWriter} 片段缓冲区中的位置，只在 tick 线程中使用
+     */
+    long fragmentSeq = -1;
+    int fragmentOffset;
+    int fragmentLength;
+
+    UserData(Long userId, PlayerStateStore store, int slot) {
+        this.userId = userId;
+        this.store = store;
+        this.slot = slot;
+    }
+
+    public static int bit(int field) {
+        return 1 << field;
+    }
+
+    public static String fieldName(int field) {
+        return FIELD_NAMES[field];
+    }
+
+    static boolean isString(int field) {
+        return (STRING_MASK & bit(field)) != 0;
+    }
+
+    /**
+     * 数值字段的取值是否合法：必须是有限值，坐标不能超出 {@link #MAX_COORDINATE}
+     */
+    static boolean isValid(int field, double value) {
+        if (!Double.isFinite(value)) {
+            return false;
+        }
+        return field < X || field > Z || Math.abs(value) <= MAX_COORDINATE;
+    }
+
+    /**
+     * 使用 jsonObject 更新 userData，只有值真正变化的字段才会更新版本号
+     *
+     * @param jsonObject 客户端上报的数据
+     * @param version    本次修改所属的快照序号
+     * @return 数值不合法（见 {@link #isValid}）时不做任何修改并返回 false
+     */
+    public boolean updateUserData(JSONObject jsonObject, long version) {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            String name = FIELD_NAMES[field];
+            if (!isString(field) && jsonObject.containsKey(name) && !isValid(field, jsonObject.getDoubleValue(name))) {
+                return false;
+            }
+        }
+        long stamp = store.beginWrite(slot);
+        try {
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                String name = FIELD_NAMES[field];
+                if (!jsonObject.containsKey(name)) {
+                    continue;
+                }
+                if (isString(field)) {
+                    store.setString(slot, field, jsonObject.getString(name), version);
+                } else {
+                    store.setDouble(slot, field, jsonObject.getDoubleValue(name), version);
+                }
+            }
+        } finally {
+            store.endWrite(slot, stamp);
+        }
+        return true;
+    }
+
+    /**
+     * 使用二进制协议上报的位置信息更新 userData
+     *
+     * @param action        新的动作
+     * @param actionPresent 是否更新动作
+     * @param version       本次修改所属的快照序号
+     * @return 数值不合法（见 {@link #isValid}）时不做任何修改并返回 false
+     */
+    public boolean updatePose(double x, double y, double z, double h, double pb,
+                              String action, boolean actionPresent, long version) {
+        if (!isValid(X, x) || !isValid(Y, y) || !isValid(Z, z) || !isValid(H, h) || !isValid(PB, pb)) {
+            return false;
+        }
+        long stamp = store.beginWrite(slot);
+        try {
+            store.setDouble(slot, X, x, version);
+            store.setDouble(slot, Y, y, version);
+            store.setDouble(slot, Z, z, version);
+            store.setDouble(slot, H, h, version);
+            store.setDouble(slot, PB, pb, version);
+            if (actionPresent) {
+                store.setString(slot, ACTION, action, version);
+            }
+        } finally {
+            store.endWrite(slot, stamp);
+        }
+        return true;
+    }
+
+    /**
+     * 是否已包含在序号为 seq 的快照中（tick 开始后才加入的玩家要到下一个 tick 才有快照）
+     */
+    public boolean isCaptured(long seq) {
+        return capturedSeq == seq;
+    }
+
+    /**
+     * 快照中自 baseline 之后发生变化的字段
+     *
+     * @param baseline 客户端已确认的快照序号
+     * @return 字段位掩码
+     */
+    public int changedMaskSince(long baseline) {
+        return store.changedMaskSince(slot, baseline);
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return store.capturedString(slot, USERNAME);
+    }
+
+    public String getModel() {
+        return store.capturedString(slot, MODEL);
+    }
+
+    public String getColour() {
+        return store.capturedString(slot, COLOUR);
+    }
+
+    public double getX() {
+        return store.capturedDouble(slot, X);
+    }
+
+    public double getY() {
+        return store.capturedDouble(slot, Y);
+    }
+
+    public double getZ() {
+        return store.capturedDouble(slot, Z);
+    }
+
+    public double getH() {
+        return store.capturedDouble(slot, H);
+    }
+
+    public double getPb() {
+        return store.capturedDouble(slot, PB);
+    }
+
+    public String getAction() {
+        return store.capturedString(slot, ACTION);
+    }
+
+    public JSONObject toJsonObject() {
+        return toJsonObject(ALL_MASK);
+    }
+
+    /**
+     * 只包含 mask 中字段（以及 userId）的 json
+     */
+    public JSONObject toJsonObject(int mask) {
+        JSONObject userJson = new JSONObject();
+        userJson.put("userId", userId);
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if ((mask & bit(field)) == 0) {
+                continue;
+            }
+            if (isString(field)) {
+                userJson.put(FIELD_NAMES[field], store.capturedString(slot, field));
+            } else {
+                userJson.put(FIELD_NAMES[field], store.capturedDouble(slot, field));
+            }
+        }
+        return userJson;
+    }
+
+    /**
+     * 将快照中 mask 包含的字段（以及 userId）直接写为 json 字节
+     */
+    public void writeJson(int mask, JsonByteWriter out) {
+        out.raw(USER_ID_PREFIX).writeLong(userId);
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if ((mask & bit(field)) == 0) {
+                continue;
+            }
+            out.raw(FIELD_PREFIXES[field]);
+            if (isString(field)) {
+                out.writeString(store.capturedString(slot, field));
+            } else {
+                out.writeDouble(store.capturedDouble(slot, field));
+            }
+        }
+        out.raw((byte) '}');
+    }
+}
@@ -0,0 +1,55 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 直接内存 ByteBuffer 池 <br/>
+ * 按 2 的幂划分容量等级（1KB ~ 1MB），超过最大等级的请求直接分配堆内存且不回收。
+ * 每个等级最多缓存 maxPooledPerClass 个缓冲区，多余的交给 GC。
+ */
+public final class ByteBufferPool {
+    private static final int MIN_SHIFT = 10;
+    private static final int MAX_SHIFT = 20;
+
+    private final ArrayBlockingQueue<ByteBuffer>[] classes;
+
+    @SuppressWarnings("unchecked")
+    public ByteBufferPool(int maxPooledPerClass) {
+        classes = new ArrayBlockingQueue[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new ArrayBlockingQueue<>(maxPooledPerClass);
+        }
+    }
+
+    /**
+     * 获取一个容量至少为 capacity 的缓冲区，position 为 0，limit 为 capacity
+     */
+    public ByteBuffer acquire(int capacity) {
+        int index = classIndex(capacity);
+        if (index < 0) {
+            return ByteBuffer.allocate(capacity);
+        }
+        ByteBuffer buffer = classes[index].poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(1 << (index + MIN_SHIFT));
+        }
+        buffer.clear().limit(capacity);
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+        int index = Integer.numberOfTrailingZeros(buffer.capacity()) - MIN_SHIFT;
+        if (index >= 0 && index < classes.length) {
+            classes[index].offer(buffer);
+        }
+    }
+
+    private static int classIndex(int capacity) {
+        int shift = Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(capacity - 1, 1)));
+        return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+    }
+}
@@ -0,0 +1,172 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import com.alibaba.fastjson2.util.RyuDouble;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 直接输出 UTF-8 字节的 JSON 写入器 <br/>
+ * 内部字节数组在 {@link #reset()} 后复用，写入数字、字符串时不产生中间对象，用于每个 tick 都要执行的序列化热路径。
+ * 数值格式与 fastjson2 保持一致。 <br/>
+ * 只负责写入，逗号、冒号等结构由调用方控制；非线程安全。
+ */
+public final class JsonByteWriter {
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    private byte[] buf;
+    private int size;
+
+    public JsonByteWriter(int initialCapacity) {
+        this.buf = new byte[Math.max(initialCapacity, 64)];
+    }
+
+    /**
+     * 预先编码常量片段，如 {@code "{\"type\":\"remoteData\",\"data\":["}
+     */
+    public static byte[] ascii(String constant) {
+        return constant.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 内部数组，有效数据为 [0, size)
+     */
+    public byte[] array() {
+        return buf;
+    }
+
+    public JsonByteWriter raw(byte b) {
+        ensure(1);
+        buf[size++] = b;
+        return this;
+    }
+
+    public JsonByteWriter raw(byte[] bytes) {
+        return raw(bytes, 0, bytes.length);
+    }
+
+    public JsonByteWriter raw(byte[] src, int offset, int length) {
+        ensure(length);
+        System.arraycopy(src, offset, buf, size, length);
+        size += length;
+        return this;
+    }
+
+    public JsonByteWriter writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            return raw(ascii(Long.toString(value)));
+        }
+        ensure(20);
+        if (value < 0) {
+            buf[size++] = '-';
+            value = -value;
+        }
+        int start = size;
+        do {
+            buf[size++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        // 反转数字
+        for (int i = start, j = size - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+        return this;
+    }
+
+    public JsonByteWriter writeDouble(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return raw(NULL);
+        }
+        ensure(24);
+        size += RyuDouble.toString(value, buf, size);
+        return this;
+    }
+
+    public JsonByteWriter writeString(String value) {
+        if (value == null) {
+            return raw(NULL);
+        }
+        // 最坏情况：每个字符转义为 \\uXXXX
+        ensure(value.length() * 6 + 2);
+        buf[size++] = '"';
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buf[size++] = '\\';
+                buf[size++] = (byte) c;
+            } else if (c < 0x20) {
+                writeControl(c);
+            } else if (c < 0x80) {
+                buf[size++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[size++] = (byte) (0xC0 | (c >> 6));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buf[size++] = (byte) (0xF0 | (cp >> 18));
+                buf[size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[size++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理字符，与 String#getBytes 一致替换为 '?'
+                buf[size++] = '?';
+            } else {
+                buf[size++] = (byte) (0xE0 | (c >> 12));
+                buf[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        buf[size++] = '"';
+        return this;
+    }
+
+    private void writeControl(char c) {
+        buf[size++] = '\\';
+        switch (c) {
+            case '\b' -> buf[size++] = 'b';
+            case '\f' -> buf[size++] = 'f';
+            case '\n' -> buf[size++] = 'n';
+            case '\r' -> buf[size++] = 'r';
+            case '\t' -> buf[size++] = 't';
+            default -> {
+                buf[size++] = 'u';
+                buf[size++] = '0';
+                buf[size++] = '0';
+                buf[size++] = HEX[c >> 4];
+                buf[size++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    /**
+     * 以字符串形式返回已写入的内容，用于只发送给单个文本会话的消息
+     */
+    public String toUtf8String() {
+        return new String(buf, 0, size, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 将已写入的内容复制到 target（从其当前 position 开始）
+     */
+    public void copyTo(ByteBuffer target) {
+        target.put(buf, 0, size);
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import java.util.Arrays;
+
+/**
+ * 信令消息的路由头 <br/>
+ * 只扫描顶层对象的 type、fromId、toId 字段，其余字段的值跳过不解析，forwardData 只记录原文的位置，
+ * 转发时原样拼接，省去 SDP、ICE 等大段内容的解析和重新序列化。 <br/>
+ * 遇到不认识的写法（如字段名或 type 中含转义字符、id 不是整数）时返回 null，由调用方退回完整解析。
+ */
+public final class JsonEnvelope {
+    private final String json;
+    private String type;
+    private Long fromId;
+    private Long toId;
+    private int forwardDataStart = -1;
+    private int forwardDataEnd = -1;
+
+    private int pos;
+
+    private JsonEnvelope(String json) {
+        this.json = json;
+    }
+
+    /**
+     * @return 不是可识别的 JSON 对象时返回 null
+     */
+    public static JsonEnvelope scan(String json) {
+        if (json == null) {
+            return null;
+        }
+        JsonEnvelope envelope = new JsonEnvelope(json);
+        return envelope.scanObject() ? envelope : null;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Long getFromId() {
+        return fromId;
+    }
+
+    public Long getToId() {
+        return toId;
+    }
+
+    /**
+     * forwardData 的原文
+     *
+     * @return 没有该字段时返回 null
+     */
+    public String getForwardData() {
+        return forwardDataStart < 0 ? null : json.substring(forwardDataStart, forwardDataEnd);
+    }
+
+    /**
+     * 把 forwardData 的原文追加到 builder，不创建中间字符串
+     */
+    public StringBuilder appendForwardData(StringBuilder builder) {
+        return builder.append(json, forwardDataStart, forwardDataEnd);
+    }
+
+    /**
+     * forwardData 原文的长度，没有该字段时返回 0
+     */
+    public int getForwardDataLength() {
+        return forwardDataEnd - forwardDataStart;
+    }
+
+    public boolean hasForwardData() {
+        return forwardDataStart >= 0;
+    }
+
+    private boolean scanObject() {
+        skipWhitespace();
+        if (!consume('{')) {
+            return false;
+        }
+        skipWhitespace();
+        if (consume('}')) {
+            return trailingWhitespaceOnly();
+        }
+        while (true) {
+            String key = readSimpleString();
+            if (key == null) {
+                return false;
+            }
+            skipWhitespace();
+            if (!consume(':')) {
+                return false;
+            }
+            skipWhitespace();
+            int start = pos;
+            switch (key) {
+                case "type":
+                    type = readSimpleString();
+                    if (type == null) {
+                        return false;
+                    }
+                    break;
+                case "fromId":
+                    fromId = readLong();
+                    if (fromId == null) {
+                        return false;
+                    }
+                    break;
+                case "toId":
+                    toId = readLong();
+                    if (toId == null) {
+                        return false;
+                    }
+                    break;
+                default:
+                    if (!skipValue()) {
+                        return false;
+                    }
+                    if (key.equals("forwardData")) {
+                        forwardDataStart = start;
+                        forwardDataEnd = pos;
+                    }
+                    break;
+            }
+            skipWhitespace();
+            if (consume(',')) {
+                skipWhitespace();
+                continue;
+            }
+            return consume('}') && trailingWhitespaceOnly();
+        }
+    }
+
+    /**
+     * 读取不含转义字符的字符串
+     */
+    private String readSimpleString() {
+        if (!consume('"')) {
+            return null;
+        }
+        int start = pos;
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                return json.substring(start, pos++);
+            }
+            if (c == '\\') {
+                return null;
+            }
+            pos++;
+        }
+        return null;
+    }
+
+    /**
+     * 读取整数，与 fastjson2 一样接受字符串形式的数字；null 视为无法识别
+     */
+    private Long readLong() {
+        boolean quoted = consume('"');
+        int start = pos;
+        if (pos < json.length() && json.charAt(pos) == '-') {
+            pos++;
+        }
+        int digitsStart = pos;
+        while (pos < json.length() && json.charAt(pos) >= '0' && json.charAt(pos) <= '9') {
+            pos++;
+        }
+        // 最多 18 位，不会溢出
+        if (pos == digitsStart || pos - digitsStart > 18) {
+            return null;
+        }
+        long value = Long.parseLong(json, start, pos, 10);
+        if (quoted && !consume('"')) {
+            return null;
+        }
+        return value;
+    }
+
+    private boolean skipValue() {
+        if (pos >= json.length()) {
+            return false;
+        }
+        char c = json.charAt(pos);
+        if (c == '"') {
+            return skipString();
+        }
+        if (c == '{' || c == '[') {
+            return skipContainer();
+        }
+        // 数字、true、false、null
+        int start = pos;
+        while (pos < json.length()) {
+            char ch = json.charAt(pos);
+            if (ch == ',' || ch == '}' || ch == ']' || Character.isWhitespace(ch)) {
+                break;
+            }
+            pos++;
+        }
+        return pos > start;
+    }
+
+    private boolean skipString() {
+        pos++;
+        while (pos < json.length()) {
+            char c = json.charAt(pos++);
+            if (c == '\\') {
+                pos++;
+            } else if (c == '"') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按括号跳过对象或数组，只检查括号是否匹配（字符串中的括号不计），不校验内部语法
+     */
+    private boolean skipContainer() {
+        char[] closers = new char[16];
+        int depth = 0;
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                if (!skipString()) {
+                    return false;
+                }
+                continue;
+            }
+            if (c == '{' || c == '[') {
+                if (depth == closers.length) {
+                    closers = Arrays.copyOf(closers, depth * 2);
+                }
+                closers[depth++] = c == '{' ? '}' : ']';
+            } else if (c == '}' || c == ']') {
+                if (closers[--depth] != c) {
+                    return false;
+                }
+                if (depth == 0) {
+                    pos++;
+                    return true;
+                }
+            }
+            pos++;
+        }
+        return false;
+    }
+
+    private boolean consume(char expected) {
+        if (pos < json.length() && json.charAt(pos) == expected) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean trailingWhitespaceOnly() {
+        skipWhitespace();
+        return pos == json.length();
+    }
+}
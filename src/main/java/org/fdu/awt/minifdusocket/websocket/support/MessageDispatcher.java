@@ -0,0 +1,125 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.config.WebSocketProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket 消息处理的线程调度 <br/>
+ * 根据 {@code websocket.dispatch.mode} 决定 @OnMessage 的处理在哪里执行：
+ * <ul>
+ *     <li>container：直接在容器 I/O 线程中执行（原有行为）</li>
+ *     <li>platform：有界线程池，队列满时退回容器线程执行</li>
+ *     <li>virtual：每个任务一个虚拟线程（Java 21），阻塞的数据库调用不占用平台线程；运行在 Java 17 上时退回 platform</li>
+ * </ul>
+ * 每个会话通过 {@link #newSerialExecutor()} 获得自己的 {@link SerialExecutor}，同一会话的消息仍按顺序处理。
+ * 定时任务（如邀请超时）通过 {@link #schedule} 到期后提交到会话的执行器中执行。
+ */
+@Slf4j
+@Component
+public class MessageDispatcher {
+    private final String mode;
+    /**
+     * container 模式下为 null
+     */
+    private final ExecutorService executor;
+    /**
+     * 只负责到期后提交任务，不执行任务本身
+     */
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ws-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public MessageDispatcher(WebSocketProperties properties) {
+        WebSocketProperties.Dispatch config = properties.getDispatch();
+        String requested = config.getMode();
+        ExecutorService created = null;
+        if (WebSocketProperties.Dispatch.MODE_VIRTUAL.equals(requested)) {
+            created = newVirtualThreadExecutor();
+            if (created == null) {
+                log.warn("【MessageDispatcher】当前 Java 版本不支持虚拟线程，使用 platform 模式");
+                requested = WebSocketProperties.Dispatch.MODE_PLATFORM;
+            }
+        }
+        if (WebSocketProperties.Dispatch.MODE_PLATFORM.equals(requested)) {
+            created = newPlatformExecutor(config);
+        } else if (!WebSocketProperties.Dispatch.MODE_VIRTUAL.equals(requested)) {
+            requested = WebSocketProperties.Dispatch.MODE_CONTAINER;
+        }
+        this.mode = requested;
+        this.executor = created;
+        log.info("【MessageDispatcher】消息处理模式: {}", mode);
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * 为一个会话创建按顺序执行的执行器
+     */
+    public SerialExecutor newSerialExecutor() {
+        return new SerialExecutor(executor != null ? executor : Runnable::run);
+    }
+
+    /**
+     * delayMillis 毫秒后在 target 中执行 task
+     */
+    public ScheduledFuture<?> schedule(SerialExecutor target, Runnable task, long delayMillis) {
+        return timer.schedule(() -> target.execute(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService newPlatformExecutor(WebSocketProperties.Dispatch config) {
+        int threads = config.getThreads() > 0 ? config.getThreads() : Runtime.getRuntime().availableProcessors() * 4;
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(config.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ws-dispatch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 通过反射创建，编译目标仍为 Java 17
+     *
+     * @return 不支持虚拟线程时返回 null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import lombok.extern.slf4j.Slf4j;
+import org.fdu.awt.minifdusocket.config.WebSocketProperties;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个会话的有界发送队列 <br/>
+ * 同一时刻只有一条消息在发送中（异步发送完成后再发下一条），因此不会再出现 TEXT_FULL_WRITING 之类的并发写错误；
+ * 积压的消息数、字节数均有上限，每个连接占用的内存有界：
+ * <ul>
+ *     <li>普通消息按顺序排队，超过上限，或队首消息、待发送的快照（从第一次排队算起，被替换不重新计时）、发送中的消息
+ *     等待超过 maxLagMillis 时判定为慢客户端，断开连接；只接收快照、发送一直不完成的客户端同样会被断开</li>
+ *     <li>字节数按 UTF-8 编码后的长度计算</li>
+ *     <li>快照消息（{@link #offerLatest}）只保留最新的一条，尚未发送的旧快照直接丢弃，并回调 onDropped</li>
+ *     <li>带 onDropped 的普通消息（{@link #offer(String, Runnable)}）因队列关闭、断开或发送失败而没有送达时回调，
+ *     可用于转存离线消息</li>
+ * </ul>
+ * 普通消息总是先于待发送的快照发送。
+ */
+@Slf4j
+public class OutboundQueue {
+    private final Session session;
+    private final WebSocketProperties.Outbound config;
+    /**
+     * 用于关闭慢客户端连接，关闭操作可能阻塞，不能在调用方线程中执行
+     */
+    private final Executor closeExecutor;
+    private final OutboundStats stats;
+
+    // 以下字段由 this 保护
+    private final ArrayDeque<Message> queue = new ArrayDeque<>();
+    private Message latest;
+    /**
+     * latest 从空变为非空的时间，被新快照替换时不变
+     */
+    private long latestSinceNanos;
+    /**
+     * 发送中的消息开始发送的时间
+     */
+    private long sendingSinceNanos;
+    private long queuedBytes;
+    /**
+     * 积压的消息数，包括发送中的一条，与 queuedBytes 一致
+     */
+    private int pendingMessages;
+    private boolean sending;
+    private boolean closed;
+    /**
+     * 正在同步调用 send 的线程，用于识别在调用线程内同步完成的回调，避免递归
+     */
+    private Thread pumpingThread;
+    private boolean completedInline;
+
+    // 统计，仅供观察
+    private volatile long sentMessages;
+    private volatile long droppedSnapshots; // 在锁内更新
+    private volatile long failedMessages;
+
+    public OutboundQueue(Session session, WebSocketProperties.Outbound config, Executor closeExecutor, OutboundStats stats) {
+        this.session = session;
+        this.config = config;
+        this.closeExecutor = closeExecutor;
+        this.stats = stats;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * 排队发送文本消息
+     *
+     * @return 是否成功入队（队列已关闭或客户端过慢被断开时返回 false）
+     */
+    public boolean offer(String text) {
+        return offer(text, null);
+    }
+
+    /**
+     * 排队发送文本消息
+     *
+     * @param onDropped 消息没有送达（队列已关闭、客户端过慢被断开、发送失败）时回调一次，可以在任意线程中执行
+     * @return 是否成功入队，返回 false 时 onDropped 已回调
+     */
+    public boolean offer(String text, Runnable onDropped) {
+        return enqueue(new Message(text, null, false, utf8Length(text), onDropped), false);
+    }
+
+    /**
+     * 排队发送共享帧，入队时持有一个引用，发送完成或丢弃时释放
+     *
+     * @param binary 是否以二进制帧发送
+     */
+    public boolean offer(SharedFrame frame, boolean binary) {
+        frame.retain();
+        return enqueue(new Message(null, frame, binary, frame.length(), null), false);
+    }
+
+    /**
+     * 排队发送快照，替换尚未发送的旧快照
+     *
+     * @param onDropped 快照在发送前被新快照替换（或队列关闭、发送失败）时回调，可用于触发重新同步
+     */
+    public boolean offerLatest(SharedFrame frame, boolean binary, Runnable onDropped) {
+        frame.retain();
+        return enqueue(new Message(null, frame, binary, frame.length(), onDropped), true);
+    }
+
+    /**
+     * 排队发送文本快照，替换尚未发送的旧快照
+     */
+    public boolean offerLatest(String text, Runnable onDropped) {
+        return enqueue(new Message(text, null, false, utf8Length(text), onDropped), true);
+    }
+
+    /**
+     * 当前积压的消息数（包括待发送的快照）
+     */
+    public synchronized int size() {
+        return queue.size() + (latest != null ? 1 : 0);
+    }
+
+    public synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    public long getSentMessages() {
+        return sentMessages;
+    }
+
+    public long getDroppedSnapshots() {
+        return droppedSnapshots;
+    }
+
+    public long getFailedMessages() {
+        return failedMessages;
+    }
+
+    /**
+     * 关闭队列并丢弃所有未发送的消息（回调其 onDropped），会话关闭时调用
+     */
+    public void close() {
+        Message dropped;
+        List<Message> discarded;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            dropped = latest;
+            latest = null;
+            discarded = new ArrayList<>(queue);
+            queue.clear();
+            stats.queued(-pendingMessages, -queuedBytes);
+            queuedBytes = 0;
+            pendingMessages = 0;
+        }
+        // 回调在锁外执行
+        discarded.forEach(Message::drop);
+        if (dropped != null) {
+            dropped.drop();
+        }
+    }
+
+    private boolean enqueue(Message message, boolean coalesce) {
+        Message dropped = null;
+        boolean slow = false;
+        boolean rejected = false;
+        synchronized (this) {
+            if (closed) {
+                rejected = true;
+            } else {
+                if (coalesce) {
+                    dropped = latest;
+                    latest = message;
+                    if (dropped == null) {
+                        latestSinceNanos = message.enqueuedAt;
+                    } else {
+                        droppedSnapshots++;
+                    }
+                } else {
+                    queue.addLast(message);
+                }
+                long delta = message.length;
+                if (dropped != null) {
+                    delta -= dropped.length;
+                } else {
+                    pendingMessages++;
+                }
+                queuedBytes += delta;
+                stats.queued(dropped != null ? 0 : 1, delta);
+                slow = isSlow();
+            }
+        }
+        if (rejected) {
+            message.drop();
+            return false;
+        }
+        if (dropped != null) {
+            stats.droppedSnapshot();
+            dropped.drop();
+        }
+        if (slow) {
+            evict();
+            return false;
+        }
+        pump();
+        return true;
+    }
+
+    /**
+     * 超过积压上限，或队首消息、待发送的快照、发送中的消息等待过久
+     */
+    private boolean isSlow() {
+        if (queue.size() > config.getMaxMessages() || queuedBytes > config.getMaxBytes()) {
+            return true;
+        }
+        long now = System.nanoTime();
+        long maxLag = TimeUnit.MILLISECONDS.toNanos(config.getMaxLagMillis());
+        Message head = queue.peekFirst();
+        return (head != null && now - head.enqueuedAt > maxLag)
+                || (latest != null && now - latestSinceNanos > maxLag)
+                || (sending && now - sendingSinceNanos > maxLag);
+    }
+
+    /**
+     * UTF-8 编码后的字节数，不实际编码
+     */
+    static int utf8Length(String text) {
+        int length = text.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x800) {
+                // 代理对两个 char 共 4 字节，其余 3 字节
+                bytes += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+    private void evict() {
+        log.warn("【OutboundQueue】会话 {} 发送积压过多（{} 条，{} 字节），断开连接",
+                session.getId(), size(), getQueuedBytes());
+        stats.evicted();
+        disconnect(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "slow consumer"));
+    }
+
+    /**
+     * 丢弃未发送的消息并关闭会话，关闭操作在单独的线程中执行，不阻塞调用方
+     */
+    public void disconnect(CloseReason reason) {
+        close();
+        closeExecutor.execute(() -> {
+            try {
+                session.close(reason);
+            } catch (IOException e) {
+                log.error("【OutboundQueue】关闭会话 {} 出错", session.getId(), e);
+            }
+        });
+    }
+
+    /**
+     * 如果当前没有发送中的消息，则发送下一条；在调用线程内同步完成的发送以循环代替递归
+     */
+    private void pump() {
+        while (true) {
+            Message next;
+            synchronized (this) {
+                if (sending || closed) {
+                    return;
+                }
+                next = queue.pollFirst();
+                if (next == null) {
+                    next = latest;
+                    latest = null;
+                }
+                if (next == null) {
+                    return;
+                }
+                sending = true;
+                sendingSinceNanos = System.nanoTime();
+                pumpingThread = Thread.currentThread();
+                completedInline = false;
+            }
+            Message message = next;
+            try {
+                if (message.text != null) {
+                    session.getAsyncRemote().sendText(message.text, result -> onComplete(message, result));
+                } else if (message.binary) {
+                    session.getAsyncRemote().sendBinary(message.frame.view(), result -> onComplete(message, result));
+                } else {
+                    session.getAsyncRemote().sendText(message.frame.text(), result -> onComplete(message, result));
+                }
+            } catch (RuntimeException e) {
+                onComplete(message, new SendResult(e));
+            }
+            synchronized (this) {
+                pumpingThread = null;
+                if (!completedInline) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void onComplete(Message message, SendResult result) {
+        if (result.isOK()) {
+            message.release();
+            sentMessages++;
+            stats.sent(message.length);
+        } else {
+            message.drop();
+            failedMessages++;
+            stats.failed();
+            if (session.isOpen()) {
+                log.error("【OutboundQueue】会话 {} 发送消息出错: {}", session.getId(),
+                        result.getException() != null ? result.getException().getMessage() : "unknown");
+            } else {
+                // 对方已断开，其余消息不再尝试发送
+                close();
+            }
+        }
+        synchronized (this) {
+            sending = false;
+            if (!closed) {
+                queuedBytes -= message.length;
+                pendingMessages--;
+                stats.queued(-1, -message.length);
+            }
+            if (pumpingThread == Thread.currentThread()) {
+                completedInline = true;
+                return;
+            }
+        }
+        pump();
+    }
+
+    private static final class Message {
+        private final String text;
+        private final SharedFrame frame;
+        private final boolean binary;
+        private final int length;
+        private final Runnable onDropped;
+        private final long enqueuedAt = System.nanoTime();
+
+        private Message(String text, SharedFrame frame, boolean binary, int length, Runnable onDropped) {
+            this.text = text;
+            this.frame = frame;
+            this.binary = binary;
+            this.length = length;
+            this.onDropped = onDropped;
+        }
+
+        void release() {
+            if (frame != null) {
+                frame.release();
+            }
+        }
+
+        void drop() {
+            release();
+            if (onDropped != null) {
+                onDropped.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.Session;
+import org.fdu.awt.minifdusocket.config.WebSocketProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 为每个会话创建 {@link OutboundQueue}，会话关闭时释放 <br/>
+ * 会话关闭后容器不再允许访问其 userProperties，而关闭处理排在会话的消息之后执行（此时会话已关闭），
+ * 因此队列按会话保存在这里。
+ */
+@Component
+public class OutboundQueues {
+    private final WebSocketProperties.Outbound config;
+    private final OutboundStats stats = new OutboundStats();
+    private final Map<Session, OutboundQueue> queues = new ConcurrentHashMap<>();
+    /**
+     * 关闭慢客户端及被替换的旧连接的线程池，关闭时需要等待进行中的发送，不能占用 tick 线程或容器线程；
+     * 多个线程并行关闭，一个卡住的连接不会拖住其余连接的关闭，空闲时线程退出
+     */
+    private final ExecutorService closeExecutor;
+
+    @Autowired
+    public OutboundQueues(WebSocketProperties properties) {
+        this.config = properties.getOutbound();
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, config.getCloseThreads());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "ws-close-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.closeExecutor = executor;
+    }
+
+    /**
+     * 获取会话的发送队列，不存在时创建；会话已关闭时返回一个已关闭的队列，发送的消息直接丢弃
+     */
+    public OutboundQueue of(Session session) {
+        OutboundQueue queue = queues.get(session);
+        if (queue != null) {
+            return queue;
+        }
+        queue = new OutboundQueue(session, config, closeExecutor, stats);
+        if (!session.isOpen()) {
+            queue.close();
+            return queue;
+        }
+        OutboundQueue existing = queues.putIfAbsent(session, queue);
+        if (existing != null) {
+            return existing;
+        }
+        // 与 close 竞争时，保证关闭后登记的队列也会被释放
+        if (!session.isOpen()) {
+            close(session);
+        }
+        return queue;
+    }
+
+    /**
+     * 所有会话的汇总统计
+     */
+    public OutboundStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 会话关闭时调用，释放尚未发送的消息
+     */
+    public void close(Session session) {
+        OutboundQueue queue = queues.remove(session);
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closeExecutor.shutdownNow();
+    }
+}
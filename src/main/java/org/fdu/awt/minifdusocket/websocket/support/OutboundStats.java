@@ -0,0 +1,76 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 所有会话发送队列的汇总统计，由 {@link OutboundQueues} 创建并传给每个 {@link OutboundQueue} <br/>
+ * 长度（bytes）对文本消息按字符数计。
+ */
+public class OutboundStats {
+    private final LongAdder sentMessages = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder failedMessages = new LongAdder();
+    private final LongAdder droppedSnapshots = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    /**
+     * 当前积压（包括发送中）的消息数及长度
+     */
+    private final AtomicLong queuedMessages = new AtomicLong();
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    void sent(int length) {
+        sentMessages.increment();
+        sentBytes.add(length);
+    }
+
+    void failed() {
+        failedMessages.increment();
+    }
+
+    void droppedSnapshot() {
+        droppedSnapshots.increment();
+    }
+
+    void evicted() {
+        evictions.increment();
+    }
+
+    void queued(long messages, long bytes) {
+        if (messages != 0) {
+            queuedMessages.addAndGet(messages);
+        }
+        queuedBytes.addAndGet(bytes);
+    }
+
+    public long getSentMessages() {
+        return sentMessages.sum();
+    }
+
+    public long getSentBytes() {
+        return sentBytes.sum();
+    }
+
+    public long getFailedMessages() {
+        return failedMessages.sum();
+    }
+
+    public long getDroppedSnapshots() {
+        return droppedSnapshots.sum();
+    }
+
+    /**
+     * 因发送过慢被断开的会话数
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getQueuedMessages() {
+        return queuedMessages.get();
+    }
+
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+}
@@ -0,0 +1,73 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * 按提交顺序逐个执行任务的执行器，实际运行在共享的 delegate 上 <br/>
+ * 每个会话一个，保证同一会话的消息按顺序处理，不同会话之间并行。
+ * 每次最多连续执行 {@link #BATCH} 个任务后重新提交，避免一个繁忙的会话长期占用线程。
+ */
+@Slf4j
+public final class SerialExecutor implements Executor {
+    private static final int BATCH = 16;
+
+    private final Executor delegate;
+    // 以下字段由 this 保护
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private boolean scheduled;
+
+    public SerialExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (this) {
+            tasks.addLast(task);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        try {
+            delegate.execute(this::drain);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                scheduled = false;
+            }
+            throw e;
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < BATCH; i++) {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.pollFirst();
+                if (task == null) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.error("【SerialExecutor】任务执行出错", e);
+            }
+        }
+        synchronized (this) {
+            if (tasks.isEmpty()) {
+                scheduled = false;
+                return;
+            }
+        }
+        schedule();
+    }
+}
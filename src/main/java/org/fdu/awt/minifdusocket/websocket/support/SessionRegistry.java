@@ -0,0 +1,88 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import jakarta.websocket.CloseReason;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按 id 索引的在线连接表，各端点共用 <br/>
+ * 连接、断开只修改 {@link ConcurrentHashMap} 中的一项，不像 CopyOnWriteArraySet 那样每次复制整个数组，
+ * 大量用户同时重连时也不会退化为 O(N²)。 <br/>
+ * 广播使用 {@link #snapshot()}：有变化后第一次调用时复制一次，之后直接复用，遍历期间不受并发连接/断开影响。 <br/>
+ * 同一 id 重复连接时新连接替换旧连接，{@link #register} 返回被替换的旧连接，由调用方关闭；
+ * 旧连接随后断开时 {@link #unregister} 只删除它自己，不会误删新连接。
+ *
+ * @param <K> 连接的 id，如 userId
+ * @param <V> 连接（端点实例、玩家等）
+ */
+public class SessionRegistry<K, V> {
+    /**
+     * 关闭被同一用户的新连接替换的旧连接
+     */
+    public static final CloseReason REPLACED = new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "replaced by a new connection");
+
+    private final ConcurrentHashMap<K, V> index = new ConcurrentHashMap<>();
+    /**
+     * 每次修改后递增，用于判断快照是否过期
+     */
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot<V> snapshot = new Snapshot<>(0, Collections.emptyList());
+
+    /**
+     * 登记连接
+     *
+     * @return 被替换的同一 id 的旧连接，没有时返回 null
+     */
+    public V register(K key, V value) {
+        V previous = index.put(key, value);
+        version.incrementAndGet();
+        return previous;
+    }
+
+    /**
+     * 注销连接，只有当前登记的仍是 value 时才删除
+     *
+     * @return 是否删除（false 表示已被新连接替换或已注销）
+     */
+    public boolean unregister(K key, V value) {
+        if (index.remove(key, value)) {
+            version.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public V get(K key) {
+        return index.get(key);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    /**
+     * 当前所有连接（只读），没有变化时多次调用返回同一个列表
+     */
+    public List<V> snapshot() {
+        Snapshot<V> current = snapshot;
+        // 在复制之前读取版本号：复制期间发生的修改会使下一次调用重新复制
+        long latest = version.get();
+        if (current.version == latest) {
+            return current.values;
+        }
+        List<V> values = Collections.unmodifiableList(new ArrayList<>(index.values()));
+        snapshot = new Snapshot<>(latest, values);
+        return values;
+    }
+
+    private record Snapshot<V>(long version, List<V> values) {
+    }
+}
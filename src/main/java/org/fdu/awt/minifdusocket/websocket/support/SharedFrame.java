@@ -0,0 +1,94 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 只编码一次、发送给多个会话的消息帧 <br/>
+ * UTF-8 编码后的内容存放在（池化的）ByteBuffer 中：
+ * <ul>
+ *     <li>使用二进制帧的会话直接拿到只读视图，不再逐个会话编码</li>
+ *     <li>使用文本帧的会话共享同一个解码后的 String（Jakarta WebSocket 的文本帧只接受 String）</li>
+ * </ul>
+ * 通过引用计数管理缓冲区：创建者持有一个引用，每个排队中的发送（见 {@link OutboundQueue}）持有一个引用，全部释放后归还到池中。
+ */
+@Slf4j
+public final class SharedFrame {
+    private final ByteBuffer payload;
+    private final ByteBufferPool pool;
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+    private volatile String text;
+
+    private SharedFrame(ByteBuffer payload, ByteBufferPool pool, String text) {
+        this.payload = payload;
+        this.pool = pool;
+        this.text = text;
+    }
+
+    /**
+     * 复制 writer 中的内容到池化缓冲区
+     */
+    public static SharedFrame copyOf(JsonByteWriter writer, ByteBufferPool pool) {
+        ByteBuffer buffer = pool.acquire(writer.size());
+        writer.copyTo(buffer);
+        buffer.flip();
+        return new SharedFrame(buffer, pool, null);
+    }
+
+    /**
+     * 包装一个从 pool 中获取、已经写好内容（flip 之后）的缓冲区
+     */
+    public static SharedFrame wrap(ByteBuffer pooled, ByteBufferPool pool) {
+        return new SharedFrame(pooled, pool, null);
+    }
+
+    /**
+     * 包装一个已有的文本消息（不池化）
+     */
+    public static SharedFrame of(String text) {
+        return new SharedFrame(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), null, text);
+    }
+
+    public int length() {
+        return payload.remaining();
+    }
+
+    /**
+     * 文本形式，第一次调用时解码，之后所有会话共享
+     */
+    public String text() {
+        String t = text;
+        if (t == null) {
+            t = StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+            text = t;
+        }
+        return t;
+    }
+
+    /**
+     * 增加一个引用，每个排队中的发送持有一个引用，发送完成或丢弃后 {@link #release()}
+     */
+    public SharedFrame retain() {
+        refCnt.incrementAndGet();
+        return this;
+    }
+
+    /**
+     * 二进制只读视图，调用方需持有引用直到使用完毕
+     */
+    public ByteBuffer view() {
+        return payload.asReadOnlyBuffer();
+    }
+
+    public void release() {
+        int remaining = refCnt.decrementAndGet();
+        if (remaining == 0 && pool != null) {
+            pool.release(payload);
+        } else if (remaining < 0) {
+            log.error("【SharedFrame】重复释放");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限流 <br/>
+ * 以固定速率补充令牌，最多积累 burst 个，每条消息消耗一个；
+ * 非线程安全，用于同一会话的消息回调（容器对同一会话依次回调）。
+ */
+public class TokenBucket {
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @param burst            桶容量，初始时是满的
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(burst, 1);
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * @return 是否取得令牌，取不到时消息应被丢弃
+     */
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+}
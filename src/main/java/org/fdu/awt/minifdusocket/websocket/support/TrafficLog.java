@@ -0,0 +1,162 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import org.fdu.awt.minifdusocket.config.WebSocketProperties;
+import org.fdu.awt.minifdusocket.metrics.WebSocketMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * WebSocket 收发消息的流量日志 <br/>
+ * 写入独立的 logger {@code websocket.traffic}（logback-spring.xml 中配置为异步输出，队列满时丢弃），
+ * 以键值对（dir、channel、user、type、bytes）记录每条消息：
+ * <ul>
+ *     <li>按通道采样，见 {@code websocket.traffic-log.sample-rate.*}</li>
+ *     <li>消息内容截断到 maxPayloadChars，并隐藏 redactFields 中字段的值</li>
+ *     <li>logger 未启用或未被采样时直接返回，不做任何字符串处理</li>
+ * </ul>
+ * 每条消息都计入 {@link WebSocketMetrics} 的 websocket.messages，不受采样影响。
+ */
+@Component
+public class TrafficLog {
+    public static final String LOGGER_NAME = "websocket.traffic";
+
+    public static final String IN = "in";
+    public static final String OUT = "out";
+    /**
+     * 转发到其他节点
+     */
+    public static final String FORWARD = "forward";
+
+    private static final Logger log = LoggerFactory.getLogger(LOGGER_NAME);
+
+    private final WebSocketProperties.TrafficLog config;
+    private final WebSocketMetrics metrics;
+
+    @Autowired
+    public TrafficLog(WebSocketProperties properties, WebSocketMetrics metrics) {
+        this.config = properties.getTrafficLog();
+        this.metrics = metrics;
+    }
+
+    /**
+     * 记录一条消息
+     *
+     * @param dir     {@link #IN} / {@link #OUT} / {@link #FORWARD}
+     * @param channel 通道，用于采样
+     * @param userId  收到消息时为发送者，发送时为接收者
+     * @param type    消息类型，未知时为 null
+     */
+    public void record(String dir, String channel, Long userId, String type, String payload) {
+        metrics.message(channel, dir, type);
+        if (!log.isInfoEnabled() || !sampled(channel)) {
+            return;
+        }
+        log.atInfo()
+                .addKeyValue("dir", dir)
+                .addKeyValue("channel", channel)
+                .addKeyValue("user", userId)
+                .addKeyValue("type", type)
+                .addKeyValue("bytes", payload == null ? 0 : payload.length())
+                .log(abbreviate(payload));
+    }
+
+    private boolean sampled(String channel) {
+        double rate = config.getSampleRate().getOrDefault(channel, config.getDefaultSampleRate());
+        return rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * 截断并隐藏敏感字段，也用于错误日志中的消息内容
+     */
+    public String abbreviate(String payload) {
+        return abbreviate(payload, config.getRedactFields(), config.getMaxPayloadChars());
+    }
+
+    static String abbreviate(String payload, List<String> redactFields, int maxChars) {
+        if (payload == null) {
+            return null;
+        }
+        // 先截断，处理量与消息大小无关
+        if (payload.length() <= maxChars) {
+            return redact(payload, redactFields);
+        }
+        return redact(payload.substring(0, maxChars), redactFields) + "...(" + payload.length() + " chars)";
+    }
+
+    /**
+     * 把 {@code "field":"value"} 中的 value 替换为 ***，不解析整条消息
+     */
+    private static String redact(String payload, List<String> fields) {
+        StringBuilder builder = null;
+        int copied = 0;
+        int i = payload.indexOf('"');
+        while (i >= 0) {
+            int keyEnd = endOfString(payload, i);
+            if (keyEnd < 0) {
+                break;
+            }
+            int valueStart = skipColon(payload, keyEnd);
+            if (valueStart < 0) {
+                // 不是字符串值的字段名，或者本身就是字符串值
+                i = payload.indexOf('"', keyEnd);
+                continue;
+            }
+            // 没有结束引号（如消息已被截断）时隐藏到末尾
+            int valueEnd = endOfString(payload, valueStart);
+            if (fields.contains(payload.substring(i + 1, keyEnd - 1))) {
+                if (builder == null) {
+                    builder = new StringBuilder(payload.length());
+                }
+                builder.append(payload, copied, valueStart + 1).append("***");
+                copied = valueEnd < 0 ? payload.length() : valueEnd - 1;
+            }
+            if (valueEnd < 0) {
+                break;
+            }
+            i = payload.indexOf('"', valueEnd);
+        }
+        if (builder == null) {
+            return payload;
+        }
+        return builder.append(payload, copied, payload.length()).toString();
+    }
+
+    /**
+     * @return 冒号后字符串值的起始引号位置，不是 {@code :"} 形式时返回 -1
+     */
+    private static int skipColon(String payload, int from) {
+        int i = from;
+        while (i < payload.length() && Character.isWhitespace(payload.charAt(i))) {
+            i++;
+        }
+        if (i >= payload.length() || payload.charAt(i) != ':') {
+            return -1;
+        }
+        i++;
+        while (i < payload.length() && Character.isWhitespace(payload.charAt(i))) {
+            i++;
+        }
+        return i < payload.length() && payload.charAt(i) == '"' ? i : -1;
+    }
+
+    /**
+     * @return 字符串结束引号之后的位置，没有结束引号时返回 -1
+     */
+    private static int endOfString(String payload, int quote) {
+        int i = quote + 1;
+        while (i < payload.length()) {
+            char c = payload.charAt(i++);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -6,11 +6,51 @@ CREATE TABLE `history_message`
     `id` INT NOT NULL AUTO_INCREMENT,
     `local_id` INT NOT NULL,
     `remote_id` INT NOT NULL,
-    `content` VARCHAR(255) NOT NULL,
+    `content` VARCHAR(2000) NOT NULL,
     `time_stamp` TIMESTAMP NOT NULL,
     `type` VARCHAR(255) NOT NULL,
+    `conversation_key` VARCHAR(64) NOT NULL,
+    PRIMARY KEY (`id`),
+    KEY `idx_conversation_time` (`conversation_key`, `time_stamp`, `id`)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
+
+DROP TABLE IF EXISTS `chat_group`;
+CREATE TABLE `chat_group`
+(
+    `id` INT NOT NULL AUTO_INCREMENT,
+    `name` VARCHAR(64) NOT NULL,
+    `owner_id` INT NOT NULL,
+    `create_time` TIMESTAMP NOT NULL,
     PRIMARY KEY (`id`)
 ) ENGINE = InnoDB
   DEFAULT CHARSET = utf8mb4;
 
+DROP TABLE IF EXISTS `chat_group_member`;
+CREATE TABLE `chat_group_member`
+(
+    `id` INT NOT NULL AUTO_INCREMENT,
+    `group_id` INT NOT NULL,
+    `user_id` INT NOT NULL,
+    `join_time` TIMESTAMP NOT NULL,
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_group_user` (`group_id`, `user_id`),
+    KEY `idx_user` (`user_id`)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
+
+DROP TABLE IF EXISTS `offline_message`;
+CREATE TABLE `offline_message`
+(
+    `id` INT NOT NULL AUTO_INCREMENT,
+    `user_id` INT NOT NULL,
+    `from_id` INT NOT NULL,
+    `content` VARCHAR(2000) NOT NULL,
+    `time_stamp` TIMESTAMP NOT NULL,
+    `type` VARCHAR(255) NOT NULL,
+    PRIMARY KEY (`id`),
+    KEY `idx_user_id` (`user_id`, `id`)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
+
 SET FOREIGN_KEY_CHECKS = 1;
\ No newline at end of file
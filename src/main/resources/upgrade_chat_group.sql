@@ -0,0 +1,24 @@
+-- upgrade an existing database: add group chat tables (group messages are stored in history_message with conversation_key 'group_<id>')
+use mini_fdu;
+
+CREATE TABLE IF NOT EXISTS `chat_group`
+(
+    `id` INT NOT NULL AUTO_INCREMENT,
+    `name` VARCHAR(64) NOT NULL,
+    `owner_id` INT NOT NULL,
+    `create_time` TIMESTAMP NOT NULL,
+    PRIMARY KEY (`id`)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS `chat_group_member`
+(
+    `id` INT NOT NULL AUTO_INCREMENT,
+    `group_id` INT NOT NULL,
+    `user_id` INT NOT NULL,
+    `join_time` TIMESTAMP NOT NULL,
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_group_user` (`group_id`, `user_id`),
+    KEY `idx_user` (`user_id`)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
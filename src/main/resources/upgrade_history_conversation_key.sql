@@ -0,0 +1,13 @@
+-- upgrade an existing history_message table: add the conversation key and the index used by paginated history
+use mini_fdu;
+
+ALTER TABLE `history_message`
+    ADD COLUMN `conversation_key` VARCHAR(64) NULL;
+
+UPDATE `history_message`
+SET `conversation_key` = CONCAT(LEAST(`local_id`, `remote_id`), '_', GREATEST(`local_id`, `remote_id`))
+WHERE `conversation_key` IS NULL;
+
+ALTER TABLE `history_message`
+    MODIFY COLUMN `conversation_key` VARCHAR(64) NOT NULL,
+    ADD KEY `idx_conversation_time` (`conversation_key`, `time_stamp`, `id`);
@@ -0,0 +1,8 @@
+-- upgrade an existing database: widen message content to match HistoryMessage.MAX_CONTENT_LENGTH
+use mini_fdu;
+
+ALTER TABLE `history_message`
+    MODIFY COLUMN `content` VARCHAR(2000) NOT NULL;
+
+ALTER TABLE `offline_message`
+    MODIFY COLUMN `content` VARCHAR(2000) NOT NULL;
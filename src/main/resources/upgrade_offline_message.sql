@@ -0,0 +1,15 @@
+-- upgrade an existing database: add the offline message inbox (messages for users who were not connected)
+use mini_fdu;
+
+CREATE TABLE IF NOT EXISTS `offline_message`
+(
+    `id` INT NOT NULL AUTO_INCREMENT,
+    `user_id` INT NOT NULL,
+    `from_id` INT NOT NULL,
+    `content` VARCHAR(2000) NOT NULL,
+    `time_stamp` TIMESTAMP NOT NULL,
+    `type` VARCHAR(255) NOT NULL,
+    PRIMARY KEY (`id`),
+    KEY `idx_user_id` (`user_id`, `id`)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
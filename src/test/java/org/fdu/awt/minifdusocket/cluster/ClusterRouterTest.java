@@ -0,0 +1,129 @@
+package org.fdu.awt.minifdusocket.cluster;
+
+import org.fdu.awt.minifdusocket.config.ClusterProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterRouterTest {
+    private final LoopbackHub hub = new LoopbackHub();
+    private final List<ClusterRouter> routers = new ArrayList<>();
+    /**
+     * 每批的消息数
+     */
+    private final List<Integer> batches = new CopyOnWriteArrayList<>();
+
+    private ClusterRouter node(String nodeId, int maxMessages) {
+        ClusterProperties properties = new ClusterProperties();
+        properties.setNodeId(nodeId);
+        properties.getBatch().setMaxMessages(maxMessages);
+        properties.getBatch().setMaxDelayMillis(50);
+        MessageBus bus = new MessageBus() {
+            @Override
+            public void publish(String target, List<ClusterMessage> batch) {
+                batches.add(batch.size());
+                hub.publish(target, batch);
+            }
+
+            @Override
+            public void subscribe(String target, Consumer<List<ClusterMessage>> consumer) {
+                hub.subscribe(target, consumer);
+            }
+
+            @Override
+            public void unsubscribe(String target) {
+                hub.unsubscribe(target);
+            }
+        };
+        ClusterRouter router = new ClusterRouter(properties, hub, bus);
+        router.start();
+        routers.add(router);
+        return router;
+    }
+
+    @AfterEach
+    void stop() {
+        routers.forEach(ClusterRouter::stop);
+    }
+
+    @Test
+    void forwardsToNodeHoldingTheSessionInBatches() throws InterruptedException {
+        ClusterRouter a = node("a", 4);
+        ClusterRouter b = node("b", 4);
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(10);
+        b.setHandlerIfAbsent("chat", message -> {
+            received.add(message.getPayload());
+            latch.countDown();
+            return true;
+        });
+        b.register("chat", 42L);
+
+        assertTrue(a.isOnlineElsewhere("chat", 42L));
+        assertFalse(b.isOnlineElsewhere("chat", 42L));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(a.forward("chat", 42L, "chat", "m" + i));
+        }
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            expected.add("m" + i);
+        }
+        assertEquals(expected, received);
+        assertEquals(10, batches.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batches.size() < 10);
+        assertTrue(batches.stream().allMatch(size -> size <= 4));
+    }
+
+    @Test
+    void unknownOrDisconnectedUserIsNotForwarded() {
+        ClusterRouter a = node("a", 4);
+        ClusterRouter b = node("b", 4);
+        assertFalse(a.forward("chat", 7L, "chat", "m"));
+
+        b.register("chat", 7L);
+        b.unregister("chat", 7L);
+        assertFalse(a.forward("chat", 7L, "chat", "m"));
+
+        // 节点下线后其上的用户视为不在线
+        b.register("chat", 7L);
+        b.stop();
+        assertFalse(a.forward("chat", 7L, "chat", "m"));
+    }
+
+    @Test
+    void groupMessageIsForwardedOncePerNode() throws InterruptedException {
+        ClusterRouter a = node("a", 4);
+        ClusterRouter b = node("b", 4);
+        ClusterRouter c = node("c", 4);
+        List<Long> received = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(2);
+        ClusterMessageHandler handler = message -> {
+            received.add(message.getToId());
+            latch.countDown();
+            return true;
+        };
+        b.setHandlerIfAbsent("chat-group", handler);
+        c.setHandlerIfAbsent("chat-group", handler);
+        a.register("chat", 1L);
+        b.register("chat", 2L);
+        b.register("chat", 3L);
+        c.register("chat", 4L);
+
+        int nodes = a.forwardToNodes("chat", List.of(1L, 2L, 3L, 4L, 5L), new ClusterMessage("chat-group", 9L, "group", "m"));
+        assertEquals(2, nodes);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of(9L, 9L), received);
+    }
+}
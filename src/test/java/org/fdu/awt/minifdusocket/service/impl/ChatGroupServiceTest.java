@@ -0,0 +1,60 @@
+package org.fdu.awt.minifdusocket.service.impl;
+
+import org.fdu.awt.minifdusocket.config.ChatProperties;
+import org.fdu.awt.minifdusocket.dao.ChatGroupDAO;
+import org.fdu.awt.minifdusocket.dao.ChatGroupMemberDAO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatGroupServiceTest {
+    private final ChatGroupDAO chatGroupDAO = mock(ChatGroupDAO.class);
+    private final ChatGroupMemberDAO chatGroupMemberDAO = mock(ChatGroupMemberDAO.class);
+    private final ChatGroupService service = new ChatGroupService(chatGroupDAO, chatGroupMemberDAO, new ChatProperties());
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void membershipCacheIsInvalidatedOnlyAfterCommit() {
+        when(chatGroupDAO.existsById(7L)).thenReturn(true);
+        when(chatGroupMemberDAO.findUserIdsByGroupId(7L)).thenReturn(List.of(1L));
+        assertEquals(Set.of(1L), service.getMembers(7L));
+
+        // 模拟事务：提交前其他线程读到的仍是旧列表，不能在此时删除缓存
+        TransactionSynchronizationManager.initSynchronization();
+        service.addMembers(7L, List.of(2L));
+        assertFalse(service.isMember(7L, 2L));
+
+        // 提交后新成员可见
+        when(chatGroupMemberDAO.findUserIdsByGroupId(7L)).thenReturn(List.of(1L, 2L));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        assertTrue(service.isMember(7L, 2L));
+    }
+
+    @Test
+    void membershipCacheIsInvalidatedImmediatelyOutsideATransaction() {
+        when(chatGroupMemberDAO.findUserIdsByGroupId(7L)).thenReturn(List.of(1L, 2L));
+        assertTrue(service.isMember(7L, 2L));
+
+        when(chatGroupMemberDAO.findUserIdsByGroupId(7L)).thenReturn(List.of(1L));
+        service.removeMembers(7L, List.of(2L));
+        assertFalse(service.isMember(7L, 2L));
+    }
+}
@@ -0,0 +1,174 @@
+package org.fdu.awt.minifdusocket.service.impl;
+
+import org.fdu.awt.minifdusocket.bo.historyMessage.resp.MessagePageResp;
+import org.fdu.awt.minifdusocket.bo.historyMessage.resp.MessageShowResp;
+import org.fdu.awt.minifdusocket.config.HistoryProperties;
+import org.fdu.awt.minifdusocket.dao.HistoryMessageDAO;
+import org.fdu.awt.minifdusocket.entity.HistoryMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fdu.awt.minifdusocket.service.impl.HistoryMessageService.DIRECTION_AFTER;
+import static org.fdu.awt.minifdusocket.service.impl.HistoryMessageService.DIRECTION_BEFORE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 按 (timeStamp, id) 的游标分页，在内存数据库上执行 {@link HistoryMessageDAO} 的查询 <br/>
+ * 表由实体创建，schema.sql 只适用于 MySQL
+ */
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+class HistoryMessageServiceTest {
+    private static final long LOCAL_ID = 1L;
+    private static final long REMOTE_ID = 2L;
+
+    @Autowired
+    private HistoryMessageDAO historyMessageDAO;
+
+    private final HistoryProperties properties = new HistoryProperties();
+    private HistoryMessageService service;
+    /**
+     * 按 (timeStamp, id) 正序：m1 m2 | m3 m4 m5 m6（同一时间）| m7 m8
+     */
+    private List<HistoryMessage> saved;
+
+    @BeforeEach
+    void setUp() {
+        service = new HistoryMessageService(historyMessageDAO, mock(HistoryMessageWriter.class),
+                new RecentConversationCache(properties));
+        long[] times = {1_000, 2_000, 3_000, 3_000, 3_000, 3_000, 4_000, 5_000};
+        List<HistoryMessage> messages = new ArrayList<>();
+        for (int i = 0; i < times.length; i++) {
+            messages.add(message(LOCAL_ID, REMOTE_ID, "m" + (i + 1), times[i]));
+        }
+        // 其他会话中同一时间的消息不能出现在结果中
+        messages.add(message(LOCAL_ID, 3L, "other", 3_000));
+        saved = historyMessageDAO.saveAll(messages);
+    }
+
+    private static HistoryMessage message(long localId, long remoteId, String content, long time) {
+        return HistoryMessage.builder()
+                .localId(localId)
+                .remoteId(remoteId)
+                .content(content)
+                .timeStamp(new Timestamp(time))
+                .type("text")
+                .build();
+    }
+
+    private MessagePageResp page(HistoryMessage cursor, int size, String direction) {
+        return service.getHistoryMessagePage(LOCAL_ID, REMOTE_ID,
+                cursor == null ? null : cursor.getTimeStamp().getTime(), cursor == null ? null : cursor.getId(),
+                size, direction);
+    }
+
+    private MessagePageResp next(MessagePageResp previous, int size, String direction) {
+        return service.getHistoryMessagePage(LOCAL_ID, REMOTE_ID,
+                previous.getNextCursorTime(), previous.getNextCursorId(), size, direction);
+    }
+
+    private static List<String> contents(MessagePageResp page) {
+        return page.getMessages().stream().map(MessageShowResp::getMessage).toList();
+    }
+
+    @Test
+    void cursorInsideATieExcludesItselfAndKeepsTheRestOfTheTie() {
+        // 游标为同一时间的第 2 条，之前包括同一时间 id 更小的一条
+        HistoryMessage m4 = saved.get(3);
+        MessagePageResp before = page(m4, 10, DIRECTION_BEFORE);
+        assertEquals(List.of("m1", "m2", "m3"), contents(before));
+        assertFalse(before.isHasMore());
+
+        MessagePageResp after = page(m4, 10, DIRECTION_AFTER);
+        assertEquals(List.of("m5", "m6", "m7", "m8"), contents(after));
+        assertFalse(after.isHasMore());
+    }
+
+    @Test
+    void pagingThroughATieNeitherSkipsNorRepeatsMessages() {
+        // 每页 2 条，页边界落在同一时间的消息中间
+        List<String> older = new ArrayList<>();
+        MessagePageResp page = page(saved.get(7), 2, DIRECTION_BEFORE);
+        List<List<String>> pages = new ArrayList<>();
+        while (true) {
+            pages.add(contents(page));
+            older.addAll(0, contents(page));
+            if (!page.isHasMore()) {
+                break;
+            }
+            page = next(page, 2, DIRECTION_BEFORE);
+        }
+        assertEquals(List.of(List.of("m6", "m7"), List.of("m4", "m5"), List.of("m2", "m3"), List.of("m1")), pages);
+        assertEquals(List.of("m1", "m2", "m3", "m4", "m5", "m6", "m7"), older);
+
+        List<String> newer = new ArrayList<>();
+        page = page(saved.get(0), 3, DIRECTION_AFTER);
+        while (true) {
+            newer.addAll(contents(page));
+            if (!page.isHasMore()) {
+                break;
+            }
+            page = next(page, 3, DIRECTION_AFTER);
+        }
+        assertEquals(List.of("m2", "m3", "m4", "m5", "m6", "m7", "m8"), newer);
+    }
+
+    @Test
+    void nextCursorIsTheLastMessageInTheDirectionOfPaging() {
+        MessagePageResp before = page(saved.get(6), 2, DIRECTION_BEFORE);
+        // 本页按时间正序，向前翻页的游标为最早的一条
+        assertEquals(List.of("m5", "m6"), contents(before));
+        assertEquals(3_000L, before.getNextCursorTime());
+        assertEquals(saved.get(4).getId(), before.getNextCursorId());
+
+        MessagePageResp after = page(saved.get(1), 2, DIRECTION_AFTER);
+        assertEquals(List.of("m3", "m4"), contents(after));
+        assertEquals(3_000L, after.getNextCursorTime());
+        assertEquals(saved.get(3).getId(), after.getNextCursorId());
+    }
+
+    @Test
+    void hasMoreIsFalseWhenExactlyOnePageIsLeft() {
+        // 之前恰好剩 2 条
+        MessagePageResp exact = page(saved.get(2), 2, DIRECTION_BEFORE);
+        assertEquals(List.of("m1", "m2"), contents(exact));
+        assertFalse(exact.isHasMore());
+        MessagePageResp oneMore = page(saved.get(3), 2, DIRECTION_BEFORE);
+        assertEquals(List.of("m2", "m3"), contents(oneMore));
+        assertTrue(oneMore.isHasMore());
+
+        // 最早、最晚一条之外没有消息，空页没有游标
+        MessagePageResp empty = page(saved.get(0), 2, DIRECTION_BEFORE);
+        assertTrue(empty.getMessages().isEmpty());
+        assertNull(empty.getNextCursorTime());
+        assertNull(empty.getNextCursorId());
+        assertFalse(empty.isHasMore());
+        assertTrue(page(saved.get(7), 2, DIRECTION_AFTER).getMessages().isEmpty());
+    }
+
+    @Test
+    void firstPageWithoutACursorStartsFromEitherEnd() {
+        // 最新一页经过缓存，与数据库查询的结果一致
+        for (boolean cacheEnabled : new boolean[]{true, false}) {
+            properties.getCache().setEnabled(cacheEnabled);
+            MessagePageResp latest = page(null, 3, DIRECTION_BEFORE);
+            assertEquals(List.of("m6", "m7", "m8"), contents(latest));
+            assertEquals(saved.get(5).getId(), latest.getNextCursorId());
+            assertTrue(latest.isHasMore());
+        }
+
+        MessagePageResp earliest = page(null, 8, DIRECTION_AFTER);
+        assertEquals(List.of("m1", "m2", "m3", "m4", "m5", "m6", "m7", "m8"), contents(earliest));
+        assertEquals(saved.get(7).getId(), earliest.getNextCursorId());
+        assertFalse(earliest.isHasMore());
+    }
+}
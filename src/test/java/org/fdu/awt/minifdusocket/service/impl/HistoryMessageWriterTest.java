@@ -0,0 +1,240 @@
+package org.fdu.awt.minifdusocket.service.impl;
+
+import org.fdu.awt.minifdusocket.config.HistoryProperties;
+import org.fdu.awt.minifdusocket.dao.HistoryMessageDAO;
+import org.fdu.awt.minifdusocket.entity.HistoryMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class HistoryMessageWriterTest {
+    private static final String POISON = "poison";
+
+    @TempDir
+    Path dir;
+
+    private final HistoryMessageDAO dao = mock(HistoryMessageDAO.class);
+    private final RecentConversationCache cache = mock(RecentConversationCache.class);
+    /**
+     * 已写入数据库的消息内容
+     */
+    private final List<String> inserted = new CopyOnWriteArrayList<>();
+    private final AtomicInteger flushed = new AtomicInteger();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+    private Path spillFile;
+    private HistoryMessageWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        spillFile = dir.resolve("spill.jsonl");
+        // 模拟数据库：连接失败时整批失败；内容为 POISON 的记录违反约束，同批其他记录也不会写入
+        doAnswer(invocation -> {
+            List<HistoryMessage> messages = invocation.getArgument(0);
+            if (databaseDown.get()) {
+                throw new CannotGetJdbcConnectionException("connection refused");
+            }
+            if (messages.stream().anyMatch(message -> POISON.equals(message.getContent()))) {
+                throw new DataIntegrityViolationException("Data too long for column 'content'");
+            }
+            messages.forEach(message -> inserted.add(message.getContent()));
+            return messages.stream().map(message -> nextId.incrementAndGet()).toList();
+        }).when(dao).insertBatch(anyList());
+        doAnswer(invocation -> {
+            Collection<HistoryMessage> messages = invocation.getArgument(0);
+            flushed.addAndGet(messages.size());
+            return null;
+        }).when(cache).onFlushed(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    private void start() {
+        HistoryProperties properties = new HistoryProperties();
+        HistoryProperties.WriteBehind config = properties.getWriteBehind();
+        config.setBatchSize(10);
+        config.setFlushIntervalMillis(10);
+        config.setRetryIntervalMillis(50);
+        config.setSpillFile(spillFile.toString());
+        writer = new HistoryMessageWriter(dao, cache, properties);
+        writer.start();
+    }
+
+    @Test
+    void writesQueuedMessagesAndNotifiesCache() {
+        start();
+        List<HistoryMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            messages.add(message("m" + i));
+            writer.enqueue(messages.get(i));
+        }
+        await(() -> inserted.size() == 25);
+        await(() -> flushed.get() == 25);
+        assertEquals("m0", inserted.get(0));
+        assertEquals("m24", inserted.get(24));
+        // 通知缓存前回填 id
+        assertEquals(1L, messages.get(0).getId());
+        assertEquals(25L, messages.get(24).getId());
+        assertEquals(0, writer.getSpilled());
+        assertFalse(Files.exists(spillFile));
+    }
+
+    @Test
+    void spillsWhileDatabaseIsDownAndReplaysAfterRecovery() {
+        databaseDown.set(true);
+        start();
+        writer.enqueue(message("a"));
+        writer.enqueue(message("b"));
+        await(() -> writer.getSpilled() == 2);
+        assertTrue(inserted.isEmpty());
+        // 写入溢出文件前不能认为已写入
+        assertEquals(0, flushed.get());
+
+        databaseDown.set(false);
+        await(() -> inserted.size() == 2);
+        assertEquals(List.of("a", "b"), inserted);
+        await(() -> !Files.exists(spillFile) && !Files.exists(dir.resolve("spill.jsonl.replay")));
+        assertEquals(2, flushed.get());
+
+        // 恢复后的新消息直接写入数据库
+        writer.enqueue(message("c"));
+        await(() -> inserted.contains("c"));
+        assertEquals(2, writer.getSpilled());
+    }
+
+    @Test
+    void poisonRecordIsQuarantinedWithoutBlockingItsBatch() throws Exception {
+        start();
+        writer.enqueue(message("a"));
+        writer.enqueue(message(POISON));
+        writer.enqueue(message("b"));
+        await(() -> inserted.size() == 2 && writer.getRejected() == 1);
+        assertEquals(List.of("a", "b"), inserted);
+        await(() -> flushed.get() == 3);
+        assertEquals(0, writer.getSpilled());
+        assertFalse(Files.exists(spillFile));
+        assertTrue(Files.readString(dir.resolve("spill.jsonl.rejected")).contains(POISON));
+
+        // 数据错误不会被当作数据库故障
+        writer.enqueue(message("c"));
+        await(() -> inserted.contains("c"));
+        assertEquals(0, writer.getSpilled());
+    }
+
+    @Test
+    void poisonRecordInSpillFileDoesNotBlockReplay() throws Exception {
+        Files.write(spillFile, List.of(
+                line("a"),
+                line(POISON),
+                "{\"localId\":1,\"remote",
+                line("b")), StandardCharsets.UTF_8);
+        start();
+        await(() -> inserted.size() == 2);
+        assertEquals(List.of("a", "b"), inserted);
+        await(() -> !Files.exists(dir.resolve("spill.jsonl.replay")));
+        assertEquals(1, writer.getRejected());
+        assertTrue(Files.readString(dir.resolve("spill.jsonl.rejected")).contains(POISON));
+    }
+
+    @Test
+    void replayStopsWhenDatabaseFailsAgainAndKeepsTheRest() throws Exception {
+        Files.write(spillFile, List.of(line("a"), line("b")), StandardCharsets.UTF_8);
+        databaseDown.set(true);
+        start();
+        Path replayFile = dir.resolve("spill.jsonl.replay");
+        await(() -> Files.exists(replayFile));
+        Thread.sleep(100);
+        assertTrue(inserted.isEmpty());
+        assertEquals(2, Files.readAllLines(replayFile).size());
+
+        databaseDown.set(false);
+        await(() -> inserted.size() == 2);
+        await(() -> !Files.exists(replayFile));
+        assertEquals(0, writer.getRejected());
+    }
+
+    @Test
+    void noMessageIsLostWhileStopping() throws Exception {
+        start();
+        int threads = 4;
+        int perThread = 2_000;
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    writer.enqueue(message(offset + "-" + i));
+                }
+            });
+            producers[t].start();
+        }
+        Thread.sleep(5);
+        writer.stop();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        long spilledLines = Files.exists(spillFile) ? Files.readAllLines(spillFile).size() : 0;
+        assertEquals(threads * perThread, inserted.size() + spilledLines);
+        assertEquals(spilledLines, writer.getSpilled());
+    }
+
+    private static HistoryMessage message(String content) {
+        return HistoryMessage.builder()
+                .localId(1L)
+                .remoteId(2L)
+                .content(content)
+                .timeStamp(new Timestamp(System.currentTimeMillis()))
+                .type("text")
+                .build();
+    }
+
+    private static String line(String content) {
+        return "{\"localId\":1,\"remoteId\":2,\"content\":\"" + content
+                + "\",\"timeStamp\":0,\"type\":\"text\",\"conversationKey\":\"1_2\"}";
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("条件在 5 秒内未满足");
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
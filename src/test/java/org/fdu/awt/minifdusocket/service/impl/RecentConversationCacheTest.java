@@ -0,0 +1,149 @@
+package org.fdu.awt.minifdusocket.service.impl;
+
+import org.fdu.awt.minifdusocket.config.HistoryProperties;
+import org.fdu.awt.minifdusocket.entity.HistoryMessage;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecentConversationCacheTest {
+    private static final String KEY = HistoryMessage.conversationKey(1L, 2L);
+
+    private final HistoryProperties properties = new HistoryProperties();
+
+    private RecentConversationCache cache(int maxMessages) {
+        properties.getCache().setMaxMessagesPerConversation(maxMessages);
+        return new RecentConversationCache(properties);
+    }
+
+    /**
+     * 已写入数据库的消息，id 与时间均为 i
+     */
+    private static List<HistoryMessage> stored(int count) {
+        List<HistoryMessage> messages = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            HistoryMessage message = message(i);
+            message.setId((long) i);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static HistoryMessage message(long time) {
+        return HistoryMessage.builder()
+                .localId(1L)
+                .remoteId(2L)
+                .content("m" + time)
+                .timeStamp(new Timestamp(time))
+                .type("text")
+                .build();
+    }
+
+    private static List<String> contents(List<HistoryMessage> messages) {
+        return messages.stream().map(HistoryMessage::getContent).toList();
+    }
+
+    @Test
+    void readThatOverlapsAFlushIsNotCached() {
+        RecentConversationCache cache = cache(10);
+        List<HistoryMessage> rows = stored(2);
+
+        // 有尚未写入数据库的消息时，数据库中读到的结果不完整
+        HistoryMessage pending = message(3);
+        cache.onWrite(pending);
+        cache.populate(KEY, rows, cache.stamp());
+        assertNull(cache.getAll(KEY));
+
+        // 读取开始后消息才写入数据库，读到的结果可能不包含它
+        long stamp = cache.stamp();
+        pending.setId(3L);
+        cache.onFlushed(List.of(pending));
+        cache.populate(KEY, rows, stamp);
+        assertNull(cache.getAll(KEY));
+
+        // 写入完成后开始的读取可以放入缓存
+        List<HistoryMessage> reloaded = new ArrayList<>(rows);
+        reloaded.add(pending);
+        cache.populate(KEY, reloaded, cache.stamp());
+        assertEquals(List.of("m1", "m2", "m3"), contents(cache.getAll(KEY)));
+    }
+
+    @Test
+    void trimmingKeepsTheNewestMessagesAndMarksTheConversationIncomplete() {
+        RecentConversationCache cache = cache(3);
+        boolean[] hasMore = new boolean[1];
+        cache.populate(KEY, stored(3), cache.stamp());
+        assertNotNull(cache.getAll(KEY));
+        assertEquals(List.of("m1", "m2", "m3"), contents(cache.getLatest(KEY, 5, hasMore)));
+        assertFalse(hasMore[0]);
+
+        // 新消息使会话超过上限，最早的一条被移除
+        HistoryMessage next = message(4);
+        cache.onWrite(next);
+        next.setId(4L);
+        cache.onFlushed(List.of(next));
+        assertNull(cache.getAll(KEY));
+        assertEquals(List.of("m3", "m4"), contents(cache.getLatest(KEY, 2, hasMore)));
+        assertTrue(hasMore[0]);
+        assertEquals(List.of("m2", "m3", "m4"), contents(cache.getLatest(KEY, 3, hasMore)));
+        assertTrue(hasMore[0]);
+        // 不完整的会话无法提供比缓存更多的消息
+        assertNull(cache.getLatest(KEY, 4, hasMore));
+
+        // 从数据库加载的 maxMessagesPerConversation + 1 条同样标记为不完整
+        cache.populate(KEY, stored(4), cache.stamp());
+        assertNull(cache.getAll(KEY));
+        assertEquals(List.of("m2", "m3", "m4"), contents(cache.getLatest(KEY, 3, hasMore)));
+        assertTrue(hasMore[0]);
+        assertEquals(5, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    void newMessageIsUsedAsACursorOnlyOnceItHasAnId() {
+        RecentConversationCache cache = cache(10);
+        boolean[] hasMore = new boolean[1];
+        cache.populate(KEY, stored(2), cache.stamp());
+        HistoryMessage pending = message(3);
+        cache.onWrite(pending);
+
+        // 本页最早的一条尚未写入数据库，不能作为游标
+        assertNull(cache.getLatest(KEY, 1, hasMore));
+        assertEquals(1, cache.getMisses());
+        assertEquals(List.of("m2", "m3"), contents(cache.getLatest(KEY, 2, hasMore)));
+        assertEquals(1, cache.getHits());
+
+        // HistoryMessageWriter 在通知缓存前回填 id
+        pending.setId(3L);
+        cache.onFlushed(List.of(pending));
+        assertEquals(List.of("m3"), contents(cache.getLatest(KEY, 1, hasMore)));
+        assertTrue(hasMore[0]);
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    void conversationIsReloadedWhenAFlushedMessageGotNoId() {
+        RecentConversationCache cache = cache(10);
+        cache.populate(KEY, stored(2), cache.stamp());
+        HistoryMessage spilled = message(3);
+        cache.onWrite(spilled);
+
+        // 溢出后重放写入的是副本，缓存中的消息没有 id
+        cache.onFlushed(List.of(message(3)));
+        assertEquals(0, cache.getConversationCount());
+        assertEquals(0, cache.getWeight());
+        assertNull(cache.getAll(KEY));
+
+        List<HistoryMessage> reloaded = stored(3);
+        cache.populate(KEY, reloaded, cache.stamp());
+        assertEquals(List.of("m1", "m2", "m3"), contents(cache.getAll(KEY)));
+    }
+}
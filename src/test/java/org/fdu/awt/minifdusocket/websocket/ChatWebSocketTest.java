@@ -0,0 +1,181 @@
+package org.fdu.awt.minifdusocket.websocket;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.fdu.awt.minifdusocket.cluster.ClusterMessage;
+import org.fdu.awt.minifdusocket.cluster.ClusterMessageHandler;
+import org.fdu.awt.minifdusocket.cluster.ClusterRouter;
+import org.fdu.awt.minifdusocket.config.ChatProperties;
+import org.fdu.awt.minifdusocket.config.WebSocketProperties;
+import org.fdu.awt.minifdusocket.entity.OfflineMessage;
+import org.fdu.awt.minifdusocket.metrics.WebSocketMetrics;
+import org.fdu.awt.minifdusocket.service.impl.ChatGroupService;
+import org.fdu.awt.minifdusocket.service.impl.HistoryMessageService;
+import org.fdu.awt.minifdusocket.service.impl.OfflineMessageService;
+import org.fdu.awt.minifdusocket.utils.SpringContext;
+import org.fdu.awt.minifdusocket.websocket.support.MessageDispatcher;
+import org.fdu.awt.minifdusocket.websocket.support.OutboundQueues;
+import org.fdu.awt.minifdusocket.websocket.support.SerialExecutor;
+import org.fdu.awt.minifdusocket.websocket.support.TrafficLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationContext;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 离线消息的转存与推送；连接表是静态的，每个用例使用不同的用户 id
+ */
+class ChatWebSocketTest {
+    private static final AtomicLong NEXT_USER_ID = new AtomicLong(1_000);
+
+    private final OfflineMessageService offlineMessageService = mock(OfflineMessageService.class);
+    private final ClusterRouter clusterRouter = mock(ClusterRouter.class);
+    private final ChatProperties chatProperties = new ChatProperties();
+
+    @BeforeEach
+    void setUp() {
+        WebSocketProperties webSocketProperties = new WebSocketProperties();
+        MessageDispatcher dispatcher = mock(MessageDispatcher.class);
+        // 与 container 模式相同，在调用线程中执行
+        when(dispatcher.newSerialExecutor()).thenAnswer(invocation -> new SerialExecutor(Runnable::run));
+        WebSocketMetrics metrics = mock(WebSocketMetrics.class);
+
+        ApplicationContext context = mock(ApplicationContext.class);
+        when(context.getBean(HistoryMessageService.class)).thenReturn(mock(HistoryMessageService.class));
+        when(context.getBean(ChatGroupService.class)).thenReturn(mock(ChatGroupService.class));
+        when(context.getBean(OfflineMessageService.class)).thenReturn(offlineMessageService);
+        when(context.getBean(ChatProperties.class)).thenReturn(chatProperties);
+        when(context.getBean(OutboundQueues.class)).thenReturn(new OutboundQueues(webSocketProperties));
+        when(context.getBean(ClusterRouter.class)).thenReturn(clusterRouter);
+        when(context.getBean(TrafficLog.class)).thenReturn(new TrafficLog(webSocketProperties, metrics));
+        when(context.getBean(WebSocketMetrics.class)).thenReturn(metrics);
+        when(context.getBean(MessageDispatcher.class)).thenReturn(dispatcher);
+        new SpringContext().setApplicationContext(context);
+    }
+
+    @Test
+    void messageToUserOnNoNodeIsStoredOffline() {
+        long sender = NEXT_USER_ID.incrementAndGet();
+        long recipient = NEXT_USER_ID.incrementAndGet();
+        ChatWebSocket socket = new ChatWebSocket();
+        socket.onOpen(new FakeSession().session, sender);
+
+        socket.onMessage(chat(recipient, "hi"));
+
+        verify(offlineMessageService).store(eq(recipient), eq(sender), eq("hi"), any(Timestamp.class));
+    }
+
+    @Test
+    void pendingMessagesArePushedOnConnectAndDeletedOnAck() {
+        long user = NEXT_USER_ID.incrementAndGet();
+        OfflineMessage offline = OfflineMessage.builder()
+                .id(7L)
+                .userId(user)
+                .fromId(1L)
+                .content("while you were away")
+                .timeStamp(new Timestamp(0))
+                .type("text")
+                .build();
+        when(offlineMessageService.getPending(eq(user), anyInt())).thenReturn(List.of(offline), List.of());
+        ChatWebSocket socket = new ChatWebSocket();
+        FakeSession session = new FakeSession();
+        socket.onOpen(session.session, user);
+
+        assertEquals(1, session.sent.size());
+        assertTrue(session.sent.get(0).contains("\"type\":\"offline\""));
+        assertTrue(session.sent.get(0).contains("while you were away"));
+        session.complete(0, true);
+
+        socket.onMessage("{\"type\":\"offline-ack\",\"ids\":[7]}");
+        verify(offlineMessageService).ack(user, List.of(7L));
+        verify(offlineMessageService, times(2)).getPending(eq(user), eq(chatProperties.getOffline().getBatchSize() + 1));
+    }
+
+    @Test
+    void queuedMessagesThatNeverReachTheRecipientAreStoredOffline() {
+        long sender = NEXT_USER_ID.incrementAndGet();
+        long recipient = NEXT_USER_ID.incrementAndGet();
+        ChatWebSocket senderSocket = new ChatWebSocket();
+        senderSocket.onOpen(new FakeSession().session, sender);
+        ChatWebSocket recipientSocket = new ChatWebSocket();
+        FakeSession recipientSession = new FakeSession();
+        recipientSocket.onOpen(recipientSession.session, recipient);
+
+        // 第一条发送中，第二条在队列中等待
+        senderSocket.onMessage(chat(recipient, "first"));
+        senderSocket.onMessage(chat(recipient, "second"));
+        assertEquals(1, recipientSession.sent.size());
+        verify(offlineMessageService, never()).store(any(), any(), anyString(), any());
+
+        // 接收者断开：排队的消息被丢弃，发送中的一条随后失败
+        recipientSession.open = false;
+        recipientSocket.onClose();
+        verify(offlineMessageService).store(eq(recipient), eq(sender), eq("second"), any(Timestamp.class));
+        recipientSession.complete(0, false);
+        verify(offlineMessageService).store(eq(recipient), eq(sender), eq("first"), any(Timestamp.class));
+    }
+
+    @Test
+    void forwardedMessageForDisconnectedUserIsStoredOfflineOnTheReceivingNode() {
+        new ChatWebSocket();
+        ArgumentCaptor<ClusterMessageHandler> handler = ArgumentCaptor.forClass(ClusterMessageHandler.class);
+        verify(clusterRouter).setHandlerIfAbsent(eq(ChatWebSocket.CLUSTER_CHANNEL), handler.capture());
+        long recipient = NEXT_USER_ID.incrementAndGet();
+        String payload = "{\"message\":\"hi\",\"remoteId\":" + recipient + ",\"localId\":3,\"ifSelf\":\"false\"}";
+
+        assertTrue(handler.getValue().deliver(new ClusterMessage(ChatWebSocket.CLUSTER_CHANNEL, recipient, "chat", payload)));
+
+        verify(offlineMessageService).store(eq(recipient), eq(3L), eq("hi"), any(Timestamp.class));
+    }
+
+    private static String chat(long remoteId, String message) {
+        return "{\"type\":\"chat\",\"remoteId\":" + remoteId + ",\"message\":\"" + message + "\"}";
+    }
+
+    /**
+     * 记录异步发送的消息，由用例决定何时完成
+     */
+    private static final class FakeSession {
+        private final Session session = mock(Session.class);
+        private final List<String> sent = new ArrayList<>();
+        private final List<SendHandler> handlers = new ArrayList<>();
+        private boolean open = true;
+
+        private FakeSession() {
+            RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+            doAnswer(invocation -> {
+                sent.add(invocation.getArgument(0));
+                handlers.add(invocation.getArgument(1));
+                return null;
+            }).when(remote).sendText(anyString(), any(SendHandler.class));
+            when(session.getAsyncRemote()).thenReturn(remote);
+            when(session.isOpen()).thenAnswer(invocation -> open);
+            when(session.getId()).thenReturn("s" + NEXT_USER_ID.incrementAndGet());
+        }
+
+        private void complete(int index, boolean ok) {
+            handlers.get(index).onResult(ok ? new SendResult() : new SendResult(new IOException("closed")));
+        }
+    }
+}
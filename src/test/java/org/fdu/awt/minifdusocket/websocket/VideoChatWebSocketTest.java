@@ -0,0 +1,189 @@
+package org.fdu.awt.minifdusocket.websocket;
+
+import com.alibaba.fastjson2.JSONObject;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.fdu.awt.minifdusocket.cluster.ClusterRouter;
+import org.fdu.awt.minifdusocket.config.WebSocketProperties;
+import org.fdu.awt.minifdusocket.metrics.WebSocketMetrics;
+import org.fdu.awt.minifdusocket.service.impl.HistoryMessageService;
+import org.fdu.awt.minifdusocket.utils.SpringContext;
+import org.fdu.awt.minifdusocket.websocket.support.MessageDispatcher;
+import org.fdu.awt.minifdusocket.websocket.support.OutboundQueues;
+import org.fdu.awt.minifdusocket.websocket.support.SerialExecutor;
+import org.fdu.awt.minifdusocket.websocket.support.TrafficLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 通话状态机：邀请、接听、挂断、超时与忙碌；连接表是静态的，每个用例使用不同的用户 id
+ */
+class VideoChatWebSocketTest {
+    private static final AtomicLong NEXT_USER_ID = new AtomicLong(2_000);
+
+    private final HistoryMessageService historyMessageService = mock(HistoryMessageService.class);
+    /**
+     * 已安排的定时任务（邀请超时），由用例决定何时到期
+     */
+    private final List<Runnable> timers = new ArrayList<>();
+    private final List<ScheduledFuture<?>> futures = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        WebSocketProperties webSocketProperties = new WebSocketProperties();
+        MessageDispatcher dispatcher = mock(MessageDispatcher.class);
+        // 与 container 模式相同，在调用线程中执行
+        when(dispatcher.newSerialExecutor()).thenAnswer(invocation -> new SerialExecutor(Runnable::run));
+        when(dispatcher.schedule(any(SerialExecutor.class), any(Runnable.class), anyLong())).thenAnswer(invocation -> {
+            SerialExecutor target = invocation.getArgument(0);
+            Runnable task = invocation.getArgument(1);
+            timers.add(() -> target.execute(task));
+            ScheduledFuture<?> future = mock(ScheduledFuture.class);
+            futures.add(future);
+            return future;
+        });
+        WebSocketMetrics metrics = mock(WebSocketMetrics.class);
+
+        ApplicationContext context = mock(ApplicationContext.class);
+        when(context.getBean(HistoryMessageService.class)).thenReturn(historyMessageService);
+        when(context.getBean(OutboundQueues.class)).thenReturn(new OutboundQueues(webSocketProperties));
+        when(context.getBean(ClusterRouter.class)).thenReturn(mock(ClusterRouter.class));
+        when(context.getBean(TrafficLog.class)).thenReturn(new TrafficLog(webSocketProperties, metrics));
+        when(context.getBean(WebSocketMetrics.class)).thenReturn(metrics);
+        when(context.getBean(WebSocketProperties.class)).thenReturn(webSocketProperties);
+        when(context.getBean(MessageDispatcher.class)).thenReturn(dispatcher);
+        new SpringContext().setApplicationContext(context);
+    }
+
+    @Test
+    void acceptedCallIsRecordedByTheUserWhoEndsIt() {
+        Client caller = connect();
+        Client callee = connect();
+
+        caller.socket.onMessage(signal("video-invite", callee.userId));
+        assertEquals("video-invite", callee.last().getString("type"));
+        assertEquals(caller.userId, callee.last().getLong("fromId"));
+
+        callee.socket.onMessage(signal("video-accept", caller.userId));
+        assertEquals("video-accept", caller.last().getString("type"));
+        // 接听后两端的邀请超时都已取消
+        assertEquals(2, futures.size());
+        futures.forEach(future -> verify(future).cancel(false));
+
+        callee.socket.onMessage(signal("video-end", caller.userId));
+        assertEquals("video-end", caller.last().getString("type"));
+        verify(historyMessageService).videoChatEnd(eq(callee.userId), eq(caller.userId), any(Timestamp.class), any(Timestamp.class));
+
+        // 两端都回到空闲，可以再次通话
+        callee.socket.onMessage(signal("video-invite", caller.userId));
+        assertEquals("video-invite", caller.last().getString("type"));
+    }
+
+    @Test
+    void unansweredInviteTimesOutAndIsRecordedAsOffline() {
+        Client caller = connect();
+        Client callee = connect();
+        caller.socket.onMessage(signal("video-invite", callee.userId));
+        assertEquals(2, timers.size());
+
+        // 发起者的超时先到期
+        timers.get(0).run();
+        JSONObject reject = caller.last();
+        assertEquals("video-reject", reject.getString("type"));
+        assertEquals("timeout", reject.getString("reason"));
+        assertEquals("video-end", callee.last().getString("type"));
+        verify(historyMessageService).videoChatOffLine(eq(caller.userId), eq(callee.userId), any(Timestamp.class));
+
+        // 接收者已回到空闲，它的超时随之失效，之后的接听被忽略
+        int callerMessages = caller.sent.size();
+        int calleeMessages = callee.sent.size();
+        timers.get(1).run();
+        callee.socket.onMessage(signal("video-accept", caller.userId));
+        assertEquals(callerMessages, caller.sent.size());
+        assertEquals(calleeMessages, callee.sent.size());
+        verify(historyMessageService, never()).videoChatCancel(any(), any(), any());
+    }
+
+    @Test
+    void secondInviteToARingingUserIsRejectedAsBusy() {
+        Client caller = connect();
+        Client callee = connect();
+        Client other = connect();
+        caller.socket.onMessage(signal("video-invite", callee.userId));
+
+        other.socket.onMessage(signal("video-invite", callee.userId));
+        JSONObject reject = other.last();
+        assertEquals("video-reject", reject.getString("type"));
+        assertEquals("busy", reject.getString("reason"));
+        assertEquals(callee.userId, reject.getLong("fromId"));
+        verify(historyMessageService).videoChatBusy(eq(other.userId), eq(callee.userId), any(Timestamp.class));
+
+        // 响铃中的发起者再次发起邀请同样回复忙碌，原有的邀请不受影响
+        caller.socket.onMessage(signal("video-invite", other.userId));
+        assertEquals("busy", caller.last().getString("reason"));
+        callee.socket.onMessage(signal("video-accept", caller.userId));
+        assertEquals("video-accept", caller.last().getString("type"));
+        assertTrue(other.sent.stream().noneMatch(message -> message.contains("video-invite")));
+    }
+
+    private Client connect() {
+        Client client = new Client(NEXT_USER_ID.incrementAndGet());
+        client.socket.onOpen(client.session, client.userId);
+        return client;
+    }
+
+    private static String signal(String type, long toId) {
+        return "{\"type\":\"" + type + "\",\"toId\":" + toId + "}";
+    }
+
+    /**
+     * 一个已连接的用户，发送立即完成并记录下发的消息
+     */
+    private static final class Client {
+        private final long userId;
+        private final Session session = mock(Session.class);
+        private final List<String> sent = new ArrayList<>();
+        private final VideoChatWebSocket socket = new VideoChatWebSocket();
+
+        private Client(long userId) {
+            this.userId = userId;
+            RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+            doAnswer(invocation -> {
+                sent.add(invocation.getArgument(0));
+                SendHandler handler = invocation.getArgument(1);
+                handler.onResult(new SendResult());
+                return null;
+            }).when(remote).sendText(anyString(), any(SendHandler.class));
+            when(session.getAsyncRemote()).thenReturn(remote);
+            when(session.isOpen()).thenReturn(true);
+            when(session.getId()).thenReturn("v" + userId);
+            when(session.getRequestParameterMap()).thenReturn(Map.of());
+        }
+
+        private JSONObject last() {
+            return JSONObject.parseObject(sent.get(sent.size() - 1));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import com.alibaba.fastjson2.JSONObject;
+import org.fdu.awt.minifdusocket.websocket.support.JsonByteWriter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryViewTest {
+    private static final String LOCAL_UPDATE = "{\"type\":\"local_update\",\"data\":{\"username\":\"player-1\","
+            + "\"model\":\"boy\",\"colour\":\"#3fa7d6\",\"x\":12.625,\"y\":0.0,\"z\":-48.3125,"
+            + "\"h\":1.5707963,\"pb\":0.0,\"action\":\"walk\"}}";
+
+    private final PlayerStateStore store = new PlayerStateStore();
+    private final SymbolDictionary symbols = new SymbolDictionary(256, 16);
+    private final JsonByteWriter out = new JsonByteWriter(256);
+
+    private UserData userData(long userId, String action) {
+        UserData userData = store.add(userId);
+        JSONObject json = JSONObject.parseObject(LOCAL_UPDATE).getJSONObject("data");
+        json.put("username", "player-" + userId);
+        json.put("action", action);
+        symbols.register(json.getString("model"));
+        symbols.register(action);
+        userData.updateUserData(json, 1);
+        return userData;
+    }
+
+    private JSONObject info(BinaryView view, long seq, List<UserData> visible) {
+        view.prepare(seq, visible, UpdateRate.everyTick());
+        return view.writeInfo(symbols, out) ? JSONObject.parseObject(out.toUtf8String()) : null;
+    }
+
+    @Test
+    void onlySymbolsTheClientHasNotSeenAreSent() {
+        BinaryView view = new BinaryView();
+        UserData player = userData(1, "walk");
+        store.capture(1);
+        assertEquals("{\"boy\":1,\"walk\":2}", info(view, 1, List.of(player)).getJSONObject("symbols").toJSONString());
+
+        // 没有新增映射、也没有静态字段变化时不发送
+        assertNull(info(view, 2, List.of(player)));
+
+        // 其他玩家带来新的动作，只下发新增的一条
+        UserData other = userData(2, "跳跃");
+        store.capture(3);
+        JSONObject next = info(view, 3, List.of(player, other));
+        assertEquals("{\"跳跃\":3}", next.getJSONObject("symbols").toJSONString());
+        assertEquals(1, next.getJSONArray("data").size());
+
+        // 重新同步只重发玩家，客户端保留已收到的映射
+        view.resync();
+        JSONObject reset = info(view, 4, List.of(player, other));
+        assertTrue(reset.getBooleanValue("reset"));
+        assertFalse(reset.containsKey("symbols"));
+        assertEquals(2, reset.getJSONArray("data").size());
+    }
+
+    /**
+     * 实测一个 tick 的下发字节数：100 个玩家全部移动，所有玩家可见时一个客户端收到的快照
+     */
+    @Test
+    void binarySnapshotIsMuchSmallerThanJson() {
+        List<UserData> players = new ArrayList<>();
+        for (long userId = 1; userId <= 100; userId++) {
+            players.add(userData(userId, "walk"));
+        }
+        store.capture(1);
+        BinaryView view = new BinaryView();
+        view.prepare(1, players, UpdateRate.everyTick());
+        view.writeInfo(symbols, out);
+
+        long seq = 2;
+        for (UserData userData : players) {
+            userData.updatePose(userData.getX() + 0.125, 0.0, userData.getZ(), 1.5, 0.0, "walk", true, seq);
+        }
+        store.capture(seq);
+        GameSnapshotWriter writer = new GameSnapshotWriter();
+        writer.beginTick(seq, 80);
+        int jsonBytes = writer.remoteData(players).size();
+
+        view.prepare(seq, players, UpdateRate.everyTick());
+        assertFalse(view.writeInfo(symbols, out));
+        ByteBuffer frame = ByteBuffer.allocate(view.snapshotCapacity());
+        assertTrue(view.writeSnapshot(seq, 80, symbols, frame));
+        int binaryBytes = frame.position();
+
+        // 头部 15 字节 + 每个玩家 32 字节 + 离开数 2 字节，共 3217 字节；json 为 13421 字节
+        assertEquals(15 + 100 * GameBinaryCodec.RECORD_LENGTH + 2, binaryBytes);
+        assertTrue(jsonBytes > 4 * binaryBytes, "json " + jsonBytes + " bytes, binary " + binaryBytes + " bytes");
+        // 上报：一条 local_update 为 158 字节，POSE 帧为 23 字节
+        assertTrue(LOCAL_UPDATE.getBytes(StandardCharsets.UTF_8).length > 6 * GameBinaryCodec.POSE_LENGTH);
+    }
+}
@@ -0,0 +1,105 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import jakarta.websocket.Session;
+import org.fdu.awt.minifdusocket.config.WebSocketProperties;
+import org.fdu.awt.minifdusocket.websocket.support.OutboundQueue;
+import org.fdu.awt.minifdusocket.websocket.support.OutboundStats;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GamePlayerTest {
+    private final SymbolDictionary symbols = new SymbolDictionary(4, 2);
+    private final PlayerStateStore store = new PlayerStateStore();
+
+    private GamePlayer player() {
+        return player(1L);
+    }
+
+    private GamePlayer player(long userId) {
+        Session session = mock(Session.class);
+        when(session.isOpen()).thenReturn(true);
+        OutboundQueue outbound = new OutboundQueue(session, new WebSocketProperties.Outbound(), Runnable::run, new OutboundStats());
+        GamePlayer player = new GamePlayer(outbound, userId, null, new BinaryView(), false);
+        player.setUserData(store.add(userId));
+        return player;
+    }
+
+    private static ByteBuffer pose(int actionId, float x) {
+        ByteBuffer frame = ByteBuffer.allocate(GameBinaryCodec.POSE_LENGTH);
+        frame.put(GameBinaryCodec.OP_POSE).putShort((short) actionId)
+                .putFloat(x).putFloat(0).putFloat(0).putFloat(0).putFloat(0).flip();
+        return frame;
+    }
+
+    @Test
+    void posesAreAppliedInTheTickWithTheTickVersion() {
+        GamePlayer player = player();
+        int walk = symbols.register("walk");
+        assertFalse(player.offerPose(pose(walk, 1)));
+        // 后一帧覆盖前一帧，但不更新动作时保留前一帧的动作
+        ByteBuffer reused = pose(GameBinaryCodec.ACTION_UNCHANGED, 2);
+        assertTrue(player.offerPose(reused));
+        // 容器复用缓冲区不影响已保存的帧
+        reused.putFloat(3, 99);
+
+        store.capture(1);
+        assertEquals(0.0, player.getUserData().getX());
+
+        player.applyPendingUpdates(2, symbols);
+        store.capture(2);
+        UserData userData = player.getUserData();
+        assertEquals(2.0, userData.getX());
+        assertEquals("walk", userData.getAction());
+        // 修改归属于应用它的 tick，而不是上报时猜测的序号
+        assertEquals(UserData.bit(UserData.X) | UserData.bit(UserData.ACTION), userData.changedMaskSince(1));
+
+        player.applyPendingUpdates(3, symbols);
+        store.capture(3);
+        assertEquals(0, userData.changedMaskSince(2));
+    }
+
+    private static String localUpdate(String model, String action) {
+        return "{\"type\":\"local_update\",\"data\":{\"model\":\"" + model + "\",\"action\":\"" + action + "\",\"x\":1.0}}";
+    }
+
+    @Test
+    void newSymbolsAreLimitedPerPlayerAndPerRoom() {
+        GamePlayer first = player(1L);
+        GamePlayer second = player(2L);
+        first.offerUpdate(localUpdate("boy", "walk"), true);
+        first.applyPendingUpdates(1, symbols);
+        assertEquals(2, symbols.version());
+
+        // 第一个玩家已新增 2 个，新的动作被忽略，其余字段照常应用
+        first.offerUpdate(localUpdate("boy", "dance-1"), true);
+        first.applyPendingUpdates(2, symbols);
+        store.capture(2);
+        assertEquals("walk", first.getUserData().getAction());
+        assertEquals(1.0, first.getUserData().getX());
+        assertEquals(SymbolDictionary.NONE, symbols.idOf("dance-1"));
+
+        // 已有的字符串不计入上限；房间的映射表最多 4 个，第二个玩家只新增了 2 个，但映射表已满
+        second.offerUpdate(localUpdate("boy", "run"), true);
+        second.applyPendingUpdates(3, symbols);
+        second.offerUpdate(localUpdate("girl", "jump"), true);
+        second.applyPendingUpdates(4, symbols);
+        store.capture(4);
+        assertEquals(4, symbols.version());
+        assertEquals("girl", second.getUserData().getModel());
+        assertEquals("run", second.getUserData().getAction());
+        GamePlayer third = player(3L);
+        third.offerUpdate(localUpdate("robot", "walk"), true);
+        third.applyPendingUpdates(5, symbols);
+        store.capture(5);
+        assertEquals(4, symbols.version());
+        assertEquals(null, third.getUserData().getModel());
+        assertEquals("walk", third.getUserData().getAction());
+    }
+}
@@ -0,0 +1,118 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GameSnapshotWriterTest {
+    private final PlayerStateStore store = new PlayerStateStore();
+
+    private UserData userData(long userId, String username, double x) {
+        UserData userData = store.add(userId);
+        JSONObject json = new JSONObject();
+        json.put("username", username);
+        json.put("model", "boy");
+        json.put("colour", "#ff0000");
+        json.put("x", x);
+        json.put("y", 0.0);
+        json.put("z", -12.25);
+        json.put("h", 3.14159);
+        json.put("pb", 1e-7);
+        json.put("action", "walk");
+        userData.updateUserData(json, 1);
+        store.capture(1);
+        return userData;
+    }
+
+    @Test
+    void remoteDataMatchesJsonObjectSerialization() {
+        List<UserData> players = List.of(
+                userData(1, "张三 \"quoted\"\n\t\u0001", 1.5),
+                userData(2, "emoji 😀 \\", -0.0));
+        GameSnapshotWriter writer = new GameSnapshotWriter();
+        writer.beginTick(1, 1700000000000L);
+
+        JSONArray expectedData = new JSONArray();
+        players.forEach(p -> expectedData.add(p.toJsonObject()));
+        JSONObject expected = new JSONObject();
+        expected.put("type", "remoteData");
+        expected.put("t", 1700000000000L);
+        expected.put("data", expectedData);
+
+        assertEquals(expected.toJSONString(), writer.remoteData(players).toUtf8String());
+        // 同一 tick 内再次组装时复用片段
+        assertEquals(expected.toJSONString(), writer.remoteData(players).toUtf8String());
+    }
+
+    @Test
+    void deltaOnlyContainsChangedFields() {
+        UserData player = userData(1, "a", 1.0);
+        PlayerView view = new PlayerView(50, 25);
+        GameSnapshotWriter writer = new GameSnapshotWriter();
+
+        writer.beginTick(1, 1 * 40L);
+        view.writeMessage(List.of(player), writer, UpdateRate.everyTick());
+        assertEquals(Boolean.TRUE, JSONObject.parseObject(writer.message().toUtf8String()).getBoolean("keyframe"));
+
+        writer.beginTick(2, 2 * 40L);
+        assertEquals(false, view.writeMessage(List.of(player), writer, UpdateRate.everyTick()));
+
+        JSONObject move = new JSONObject();
+        move.put("x", 2.0);
+        player.updateUserData(move, 3);
+        store.capture(3);
+        writer.beginTick(3, 3 * 40L);
+        view.writeMessage(List.of(player), writer, UpdateRate.everyTick());
+        JSONObject delta = JSONObject.parseObject(writer.message().toUtf8String());
+        assertEquals("remoteDelta", delta.getString("type"));
+        assertEquals(120L, delta.getLongValue("t"));
+        assertEquals("{\"userId\":1,\"x\":2.0}", delta.getJSONArray("update").getJSONObject(0).toJSONString());
+
+        writer.beginTick(4, 4 * 40L);
+        view.writeMessage(List.of(), writer, UpdateRate.everyTick());
+        delta = JSONObject.parseObject(writer.message().toUtf8String());
+        assertEquals(1L, delta.getJSONArray("leave").getLongValue(0));
+    }
+
+    @Test
+    void distantChangesAreDeferredNotLost() {
+        UserData self = userData(1, "self", 0.0);
+        UserData far = userData(2, "far", 50.0);
+        PlayerView view = new PlayerView(50, 25);
+        UpdateRate rate = new UpdateRate(30, 4);
+        GameSnapshotWriter writer = new GameSnapshotWriter();
+        List<UserData> visible = List.of(self, far);
+
+        writer.beginTick(1, 40);
+        rate.begin(self, 1);
+        view.writeMessage(visible, writer, rate);
+        view.ack(1);
+        // userId 2 在 (seq + 2) % 4 == 0 即 tick 2、6 时到期
+        writer.beginTick(2, 80);
+        rate.begin(self, 2);
+        assertEquals(false, view.writeMessage(visible, writer, rate));
+        view.ack(2);
+
+        // far 在 tick 3 移动，tick 3~5 不下发，客户端确认到 5 后也不会丢失
+        JSONObject move = new JSONObject();
+        move.put("x", 60.0);
+        far.updateUserData(move, 3);
+        store.capture(3);
+        for (long seq = 3; seq <= 5; seq++) {
+            writer.beginTick(seq, seq * 40);
+            rate.begin(self, seq);
+            assertEquals(false, view.writeMessage(visible, writer, rate));
+            view.ack(seq);
+        }
+
+        writer.beginTick(6, 240);
+        rate.begin(self, 6);
+        view.writeMessage(visible, writer, rate);
+        JSONObject delta = JSONObject.parseObject(writer.message().toUtf8String());
+        assertEquals("{\"userId\":2,\"x\":60.0}", delta.getJSONArray("update").getJSONObject(0).toJSONString());
+    }
+}
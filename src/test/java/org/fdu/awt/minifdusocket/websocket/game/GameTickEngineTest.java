@@ -0,0 +1,32 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.fdu.awt.minifdusocket.config.GameProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameTickEngineTest {
+
+    @Test
+    void unregisterRemovesPerTaskMeters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GameTickEngine engine = new GameTickEngine(new GameProperties(), registry);
+        GameTickEngine.Ticker kept = engine.register("room-1", () -> {
+        }, () -> true);
+        // 模拟大量房间创建后销毁
+        for (int i = 2; i < 100; i++) {
+            engine.unregister(engine.register("room-" + i, () -> {
+            }, () -> true));
+        }
+
+        // 包括百分位数等附属的统计项
+        assertFalse(registry.getMeters().isEmpty());
+        assertTrue(registry.getMeters().stream().allMatch(meter -> "room-1".equals(meter.getId().getTag("task"))));
+
+        engine.unregister(kept);
+        assertTrue(registry.getMeters().isEmpty());
+        assertTrue(engine.getTickers().isEmpty());
+    }
+}
@@ -0,0 +1,92 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlayerStateStoreTest {
+
+    @Test
+    void slotIsRecycledOnlyAfterNextCapture() {
+        PlayerStateStore store = new PlayerStateStore();
+        UserData a = store.add(1L);
+        a.updatePose(1, 2, 3, 4, 5, "walk", true, 1);
+        store.capture(1);
+
+        store.remove(a);
+        // 离开前 capture 的快照在本 tick 内仍然可读
+        UserData b = store.add(2L);
+        b.updatePose(6, 7, 8, 9, 10, "run", true, 2);
+        assertEquals(1.0, a.getX());
+        assertFalse(b.isCaptured(1));
+
+        store.capture(2);
+        store.remove(b);
+        store.capture(3);
+        UserData c = store.add(3L);
+        // 复用已清空的槽位
+        assertTrue(c.slot == a.slot || c.slot == b.slot);
+        store.capture(4);
+        assertArrayEquals(new UserData[]{c}, store.capture(5));
+        assertNull(c.getAction());
+        assertEquals(0.0, c.getX());
+        assertEquals(0, c.changedMaskSince(0));
+    }
+
+    @Test
+    void captureNeverSeesTornPose() throws InterruptedException {
+        PlayerStateStore store = new PlayerStateStore();
+        UserData userData = store.add(1L);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            for (long i = 1; running.get(); i++) {
+                userData.updatePose(i, i, i, i, i, null, false, i);
+            }
+        });
+        writer.start();
+        try {
+            for (long seq = 1; seq <= 200_000; seq++) {
+                store.capture(seq);
+                double x = userData.getX();
+                assertTrue(x == userData.getY() && x == userData.getZ() && x == userData.getH() && x == userData.getPb(),
+                        "torn pose at capture " + seq);
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    @Test
+    void nonFiniteAndOutOfWorldValuesAreRejected() {
+        PlayerStateStore store = new PlayerStateStore();
+        UserData userData = store.add(1L);
+        assertTrue(userData.updatePose(1, 2, 3, 4, 5, null, false, 1));
+
+        assertFalse(userData.updatePose(Double.NaN, 2, 3, 4, 5, null, false, 2));
+        assertFalse(userData.updatePose(1, 2, UserData.MAX_COORDINATE * 2, 4, 5, null, false, 2));
+        assertFalse(userData.updatePose(1, 2, 3, Double.POSITIVE_INFINITY, 5, null, false, 2));
+        assertFalse(userData.updateUserData(JSONObject.of("x", 1e20, "username", "u"), 2));
+        assertFalse(userData.updateUserData(JSONObject.parseObject("{\"z\":\"Infinity\"}"), 2));
+
+        ByteBuffer pose = ByteBuffer.allocate(GameBinaryCodec.POSE_LENGTH);
+        pose.put(GameBinaryCodec.OP_POSE).putShort((short) GameBinaryCodec.ACTION_UNCHANGED)
+                .putFloat(Float.MAX_VALUE).putFloat(0).putFloat(0).putFloat(0).putFloat(0).flip();
+        assertFalse(GameBinaryCodec.applyPose(pose, userData, new SymbolDictionary(256, 16), 2));
+
+        // 整条丢弃，之前的数据和版本号不变
+        store.capture(2);
+        assertEquals(1.0, userData.getX());
+        assertEquals(3.0, userData.getZ());
+        assertNull(userData.getUsername());
+        assertEquals(0, userData.changedMaskSince(1));
+    }
+}
@@ -0,0 +1,143 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.spy;
+
+class PlayerViewTest {
+    private final PlayerStateStore store = new PlayerStateStore();
+
+    private UserData userData(long userId, double x) {
+        UserData userData = store.add(userId);
+        JSONObject json = new JSONObject();
+        json.put("username", "u" + userId);
+        json.put("model", "boy");
+        json.put("x", x);
+        json.put("z", 0.0);
+        userData.updateUserData(json, 1);
+        store.capture(1);
+        return userData;
+    }
+
+    private void move(UserData userData, double x, long seq) {
+        JSONObject move = new JSONObject();
+        move.put("x", x);
+        userData.updateUserData(move, seq);
+        store.capture(seq);
+    }
+
+    private static JSONObject tick(PlayerView view, GameSnapshotWriter writer, long seq, List<UserData> visible, UpdateRate rate) {
+        writer.beginTick(seq, seq * 40);
+        if (!view.writeMessage(visible, writer, rate)) {
+            return null;
+        }
+        return JSONObject.parseObject(writer.message().toUtf8String());
+    }
+
+    private static boolean isKeyframe(JSONObject message) {
+        return message != null && "remoteData".equals(message.getString("type"));
+    }
+
+    @Test
+    void clientThatFallsBehindOnAcksGetsAKeyframe() {
+        UserData player = userData(1, 0.0);
+        PlayerView view = new PlayerView(1_000, 3);
+        GameSnapshotWriter writer = new GameSnapshotWriter();
+        List<UserData> visible = List.of(player);
+        assertTrue(isKeyframe(tick(view, writer, 1, visible, UpdateRate.everyTick())));
+
+        // 关键帧本身即为基线，之后客户端不再确认
+        for (long seq = 2; seq <= 4; seq++) {
+            move(player, seq, seq);
+            JSONObject delta = tick(view, writer, seq, visible, UpdateRate.everyTick());
+            assertEquals("remoteDelta", delta.getString("type"));
+            assertEquals(1L, delta.getLongValue("base"));
+        }
+        move(player, 5, 5);
+        assertTrue(isKeyframe(tick(view, writer, 5, visible, UpdateRate.everyTick())));
+
+        // 过期的确认不会回退基线
+        view.ack(7);
+        view.ack(6);
+        move(player, 8, 8);
+        assertEquals(7L, tick(view, writer, 8, visible, UpdateRate.everyTick()).getLongValue("base"));
+    }
+
+    @Test
+    void resyncSendsAKeyframeOnTheNextTick() {
+        UserData player = userData(1, 0.0);
+        PlayerView view = new PlayerView(1_000, 1_000);
+        GameSnapshotWriter writer = new GameSnapshotWriter();
+        List<UserData> visible = List.of(player);
+        assertTrue(isKeyframe(tick(view, writer, 1, visible, UpdateRate.everyTick())));
+        assertNull(tick(view, writer, 2, visible, UpdateRate.everyTick()));
+
+        view.resync();
+        assertTrue(isKeyframe(tick(view, writer, 3, visible, UpdateRate.everyTick())));
+        assertNull(tick(view, writer, 4, visible, UpdateRate.everyTick()));
+    }
+
+    @Test
+    void resyncWhileAKeyframeIsBeingBuiltIsNotLost() {
+        UserData player = userData(1, 0.0);
+        PlayerView view = new PlayerView(1_000, 1_000);
+        GameSnapshotWriter writer = spy(new GameSnapshotWriter());
+        // 模拟发送线程在决定发送关键帧之后、生成完成之前丢弃了一条消息（writeKeyframe 中再次读取 seq）
+        doCallRealMethod().doAnswer(invocation -> {
+            view.resync();
+            return invocation.callRealMethod();
+        }).doCallRealMethod().when(writer).seq();
+        List<UserData> visible = List.of(player);
+
+        assertTrue(isKeyframe(tick(view, writer, 1, visible, UpdateRate.everyTick())));
+        assertTrue(isKeyframe(tick(view, writer, 2, visible, UpdateRate.everyTick())));
+        assertNull(tick(view, writer, 3, visible, UpdateRate.everyTick()));
+    }
+
+    @Test
+    void decimatedChangeIsResentUntilTheClientAcksIt() {
+        UserData self = userData(1, 0.0);
+        UserData far = userData(2, 50.0);
+        PlayerView view = new PlayerView(1_000, 1_000);
+        UpdateRate rate = new UpdateRate(30, 4);
+        GameSnapshotWriter writer = new GameSnapshotWriter();
+        List<UserData> visible = List.of(self, far);
+        rate.begin(self, 1);
+        assertTrue(isKeyframe(tick(view, writer, 1, visible, rate)));
+
+        // userId 2 在 (seq + 2) % 4 == 0 即 tick 2、6、10 时到期，tick 3 的变化留到 tick 6
+        move(far, 60.0, 3);
+        for (long seq = 3; seq <= 5; seq++) {
+            rate.begin(self, seq);
+            assertNull(tick(view, writer, seq, visible, rate));
+        }
+        rate.begin(self, 6);
+        JSONObject delta = tick(view, writer, 6, visible, rate);
+        assertEquals("{\"userId\":2,\"x\":60.0}", delta.getJSONArray("update").getJSONObject(0).toJSONString());
+
+        // tick 6 的增量未被确认（可能已丢失），下一次到期时以已确认的 tick 1 为基线重发
+        for (long seq = 7; seq <= 9; seq++) {
+            rate.begin(self, seq);
+            assertNull(tick(view, writer, seq, visible, rate));
+        }
+        rate.begin(self, 10);
+        delta = tick(view, writer, 10, visible, rate);
+        assertEquals(1L, delta.getLongValue("base"));
+        assertEquals("{\"userId\":2,\"x\":60.0}", delta.getJSONArray("update").getJSONObject(0).toJSONString());
+
+        // 确认后不再重发
+        view.ack(10);
+        for (long seq = 11; seq <= 14; seq++) {
+            rate.begin(self, seq);
+            assertNull(tick(view, writer, seq, visible, rate));
+        }
+    }
+}
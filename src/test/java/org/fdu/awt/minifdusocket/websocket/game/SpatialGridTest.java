@@ -0,0 +1,66 @@
+package org.fdu.awt.minifdusocket.websocket.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpatialGridTest {
+
+    private static List<String> query(SpatialGrid<String> grid, double x, double z, double radius) {
+        List<String> found = new ArrayList<>();
+        grid.query(x, z, radius, found::add);
+        found.sort(null);
+        return found;
+    }
+
+    @Test
+    void radiusQueryIncludesBoundaryAcrossCells() {
+        SpatialGrid<String> grid = new SpatialGrid<>(10);
+        grid.insert(0, 0, "origin");
+        grid.insert(10, 0, "edge");
+        grid.insert(-7, -7, "corner");
+        grid.insert(25, 0, "far");
+
+        assertEquals(List.of("corner", "edge", "origin"), query(grid, 0, 0, 10));
+        assertEquals(List.of("edge", "far", "origin"), query(grid, 12.5, 0, 12.5));
+        assertEquals(List.of(), query(grid, 100, 100, 10));
+    }
+
+    @Test
+    void clearAndReinsertMovesItems() {
+        SpatialGrid<String> grid = new SpatialGrid<>(10);
+        grid.insert(0, 0, "a");
+        assertEquals(List.of("a"), query(grid, 0, 0, 5));
+
+        grid.clear();
+        grid.insert(50, 50, "a");
+        assertEquals(List.of(), query(grid, 0, 0, 5));
+        assertEquals(List.of("a"), query(grid, 50, 50, 5));
+    }
+
+    @Test
+    void extremeCoordinatesDoNotHangTheQuery() {
+        SpatialGrid<String> grid = new SpatialGrid<>(100);
+        grid.insert(0, 0, "origin");
+        grid.insert(1e20, 1e20, "huge");
+        grid.insert(Double.MAX_VALUE, -Double.MAX_VALUE, "max");
+
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+            assertEquals(List.of("huge"), query(grid, 1e20, 1e20, 100));
+            assertEquals(List.of(), query(grid, Double.POSITIVE_INFINITY, 0, 100));
+            assertEquals(List.of(), query(grid, Double.NaN, Double.NaN, 100));
+            assertEquals(List.of("origin"), query(grid, 0, 0, 1e12));
+            assertTrue(query(grid, 0, 0, Double.POSITIVE_INFINITY).contains("origin"));
+            // 坐标恰好在 int 单元格坐标上限附近
+            double edge = 100.0 * Integer.MAX_VALUE;
+            grid.insert(edge, edge, "edge");
+            assertEquals(List.of("edge"), query(grid, edge, edge, 150));
+        });
+    }
+}
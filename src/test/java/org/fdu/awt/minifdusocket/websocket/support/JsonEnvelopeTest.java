@@ -0,0 +1,49 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JsonEnvelopeTest {
+
+    @Test
+    void readsRoutingHeaderAndKeepsForwardDataVerbatim() {
+        String forwardData = "{\"sdp\":\"v=0\\r\\no=- 46117 2 IN IP4 127.0.0.1\\r\\n\",\"nested\":[1,{\"a\":\"}]\"}],\"type\":\"offer\"}";
+        String message = " {\"type\":\"video-processing\", \"toId\": \"42\",\"extra\":[true,null,-1.5e3],\"forwardData\":"
+                + forwardData + ",\"fromId\":-7 } ";
+
+        JsonEnvelope envelope = JsonEnvelope.scan(message);
+
+        assertNotNull(envelope);
+        assertEquals("video-processing", envelope.getType());
+        assertEquals(42L, envelope.getToId());
+        assertEquals(-7L, envelope.getFromId());
+        assertEquals(forwardData, envelope.getForwardData());
+        assertEquals(JSONObject.parseObject(message).getJSONObject("forwardData"),
+                JSONObject.parseObject(envelope.getForwardData()));
+    }
+
+    @Test
+    void withoutForwardData() {
+        JsonEnvelope envelope = JsonEnvelope.scan("{\"type\":\"video-end\",\"toId\":1}");
+
+        assertNotNull(envelope);
+        assertFalse(envelope.hasForwardData());
+        assertNull(envelope.getForwardData());
+        assertNull(envelope.getFromId());
+    }
+
+    @Test
+    void unrecognizedInputFallsBack() {
+        assertNull(JsonEnvelope.scan("{\"type\":\"video-processing\",\"forwardData\":{\"a\":[1}}"));
+        assertNull(JsonEnvelope.scan("{\"t\\u0079pe\":\"video-processing\",\"toId\":1}"));
+        assertNull(JsonEnvelope.scan("{\"type\":\"video-processing\",\"toId\":null}"));
+        assertNull(JsonEnvelope.scan("{\"type\":\"video-processing\",\"toId\":1} trailing"));
+        assertNull(JsonEnvelope.scan("{\"type\":\"video-processing\",\"forwardData\":\"unterminated}"));
+        assertNull(JsonEnvelope.scan("[]"));
+    }
+}
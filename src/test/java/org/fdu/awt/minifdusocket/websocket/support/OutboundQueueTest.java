@@ -0,0 +1,231 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.fdu.awt.minifdusocket.config.WebSocketProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboundQueueTest {
+    private final Session session = mock(Session.class);
+    private final WebSocketProperties.Outbound config = new WebSocketProperties.Outbound();
+    private final OutboundStats stats = new OutboundStats();
+    /**
+     * 已交给容器发送的消息及其完成回调，由用例决定何时完成
+     */
+    private final List<String> sent = new ArrayList<>();
+    private final List<SendHandler> handlers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            handlers.add(invocation.getArgument(1));
+            return null;
+        }).when(remote).sendText(anyString(), any(SendHandler.class));
+        doAnswer(invocation -> {
+            ByteBuffer view = invocation.getArgument(0);
+            sent.add(StandardCharsets.UTF_8.decode(view).toString());
+            handlers.add(invocation.getArgument(1));
+            return null;
+        }).when(remote).sendBinary(any(ByteBuffer.class), any(SendHandler.class));
+        when(session.getAsyncRemote()).thenReturn(remote);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getId()).thenReturn("s1");
+    }
+
+    private OutboundQueue queue() {
+        // 关闭操作在调用线程中执行，便于断言
+        return new OutboundQueue(session, config, Runnable::run, stats);
+    }
+
+    private void complete(int index) {
+        handlers.get(index).onResult(new SendResult());
+    }
+
+    @Test
+    void sendsOneMessageAtATimeInOrder() {
+        OutboundQueue queue = queue();
+        assertTrue(queue.offer("a"));
+        assertTrue(queue.offer("b"));
+        assertEquals(List.of("a"), sent);
+        assertEquals(1, queue.size());
+
+        complete(0);
+        assertEquals(List.of("a", "b"), sent);
+        complete(1);
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.getQueuedBytes());
+        assertEquals(2, queue.getSentMessages());
+    }
+
+    @Test
+    void pendingSnapshotsAreCoalescedAndSentAfterPlainMessages() {
+        OutboundQueue queue = queue();
+        AtomicInteger dropped = new AtomicInteger();
+        queue.offer("first");
+        queue.offerLatest("snapshot-1", dropped::incrementAndGet);
+        queue.offerLatest("snapshot-2", dropped::incrementAndGet);
+        queue.offer("chat");
+        queue.offerLatest("snapshot-3", dropped::incrementAndGet);
+        assertEquals(2, dropped.get());
+        assertEquals(2, queue.getDroppedSnapshots());
+        // 普通消息 + 最新的快照
+        assertEquals(2, queue.size());
+
+        complete(0);
+        complete(1);
+        assertEquals(List.of("first", "chat", "snapshot-3"), sent);
+        complete(2);
+        assertEquals(2, dropped.get());
+    }
+
+    @Test
+    void closeDropsPendingMessagesAndSnapshotThroughTheirCallbacks() {
+        OutboundQueue queue = queue();
+        AtomicInteger droppedMessages = new AtomicInteger();
+        AtomicInteger droppedSnapshots = new AtomicInteger();
+        queue.offer("in-flight", droppedMessages::incrementAndGet);
+        queue.offer("queued", droppedMessages::incrementAndGet);
+        queue.offerLatest("snapshot", droppedSnapshots::incrementAndGet);
+
+        queue.close();
+        assertEquals(1, droppedMessages.get());
+        assertEquals(1, droppedSnapshots.get());
+        assertEquals(0, queue.size());
+
+        // 关闭后发送中的一条失败
+        handlers.get(0).onResult(new SendResult(new IOException("closed")));
+        assertEquals(2, droppedMessages.get());
+        // 关闭后的消息直接丢弃
+        assertFalse(queue.offer("late", droppedMessages::incrementAndGet));
+        assertEquals(3, droppedMessages.get());
+        assertEquals(List.of("in-flight"), sent);
+    }
+
+    @Test
+    void tooManyPendingMessagesDisconnectsTheClient() throws IOException {
+        config.setMaxMessages(2);
+        OutboundQueue queue = queue();
+        AtomicInteger dropped = new AtomicInteger();
+        // 发送中的一条不在队列中
+        for (int i = 0; i < 3; i++) {
+            assertTrue(queue.offer("m" + i, dropped::incrementAndGet));
+        }
+        verify(session, never()).close(any(CloseReason.class));
+
+        assertFalse(queue.offer("m3", dropped::incrementAndGet));
+        verify(session).close(any(CloseReason.class));
+        assertEquals(3, dropped.get());
+        assertEquals(0, queue.size());
+        assertEquals(1, stats.getEvictions());
+    }
+
+    @Test
+    void tooManyPendingBytesDisconnectsTheClient() throws IOException {
+        config.setMaxBytes(10);
+        OutboundQueue queue = queue();
+        assertTrue(queue.offer("12345"));
+        assertTrue(queue.offer("67890"));
+        verify(session, never()).close(any(CloseReason.class));
+
+        assertFalse(queue.offer("x"));
+        verify(session).close(any(CloseReason.class));
+    }
+
+    @Test
+    void staleHeadOfQueueDisconnectsTheClient() throws Exception {
+        config.setMaxLagMillis(20);
+        OutboundQueue queue = queue();
+        queue.offer("in-flight");
+        queue.offer("waiting");
+        Thread.sleep(50);
+        assertFalse(queue.offer("next"));
+        verify(session).close(any(CloseReason.class));
+    }
+
+    @Test
+    void snapshotOnlyClientWhoseSendNeverCompletesIsDisconnected() throws Exception {
+        config.setMaxLagMillis(20);
+        OutboundQueue queue = queue();
+        AtomicInteger dropped = new AtomicInteger();
+        assertTrue(queue.offerLatest("s1", dropped::incrementAndGet));
+        assertTrue(queue.offerLatest("s2", dropped::incrementAndGet));
+        Thread.sleep(50);
+        // 快照互相替换，普通消息队列始终为空，但发送中的一条已等待过久
+        assertFalse(queue.offerLatest("s3", dropped::incrementAndGet));
+        verify(session).close(any(CloseReason.class));
+        assertEquals(2, dropped.get());
+        assertEquals(1, queue.getDroppedSnapshots());
+    }
+
+    @Test
+    void byteLimitCountsEncodedBytes() throws IOException {
+        assertEquals(5, OutboundQueue.utf8Length("hello"));
+        assertEquals(6, OutboundQueue.utf8Length("你好"));
+        assertEquals(4, OutboundQueue.utf8Length("\uD83D\uDE00"));
+        assertEquals(3, OutboundQueue.utf8Length("é!"));
+
+        config.setMaxBytes(10);
+        OutboundQueue queue = queue();
+        // 4 个字符，12 个字节
+        assertFalse(queue.offer("你好你好"));
+        verify(session).close(any(CloseReason.class));
+    }
+
+    @Test
+    void sharedFrameIsReturnedToThePoolOnceEveryHolderReleasedIt() {
+        ByteBufferPool pool = mock(ByteBufferPool.class);
+        ByteBuffer buffer = ByteBuffer.wrap("frame".getBytes(StandardCharsets.UTF_8));
+        SharedFrame frame = SharedFrame.wrap(buffer, pool);
+        OutboundQueue first = queue();
+        OutboundQueue second = queue();
+        OutboundQueue closed = queue();
+        closed.close();
+
+        first.offer(SharedFrame.of("busy"), false);
+        first.offer(frame, true);
+        second.offer(frame, false);
+        assertFalse(closed.offer(frame, true));
+        // 被替换的快照同样释放
+        second.offerLatest(frame, true, null);
+        second.offerLatest(frame, true, null);
+        frame.release();
+        verify(pool, never()).release(any());
+
+        // second 中的普通消息发送完成，接着发送快照
+        complete(1);
+        assertEquals(3, sent.size());
+        // first 中排队的帧在关闭时丢弃
+        first.close();
+        second.close();
+        verify(pool, never()).release(any());
+
+        // 发送中的快照失败后释放最后一个引用
+        handlers.get(2).onResult(new SendResult(new IOException("closed")));
+        verify(pool, times(1)).release(buffer);
+    }
+}
@@ -0,0 +1,82 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionRegistryTest {
+
+    @Test
+    void duplicateConnectionReplacesOldOneWhichCannotUnregisterTheNewOne() {
+        SessionRegistry<Long, String> sessions = new SessionRegistry<>();
+        assertNull(sessions.register(1L, "old"));
+        assertEquals("old", sessions.register(1L, "new"));
+        assertEquals(1, sessions.size());
+
+        // 旧连接随后断开
+        assertFalse(sessions.unregister(1L, "old"));
+        assertEquals("new", sessions.get(1L));
+        assertEquals(List.of("new"), sessions.snapshot());
+
+        assertTrue(sessions.unregister(1L, "new"));
+        assertTrue(sessions.isEmpty());
+    }
+
+    @Test
+    void snapshotIsReusedUntilModified() {
+        SessionRegistry<Long, String> sessions = new SessionRegistry<>();
+        sessions.register(1L, "a");
+        sessions.register(2L, "b");
+        List<String> first = sessions.snapshot();
+        assertSame(first, sessions.snapshot());
+
+        sessions.unregister(2L, "b");
+        List<String> second = sessions.snapshot();
+        assertEquals(List.of("a"), second);
+        // 已取得的快照不受之后的修改影响
+        assertEquals(2, first.size());
+    }
+
+    @Test
+    void reconnectStormLeavesOneConnectionPerUser() throws Exception {
+        int users = 10_000;
+        SessionRegistry<Long, Object> sessions = new SessionRegistry<>();
+        Object[] first = new Object[users];
+        for (int i = 0; i < users; i++) {
+            first[i] = new Object();
+            sessions.register((long) i, first[i]);
+        }
+        // 每个用户重新连接，旧连接的断开与新连接交错到达
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] futures = new Future<?>[8];
+            for (int t = 0; t < futures.length; t++) {
+                int offset = t;
+                futures[t] = pool.submit(() -> {
+                    for (int i = offset; i < users; i += futures.length) {
+                        sessions.register((long) i, new Object());
+                        sessions.snapshot();
+                        sessions.unregister((long) i, first[i]);
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(users, sessions.size());
+        assertEquals(users, sessions.snapshot().size());
+    }
+}
@@ -0,0 +1,35 @@
+package org.fdu.awt.minifdusocket.websocket.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrafficLogTest {
+    private static final List<String> FIELDS = List.of("message", "sdp", "candidate");
+
+    @Test
+    void redactsStringValuesOfConfiguredFields() {
+        String payload = "{\"type\":\"chat\",\"remoteId\":2,\"message\":\"你好 \\\"secret\\\"\",\"note\":\"message\"}";
+
+        assertEquals("{\"type\":\"chat\",\"remoteId\":2,\"message\":\"***\",\"note\":\"message\"}",
+                TrafficLog.abbreviate(payload, FIELDS, 1000));
+    }
+
+    @Test
+    void redactsNestedFields() {
+        String payload = "{\"type\":\"video-processing\",\"forwardData\":{\"candidate\" : \"candidate:1 1 udp 10.0.0.1\",\"sdpMid\":\"0\"}}";
+
+        assertEquals("{\"type\":\"video-processing\",\"forwardData\":{\"candidate\" : \"***\",\"sdpMid\":\"0\"}}",
+                TrafficLog.abbreviate(payload, FIELDS, 1000));
+    }
+
+    @Test
+    void truncatesBeforeRedacting() {
+        String payload = "{\"type\":\"video-processing\",\"forwardData\":{\"sdp\":\"v=0 o=- 46117 2 IN IP4 127.0.0.1\"}}";
+
+        assertEquals("{\"type\":\"video-processing\",\"forwardData\":{\"sdp\":\"***...(" + payload.length() + " chars)",
+                TrafficLog.abbreviate(payload, FIELDS, 55));
+    }
+}